@@ -0,0 +1,212 @@
+package com.Hihelloy.chatmoderator.benchmarks;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Deterministic generator for Minecraft-style chat, so benchmark results can be reproduced
+ * offline without a server or real chat logs.<br><br>
+ *
+ * Messages follow the shape of real server chat: mostly short reactions and questions,
+ * some trading and coordination lines, a few long messages, and a configurable share of
+ * toxic lines, half of them disguised the way players dodge filters (leet, spacing,
+ * stretched letters, look-alike characters). The same seed always yields the same corpus.<br><br>
+ *
+ * Run it directly to write a corpus file:
+ * {@code java -cp target/benchmarks.jar com.Hihelloy.chatmoderator.benchmarks.ChatCorpus corpus.txt 100000}
+ */
+public final class ChatCorpus {
+
+    public static final long DEFAULT_SEED = 0x5EEDL;
+    // Share of generated messages that should be moderated
+    public static final double DEFAULT_TOXIC_SHARE = 0.05;
+
+    // Ordered roughly by how often they show up in real chat
+    private static final String[] TEMPLATES = {
+            "lol", "gg", "ty", "ok", "xD", "?", "brb", "lag?", "anyone on?", "wb {name}",
+            "hi {name}", "gg wp", "nice build {name}!", "where is the {place}", "how do i craft a {item}",
+            "anyone want to trade {count} {item} for {item}?", "{name} can you tp to me",
+            "selling {count} {item} at my shop, {count} diamonds each", "my {item} broke again :(",
+            "who wants to go to the {place} with me", "i found {count} {item} in a {place}",
+            "{name} {name} come here quick", "does anyone know if {item} works with mending",
+            "brb {count} min, dinner", "watch out there is a creeper near the {place}",
+            "ok so i was mining near the {place} and found a whole vein of {item}, "
+                    + "then a skeleton shot me into lava and i lost everything including my {item}",
+    };
+    private static final String[] TOXIC_TEMPLATES = {
+            "{toxic}", "{name} {toxic}", "you are such a {toxic}", "{toxic} {toxic} {toxic}",
+            "go {toxic} yourself {name}", "{name} is a {toxic} lol",
+    };
+    private static final String[] TOXIC_WORDS = {
+            "kys", "retard", "idiot", "trash", "loser", "noob", "sex", "nude",
+    };
+    private static final String[] ITEMS = {
+            "diamond pickaxe", "elytra", "netherite", "iron", "shulker box", "totem", "beacon",
+            "ender pearls", "golden apple", "trident", "villager", "redstone", "bread",
+    };
+    private static final String[] PLACES = {
+            "nether portal", "spawn", "end city", "stronghold", "village", "mineshaft",
+            "ocean monument", "base", "farm", "desert temple",
+    };
+    private static final String[] SYLLABLES = {
+            "ka", "zu", "mi", "ro", "te", "xa", "lo", "ven", "dar", "qui", "sto", "pel",
+            "gra", "nox", "fi", "br", "el", "tor", "sy", "wen", "ju", "crab", "hex", "ly",
+    };
+    private static final char[][] HOMOGLYPHS = {
+            {'a', 'а'}, {'e', 'е'}, {'o', 'о'}, {'p', 'р'}, {'c', 'с'}, {'x', 'х'}, {'y', 'у'}, {'s', 'ѕ'},
+    };
+
+    private ChatCorpus() {
+    }
+
+    /**
+     * @return {@code count} chat messages with the default seed and toxic share.
+     */
+    public static List<String> messages(int count) {
+        return messages(count, DEFAULT_TOXIC_SHARE, DEFAULT_SEED);
+    }
+
+    /**
+     * @param count How many messages to generate.
+     * @param toxicShare The share (0 to 1) of messages that should be moderated.
+     * @param seed The random seed; the same seed always yields the same messages.
+     */
+    public static List<String> messages(int count, double toxicShare, long seed) {
+        Random random = new Random(seed);
+        String[] names = new String[200];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = word(random, 2 + random.nextInt(2)) + (random.nextInt(3) == 0 ? random.nextInt(100) : "");
+        }
+
+        List<String> messages = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            boolean toxic = random.nextDouble() < toxicShare;
+            String template = toxic
+                    ? TOXIC_TEMPLATES[random.nextInt(TOXIC_TEMPLATES.length)]
+                    // Squaring skews the pick towards the short, common templates at the front
+                    : TEMPLATES[(int) (Math.pow(random.nextDouble(), 2) * TEMPLATES.length)];
+            messages.add(fill(template, random, names));
+        }
+        return messages;
+    }
+
+    /**
+     * @return {@code count} distinct made-up blocked words, starting with the common toxic words.
+     */
+    public static List<String> blockedWords(int count, long seed) {
+        Random random = new Random(seed);
+        Set<String> words = new LinkedHashSet<>();
+        for (int i = 0; i < TOXIC_WORDS.length && words.size() < count; i++) {
+            words.add(TOXIC_WORDS[i]);
+        }
+        // Longer than any generated player name, so made-up words never match ordinary chat
+        while (words.size() < count) {
+            words.add(word(random, 4 + random.nextInt(2)));
+        }
+        return new ArrayList<>(words);
+    }
+
+    private static String fill(String template, Random random, String[] names) {
+        StringBuilder out = new StringBuilder(template.length() + 32);
+        int i = 0;
+        while (i < template.length()) {
+            int open = template.indexOf('{', i);
+            if (open < 0) {
+                out.append(template, i, template.length());
+                break;
+            }
+            int close = template.indexOf('}', open);
+            out.append(template, i, open);
+            switch (template.substring(open + 1, close)) {
+                case "name" -> out.append(names[random.nextInt(names.length)]);
+                case "item" -> out.append(ITEMS[random.nextInt(ITEMS.length)]);
+                case "place" -> out.append(PLACES[random.nextInt(PLACES.length)]);
+                case "count" -> out.append(1 + random.nextInt(64));
+                case "toxic" -> {
+                    String word = TOXIC_WORDS[random.nextInt(TOXIC_WORDS.length)];
+                    out.append(random.nextBoolean() ? word : disguise(word, random));
+                }
+                default -> out.append(template, open, close + 1);
+            }
+            i = close + 1;
+        }
+        return out.toString();
+    }
+
+    /**
+     * Spells a word the way players dodge word filters.
+     */
+    static String disguise(String word, Random random) {
+        StringBuilder out = new StringBuilder(word.length() * 2);
+        switch (random.nextInt(4)) {
+            case 0 -> {
+                // Leet
+                for (char c : word.toCharArray()) {
+                    out.append(switch (c) {
+                        case 'a' -> '4';
+                        case 'e' -> '3';
+                        case 'i' -> '1';
+                        case 'o' -> '0';
+                        case 's' -> '$';
+                        default -> c;
+                    });
+                }
+            }
+            case 1 -> {
+                // Spaced out
+                for (int i = 0; i < word.length(); i++) {
+                    if (i > 0) out.append(random.nextBoolean() ? ' ' : '.');
+                    out.append(word.charAt(i));
+                }
+            }
+            case 2 -> {
+                // Stretched
+                for (char c : word.toCharArray()) {
+                    out.append(c);
+                    if ("aeiouy".indexOf(c) >= 0) out.append(String.valueOf(c).repeat(2 + random.nextInt(4)));
+                }
+            }
+            default -> {
+                // Look-alike letters
+                for (char c : word.toCharArray()) {
+                    char replaced = c;
+                    for (char[] pair : HOMOGLYPHS) {
+                        if (pair[0] == c) replaced = pair[1];
+                    }
+                    out.append(replaced);
+                }
+            }
+        }
+        return out.toString();
+    }
+
+    private static String word(Random random, int syllables) {
+        StringBuilder word = new StringBuilder();
+        for (int i = 0; i < syllables; i++) {
+            word.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+        }
+        return word.toString();
+    }
+
+    /**
+     * Writes a corpus to a file, one message per line.
+     * Arguments: {@code <file> [count] [toxic-share] [seed]}.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.err.println("Usage: ChatCorpus <file> [count] [toxic-share] [seed]");
+            System.exit(1);
+        }
+        int count = args.length > 1 ? Integer.parseInt(args[1]) : 100_000;
+        double toxicShare = args.length > 2 ? Double.parseDouble(args[2]) : DEFAULT_TOXIC_SHARE;
+        long seed = args.length > 3 ? Long.parseLong(args[3]) : DEFAULT_SEED;
+        Files.write(Path.of(args[0]), messages(count, toxicShare, seed), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,182 @@
+package com.Hihelloy.chatmoderator.services;
+
+import com.Hihelloy.chatmoderator.benchmarks.ChatCorpus;
+import com.Hihelloy.chatmoderator.config.ConfigSnapshot;
+import com.Hihelloy.chatmoderator.utils.ModerationCategory;
+import com.Hihelloy.chatmoderator.utils.ModerationResult;
+import com.Hihelloy.chatmoderator.utils.TextNormalizer;
+import com.Hihelloy.chatmoderator.utils.WordMatcher;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+/**
+ * A chat line end to end, the way {@code ChatListener} handles it: mute check, word filter,
+ * then {@link ModerationService#checkAIModerationAsync(String)} (rules, local classifier,
+ * verdict cache, batching, circuit breaker) against a stub provider, waiting for the verdict.<br><br>
+ *
+ * The stub answers from a word list after a configurable delay, standing in for the network.
+ * The spam check is left out, since the benchmark's message rate would trip it on every line.
+ * The local classifier is untrained, as on a fresh install.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Threads(4)
+@Fork(1)
+public class ModerationPipelineBenchmark {
+
+    @Param({"false", "true"})
+    public boolean batching;
+
+    @Param({"0", "2000"})
+    public long providerLatencyMicros;
+
+    private Path folder;
+    private ModerationExecutor executor;
+    private ModerationService moderationService;
+    private MuteStore muteStore;
+    private ConfigSnapshot config;
+    private WordMatcher blockedWords;
+    private String[] messages;
+    private UUID[] players;
+
+    @Setup
+    public void setup() throws IOException {
+        Logger logger = Logger.getLogger("ModerationPipelineBenchmark");
+        folder = Files.createTempDirectory("chatmoderator-bench");
+
+        YamlConfiguration yaml;
+        try (Reader reader = new InputStreamReader(getClass().getResourceAsStream("/config.yml"),
+                StandardCharsets.UTF_8)) {
+            yaml = YamlConfiguration.loadConfiguration(reader);
+        }
+        yaml.set("ai.batch.enabled", batching);
+        yaml.set("ai.batch.linger-ms", 2);
+        yaml.set("local-classifier.collect-samples", false);
+        config = ConfigSnapshot.from(yaml);
+        // Leave "kys" and "retard" to the rules so every tier sees traffic
+        blockedWords = WordMatcher.compile(ChatCorpus.blockedWords(100, ChatCorpus.DEFAULT_SEED).subList(2, 100));
+
+        YamlConfiguration rules;
+        try (Reader reader = new InputStreamReader(getClass().getResourceAsStream("/rules.yml"),
+                StandardCharsets.UTF_8)) {
+            rules = YamlConfiguration.loadConfiguration(reader);
+        }
+
+        executor = new ModerationExecutor(logger, config.ai().virtualThreads(), config.ai().executorThreads(),
+                config.ai().executorQueueSize());
+        moderationService = new ModerationService(logger, () -> config, executor,
+                new RuleEngine(logger, rules.getConfigurationSection("categories")),
+                new LocalClassifier(logger, folder), new ModerationMetrics(), new StubProvider(providerLatencyMicros));
+
+        // 1000 players, 1% of them muted
+        muteStore = new MuteStore(logger, folder.resolve("mutes.journal"));
+        Random random = new Random(42);
+        players = new UUID[1024];
+        for (int i = 0; i < players.length; i++) {
+            players[i] = new UUID(random.nextLong(), random.nextLong());
+            if (i % 100 == 0) muteStore.mute(players[i], "player" + i, TimeUnit.HOURS.toMillis(1));
+        }
+        messages = ChatCorpus.messages(10_000).toArray(new String[0]);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        moderationService.shutdown();
+        executor.shutdown();
+        muteStore.shutdown();
+        try (Stream<Path> files = Files.walk(folder)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        private int next;
+    }
+
+    @Benchmark
+    public ModerationResult chatLine(Cursor cursor) {
+        int index = cursor.next;
+        cursor.next = index + 1;
+        String message = messages[index % messages.length];
+
+        if (muteStore.isMuted(players[index & (players.length - 1)])) {
+            return null;
+        }
+        if (config.moderation().wordFilterEnabled()) {
+            long match = blockedWords.find(TextNormalizer.normalize(message));
+            if (match != WordMatcher.NO_MATCH) {
+                return ModerationResult.block("Contains blocked word: " + blockedWords.word(match));
+            }
+        }
+        return moderationService.checkAIModerationAsync(message).join();
+    }
+
+    /**
+     * Flags messages containing any of the corpus' toxic words, after a fixed delay.
+     */
+    private static final class StubProvider implements ModerationProvider {
+        private static final WordMatcher TOXIC = WordMatcher.compile(List.of(
+                "kys", "retard", "idiot", "trash", "loser", "noob", "sex", "nude"));
+
+        private final long latencyNanos;
+
+        private StubProvider(long latencyMicros) {
+            this.latencyNanos = TimeUnit.MICROSECONDS.toNanos(latencyMicros);
+        }
+
+        @Override
+        public String getName() {
+            return "Stub";
+        }
+
+        @Override
+        public double[] score(String message) {
+            if (latencyNanos > 0) LockSupport.parkNanos(latencyNanos);
+            return scoresFor(message);
+        }
+
+        @Override
+        public List<double[]> scoreBatch(List<String> messages) {
+            // One round trip for the whole batch
+            if (latencyNanos > 0) LockSupport.parkNanos(latencyNanos);
+            return messages.stream().map(StubProvider::scoresFor).toList();
+        }
+
+        private static double[] scoresFor(String message) {
+            double[] scores = new double[ModerationCategory.COUNT];
+            scores[ModerationCategory.HARASSMENT.ordinal()] = TOXIC.matches(TextNormalizer.normalize(message)) ? 0.95 : 0.02;
+            return scores;
+        }
+    }
+}
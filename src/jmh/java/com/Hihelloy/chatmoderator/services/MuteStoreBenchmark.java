@@ -0,0 +1,82 @@
+package com.Hihelloy.chatmoderator.services;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+/**
+ * The mute check every chat line starts with, against a growing number of active mutes.
+ * Half the lookups hit a muted player.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MuteStoreBenchmark {
+
+    @Param({"100", "10000", "100000"})
+    public int mutes;
+
+    private Path folder;
+    private MuteStore muteStore;
+    private UUID[] lookups;
+
+    @Setup
+    public void setup() throws IOException {
+        folder = Files.createTempDirectory("chatmoderator-bench");
+        muteStore = new MuteStore(Logger.getLogger("MuteStoreBenchmark"), folder.resolve("mutes.journal"));
+
+        Random random = new Random(42);
+        UUID[] muted = new UUID[mutes];
+        for (int i = 0; i < mutes; i++) {
+            muted[i] = new UUID(random.nextLong(), random.nextLong());
+            muteStore.mute(muted[i], "player" + i, TimeUnit.HOURS.toMillis(1));
+        }
+        // Alternate muted and unknown players
+        lookups = new UUID[1024];
+        for (int i = 0; i < lookups.length; i++) {
+            lookups[i] = i % 2 == 0 ? muted[random.nextInt(mutes)] : new UUID(random.nextLong(), random.nextLong());
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        muteStore.shutdown();
+        try (Stream<Path> files = Files.walk(folder)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        private int next;
+    }
+
+    @Benchmark
+    public boolean isMuted(Cursor cursor) {
+        UUID uuid = lookups[cursor.next];
+        cursor.next = (cursor.next + 1) & (lookups.length - 1);
+        return muteStore.isMuted(uuid);
+    }
+}
@@ -0,0 +1,64 @@
+package com.Hihelloy.chatmoderator.services;
+
+import com.Hihelloy.chatmoderator.benchmarks.ChatCorpus;
+import com.Hihelloy.chatmoderator.utils.ModerationResult;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * The local rule check ({@code ModerationService.checkAIRules}) with the bundled
+ * {@code rules.yml}, plus a growing number of generated word rules.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RuleEngineBenchmark {
+
+    @Param({"0", "1000", "10000"})
+    public int extraRules;
+
+    private RuleEngine ruleEngine;
+    private String[] messages;
+    private int next;
+
+    @Setup
+    public void setup() throws Exception {
+        YamlConfiguration rules;
+        try (Reader reader = new InputStreamReader(RuleEngineBenchmark.class.getResourceAsStream("/rules.yml"),
+                StandardCharsets.UTF_8)) {
+            rules = YamlConfiguration.loadConfiguration(reader);
+        }
+        if (extraRules > 0) {
+            rules.set("categories.generated.type", "HARASSMENT");
+            rules.set("categories.generated.word", ChatCorpus.blockedWords(extraRules, 7));
+        }
+        ruleEngine = new RuleEngine(Logger.getLogger("RuleEngineBenchmark"), rules.getConfigurationSection("categories"));
+        messages = ChatCorpus.messages(10_000).toArray(new String[0]);
+    }
+
+    @Benchmark
+    public ModerationResult evaluate() {
+        String message = messages[next];
+        next = (next + 1) % messages.length;
+        return ruleEngine.evaluate(message);
+    }
+}
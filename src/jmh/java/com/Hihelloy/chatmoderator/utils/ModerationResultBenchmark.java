@@ -0,0 +1,65 @@
+package com.Hihelloy.chatmoderator.utils;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of creating verdicts: the shared safe result, a rule block, and turning provider
+ * scores into a verdict against the thresholds.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ModerationResultBenchmark {
+
+    private double[][] scores;
+    private double[] thresholds;
+    private int next;
+
+    @Setup
+    public void setup() {
+        // Mostly clean score vectors, about one in twenty over a threshold
+        Random random = new Random(42);
+        scores = new double[1024][ModerationCategory.COUNT];
+        for (double[] vector : scores) {
+            for (int i = 0; i < vector.length; i++) {
+                vector[i] = random.nextInt(20) == 0 ? random.nextDouble() : random.nextDouble() * 0.1;
+            }
+        }
+        thresholds = ModerationCategory.compileThresholds(Map.of(
+                "harassment", 0.7, "hate", 0.7, "self-harm", 0.8, "sexual", 0.8, "violence", 0.7));
+    }
+
+    @Benchmark
+    public ModerationResult safe() {
+        return ModerationResult.safe();
+    }
+
+    @Benchmark
+    public ModerationResult block() {
+        return ModerationResult.block("Rule: hate-speech keyword/keyphrase detected",
+                ModerationResult.ViolationType.HATE_SPEECH);
+    }
+
+    @Benchmark
+    public ModerationResult fromScores() {
+        double[] vector = scores[next];
+        next = (next + 1) & (scores.length - 1);
+        return ModerationResult.fromScores(vector, thresholds);
+    }
+}
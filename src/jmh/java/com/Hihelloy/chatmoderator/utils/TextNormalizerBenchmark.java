@@ -0,0 +1,103 @@
+package com.Hihelloy.chatmoderator.utils;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of {@link TextNormalizer#normalize(CharSequence)} on plain and evasive chat lines,
+ * alone and in front of the word filter.<br><br>
+ *
+ * The setup fails the run if normalizing allocates anything once warmed up, and
+ * {@code -prof gc} should report a {@code gc.alloc.rate.norm} of about 0 B/op for
+ * {@link #normalize()}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TextNormalizerBenchmark {
+
+    private static final String[] MESSAGES = {
+            "hey does anyone want to trade diamonds for some iron?",
+            "lol that creeper just blew up my whole house",
+            "GG WP everyone, see you tomorrow!!!",
+            "where is the nether portal at spawn",
+            "k.y.s noob",
+            "n i c e  t r y",
+            "ѕех ѕеllеr ovеr hеrе",
+            "ｆｒｅｅ ｒａｎｋｓ at my shop",
+            "y0u 4r3 s0 b4d 4t th1s g4m3",
+            "noooooooooo my netherite sword",
+            "h​e​l​l​o",
+            "𝐜𝐡𝐞𝐜𝐤 𝐦𝐲 𝐛𝐚𝐬𝐞 🙂🙂🙂",
+    };
+
+    private WordMatcher matcher;
+    private int next;
+
+    @Setup
+    public void setup() {
+        matcher = WordMatcher.compile(List.of("kys", "sex", "noob", "free ranks", "trash", "idiot"));
+        verifyNoAllocation();
+    }
+
+    /**
+     * Normalizes every message until the JIT settles, then checks with the thread's
+     * allocation counter that another full pass allocates nothing.
+     */
+    private static void verifyNoAllocation() {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        if (!threads.isThreadAllocatedMemorySupported()) return;
+
+        long thread = Thread.currentThread().getId();
+        for (int i = 0; i < 20_000; i++) {
+            for (String message : MESSAGES) TextNormalizer.normalize(message);
+        }
+        long before = threads.getThreadAllocatedBytes(thread);
+        for (int i = 0; i < 10_000; i++) {
+            for (String message : MESSAGES) TextNormalizer.normalize(message);
+        }
+        long allocated = threads.getThreadAllocatedBytes(thread) - before;
+        // A few bytes of slack for the counter reads themselves
+        if (allocated > 1024) {
+            throw new IllegalStateException("TextNormalizer allocated " + allocated + " bytes in "
+                    + 10_000 * MESSAGES.length + " calls");
+        }
+    }
+
+    private String nextMessage() {
+        String message = MESSAGES[next];
+        next = (next + 1) % MESSAGES.length;
+        return message;
+    }
+
+    @Benchmark
+    public TextNormalizer.Normalized normalize() {
+        return TextNormalizer.normalize(nextMessage());
+    }
+
+    @Benchmark
+    public long normalizeAndMatch() {
+        return matcher.find(TextNormalizer.normalize(nextMessage()));
+    }
+
+    @Benchmark
+    public long matchRaw() {
+        // Baseline: the word filter without normalization
+        return matcher.find(nextMessage());
+    }
+}
@@ -0,0 +1,66 @@
+package com.Hihelloy.chatmoderator.utils;
+
+import com.Hihelloy.chatmoderator.benchmarks.ChatCorpus;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Word filter cost per chat line as the blocked word list grows, and the cost of
+ * compiling the list on reload.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WordMatcherBenchmark {
+
+    @Param({"10", "1000", "10000", "100000"})
+    public int blockedWords;
+
+    private List<String> words;
+    private WordMatcher matcher;
+    private String[] messages;
+    private int next;
+
+    @Setup
+    public void setup() {
+        words = ChatCorpus.blockedWords(blockedWords, ChatCorpus.DEFAULT_SEED);
+        matcher = WordMatcher.compile(words);
+        messages = ChatCorpus.messages(10_000).toArray(new String[0]);
+    }
+
+    private String nextMessage() {
+        String message = messages[next];
+        next = (next + 1) % messages.length;
+        return message;
+    }
+
+    /**
+     * The chat path: normalize, then scan.
+     */
+    @Benchmark
+    public long find() {
+        return matcher.find(TextNormalizer.normalize(nextMessage()));
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public WordMatcher compile() {
+        return WordMatcher.compile(words);
+    }
+}
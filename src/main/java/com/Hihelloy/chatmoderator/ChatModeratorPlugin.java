@@ -4,7 +4,20 @@ import com.cjcrafter.foliascheduler.FoliaCompatibility;
 import com.cjcrafter.foliascheduler.ServerImplementation;
 import com.Hihelloy.chatmoderator.config.ConfigManager;
 import com.Hihelloy.chatmoderator.listeners.ChatListener;
+import com.Hihelloy.chatmoderator.listeners.ContentListener;
+import com.Hihelloy.chatmoderator.services.AuditLog;
+import com.Hihelloy.chatmoderator.services.BlockedWordStore;
+import com.Hihelloy.chatmoderator.services.ConversationContext;
+import com.Hihelloy.chatmoderator.services.HeldChatPipeline;
+import com.Hihelloy.chatmoderator.services.MetricsHttpServer;
+import com.Hihelloy.chatmoderator.services.ModeratedCommands;
+import com.Hihelloy.chatmoderator.services.ModerationExecutor;
+import com.Hihelloy.chatmoderator.services.ModerationMetrics;
 import com.Hihelloy.chatmoderator.services.ModerationService;
+import com.Hihelloy.chatmoderator.services.MuteStore;
+import com.Hihelloy.chatmoderator.services.NotificationService;
+import com.Hihelloy.chatmoderator.services.SpamDetector;
+import com.Hihelloy.chatmoderator.services.TrustStore;
 import com.Hihelloy.chatmoderator.commands.ChatModCommand;
 import com.Hihelloy.chatmoderator.utils.SchedulerUtil;
 import org.bukkit.Bukkit;
@@ -15,7 +28,19 @@ import java.util.logging.Logger;
 public class ChatModeratorPlugin extends JavaPlugin {
 
     private ConfigManager configManager;
+    private BlockedWordStore blockedWordStore;
+    private ModerationExecutor moderationExecutor;
+    private ModerationMetrics metrics;
+    private MetricsHttpServer metricsHttpServer;
     private ModerationService moderationService;
+    private HeldChatPipeline heldChatPipeline;
+    private MuteStore muteStore;
+    private TrustStore trustStore;
+    private AuditLog auditLog;
+    private NotificationService notificationService;
+    private SpamDetector spamDetector;
+    private ConversationContext conversationContext;
+    private ModeratedCommands moderatedCommands;
     private SchedulerUtil schedulerUtil;
     private ChatListener chatListener;
 
@@ -38,20 +63,69 @@ public class ChatModeratorPlugin extends JavaPlugin {
         configManager = new ConfigManager(this);
         configManager.loadConfig();
 
+        // Blocked words live in their own file
+        blockedWordStore = new BlockedWordStore(this);
+        blockedWordStore.load();
+
+        // One repeating task runs verdict reactions instead of a scheduled task per message
+        SchedulerUtil.startDispatcher(configManager.snapshot().dispatch().tickBudgetMillis());
+
+        // Dedicated executor for blocking AI calls (sized at startup)
+        moderationExecutor = new ModerationExecutor(log, configManager.useVirtualThreads(),
+                configManager.getExecutorThreads(), configManager.getExecutorQueueSize());
+
+        // Pipeline counters and stage latencies, recorded from here on
+        metrics = new ModerationMetrics();
+
         // Initialize ModerationService (fully initialized)
         moderationService = new ModerationService(this, configManager);
 
+        // Initialize hold-and-release delivery for AI verdicts
+        heldChatPipeline = new HeldChatPipeline(this, configManager);
+
+        // Load persisted mutes
+        muteStore = new MuteStore(this);
+        muteStore.load();
+
+        // Per-player trust scores, deciding how deeply messages are checked
+        trustStore = new TrustStore(this, configManager);
+        trustStore.load();
+
+        // Violation audit log, written off the chat thread
+        auditLog = new AuditLog(this, configManager);
+        auditLog.load();
+
+        // Staff notifications for violations
+        notificationService = new NotificationService(configManager);
+        notificationService.load();
+
+        // Initialize spam and flood detection (runs before any AI work)
+        spamDetector = new SpamDetector(configManager);
+
+        // Recent lines per player and of public chat, for split-message checks
+        conversationContext = new ConversationContext(configManager);
+
+        // Whispers and other chat-like commands are moderated too
+        moderatedCommands = new ModeratedCommands(this, configManager);
+        moderatedCommands.load();
+
         // Initialize ChatListener
         chatListener = new ChatListener(this);
 
         // Register event listeners
         getServer().getPluginManager().registerEvents(chatListener, this);
+        // Signs, books, anvil renames and player names
+        getServer().getPluginManager().registerEvents(new ContentListener(this, chatListener), this);
 
         // Register commands
         ChatModCommand chatModCommand = new ChatModCommand(this, chatListener);
         getCommand("chatmod").setExecutor(chatModCommand);
         getCommand("chatmod").setTabCompleter(chatModCommand);
 
+        // Optional Prometheus endpoint
+        metricsHttpServer = new MetricsHttpServer(this);
+        metricsHttpServer.apply(configManager.snapshot().metrics());
+
         log.info(configManager.getPluginEnabled());
 
         // Warn if AI keys missing
@@ -60,7 +134,17 @@ public class ChatModeratorPlugin extends JavaPlugin {
 
     @Override
     public void onDisable() {
+        blockedWordStore.saveNow();
+        configManager.saveNow();
+        metricsHttpServer.stop();
+        moderationService.shutdown();
+        moderationExecutor.shutdown();
+        // Run verdicts still queued for the main thread (mutes, audit records) while the stores are open
         SchedulerUtil.shutdown();
+        muteStore.shutdown();
+        trustStore.shutdown();
+        auditLog.shutdown();
+        notificationService.shutdown();
         log.info(configManager.getPluginDisabled());
     }
 
@@ -80,10 +164,54 @@ public class ChatModeratorPlugin extends JavaPlugin {
         return configManager;
     }
 
+    public BlockedWordStore getBlockedWordStore() {
+        return blockedWordStore;
+    }
+
+    public ModerationExecutor getModerationExecutor() {
+        return moderationExecutor;
+    }
+
+    public ModerationMetrics getMetrics() {
+        return metrics;
+    }
+
     public ModerationService getModerationService() {
         return moderationService;
     }
 
+    public HeldChatPipeline getHeldChatPipeline() {
+        return heldChatPipeline;
+    }
+
+    public MuteStore getMuteStore() {
+        return muteStore;
+    }
+
+    public TrustStore getTrustStore() {
+        return trustStore;
+    }
+
+    public AuditLog getAuditLog() {
+        return auditLog;
+    }
+
+    public NotificationService getNotificationService() {
+        return notificationService;
+    }
+
+    public SpamDetector getSpamDetector() {
+        return spamDetector;
+    }
+
+    public ConversationContext getConversationContext() {
+        return conversationContext;
+    }
+
+    public ModeratedCommands getModeratedCommands() {
+        return moderatedCommands;
+    }
+
     public SchedulerUtil getSchedulerUtil() {
         return schedulerUtil;
     }
@@ -95,6 +223,17 @@ public class ChatModeratorPlugin extends JavaPlugin {
     public void reloadPluginConfig() {
         configManager.reloadConfig();
         configManager.applyNewConfigOptions();
+        blockedWordStore.reload();
+        moderationService.resetVerdictCache();
+        moderationService.reconfigureBatching();
+        moderationService.reconfigureQuota();
+        moderationService.reloadProvider();
+        moderationService.reloadRules();
+        metricsHttpServer.apply(configManager.snapshot().metrics());
+        notificationService.reload();
+        conversationContext.reload();
+        moderatedCommands.reload();
+        SchedulerUtil.setDispatchBudget(configManager.snapshot().dispatch().tickBudgetMillis());
         Bukkit.getLogger().info(configManager.getPluginReloaded());
     }
 }
@@ -3,19 +3,41 @@ package com.Hihelloy.chatmoderator.commands;
 import com.Hihelloy.chatmoderator.ChatModeratorPlugin;
 import com.Hihelloy.chatmoderator.config.ConfigManager;
 import com.Hihelloy.chatmoderator.listeners.ChatListener;
+import com.Hihelloy.chatmoderator.services.AuditLog;
+import com.Hihelloy.chatmoderator.services.CircuitBreaker;
+import com.Hihelloy.chatmoderator.services.HeldChatPipeline;
+import com.Hihelloy.chatmoderator.services.LocalClassifier;
+import com.Hihelloy.chatmoderator.services.ModerationExecutor;
+import com.Hihelloy.chatmoderator.services.ModerationMetrics;
 import com.Hihelloy.chatmoderator.services.ModerationService;
+import com.Hihelloy.chatmoderator.services.MuteStore;
+import com.Hihelloy.chatmoderator.services.NotificationService;
+import com.Hihelloy.chatmoderator.services.QuotaGovernor;
+import com.Hihelloy.chatmoderator.services.TrustStore;
+import com.Hihelloy.chatmoderator.services.VerdictCache;
+import com.Hihelloy.chatmoderator.utils.LatencyHistogram;
+import com.Hihelloy.chatmoderator.utils.ModerationCategory;
 import com.Hihelloy.chatmoderator.utils.SchedulerUtil;
 import org.bukkit.Bukkit;
 import org.bukkit.ChatColor;
 import org.bukkit.command.*;
-import org.bukkit.configuration.file.FileConfiguration;
 import org.bukkit.entity.Player;
 
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
+import java.util.UUID;
 
 public class ChatModCommand implements CommandExecutor, TabCompleter {
 
+    private static final int DEFAULT_HISTORY_COUNT = 10;
+    private static final DateTimeFormatter HISTORY_TIME = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm")
+            .withZone(ZoneId.systemDefault());
+
     private final ChatModeratorPlugin plugin;
     private final ConfigManager configManager;
     private final ChatListener chatListener;
@@ -41,6 +63,9 @@ public class ChatModCommand implements CommandExecutor, TabCompleter {
             case "toggle":
             case "add-word":
             case "remove-word":
+            case "retrain":
+            case "metrics":
+            case "history":
                 if (!sender.hasPermission("chatmoderator.admin")) {
                     sender.sendMessage(ChatColor.RED + "You don't have permission to use this command.");
                     return true;
@@ -63,18 +88,43 @@ public class ChatModCommand implements CommandExecutor, TabCompleter {
 
             case "add-word":
                 if (args.length < 2) {
-                    sender.sendMessage(ChatColor.RED + "Usage: /chatmod add-word <word>");
+                    sender.sendMessage(ChatColor.RED + "Usage: /chatmod add-word <word> [word...]");
                     return true;
                 }
-                handleAddWord(sender, args[1]);
+                handleAddWord(sender, Arrays.asList(args).subList(1, args.length));
                 break;
 
             case "remove-word":
                 if (args.length < 2) {
-                    sender.sendMessage(ChatColor.RED + "Usage: /chatmod remove-word <word>");
+                    sender.sendMessage(ChatColor.RED + "Usage: /chatmod remove-word <word> [word...]");
+                    return true;
+                }
+                handleRemoveWord(sender, Arrays.asList(args).subList(1, args.length));
+                break;
+
+            case "retrain":
+                handleRetrain(sender);
+                break;
+
+            case "history":
+                if (args.length < 2) {
+                    sender.sendMessage(ChatColor.RED + "Usage: /chatmod history <player> [count]");
                     return true;
                 }
-                handleRemoveWord(sender, args[1]);
+                int count = DEFAULT_HISTORY_COUNT;
+                if (args.length > 2) {
+                    try {
+                        count = Integer.parseInt(args[2]);
+                    } catch (NumberFormatException e) {
+                        sender.sendMessage(ChatColor.RED + "Count must be a number.");
+                        return true;
+                    }
+                }
+                handleHistory(sender, args[1], count);
+                break;
+
+            case "metrics":
+                handleMetrics(sender, args.length > 1 && args[1].equalsIgnoreCase("reset"));
                 break;
 
             case "unmute":
@@ -108,13 +158,13 @@ public class ChatModCommand implements CommandExecutor, TabCompleter {
                     return true;
                 }
                 sender.sendMessage(ChatColor.GOLD + "=== Muted Players ===");
-                if (chatListener.getMutedPlayers().isEmpty()) {
+                Collection<MuteStore.MuteEntry> mutes = plugin.getMuteStore().getMutes();
+                if (mutes.isEmpty()) {
                     sender.sendMessage(ChatColor.YELLOW + "No players are currently muted.");
                 } else {
-                    for (Player p : chatListener.getMutedPlayers().keySet()) {
-                        long unmuteTime = chatListener.getMutedPlayers().get(p);
-                        String timeStr = (unmuteTime == -1) ? "Permanent" : (unmuteTime + " ms remaining");
-                        sender.sendMessage(ChatColor.YELLOW + p.getName() + " - " + timeStr);
+                    for (MuteStore.MuteEntry mute : mutes) {
+                        String timeStr = (mute.getRemainingMillis() / 1000) + "s remaining";
+                        sender.sendMessage(ChatColor.YELLOW + mute.getName() + " - " + timeStr);
                     }
                 }
                 break;
@@ -131,10 +181,14 @@ public class ChatModCommand implements CommandExecutor, TabCompleter {
         sender.sendMessage(ChatColor.YELLOW + "/chatmod reload " + ChatColor.WHITE + "- Reload configuration");
         sender.sendMessage(ChatColor.YELLOW + "/chatmod status " + ChatColor.WHITE + "- Show plugin status");
         sender.sendMessage(ChatColor.YELLOW + "/chatmod toggle " + ChatColor.WHITE + "- Toggle moderation on/off");
-        sender.sendMessage(ChatColor.YELLOW + "/chatmod add-word <word> " + ChatColor.WHITE + "- Add blocked word");
-        sender.sendMessage(ChatColor.YELLOW + "/chatmod remove-word <word> " + ChatColor.WHITE + "- Remove blocked word");
+        sender.sendMessage(ChatColor.YELLOW + "/chatmod add-word <word> [word...] " + ChatColor.WHITE + "- Add blocked words");
+        sender.sendMessage(ChatColor.YELLOW + "/chatmod remove-word <word> [word...] " + ChatColor.WHITE + "- Remove blocked words");
         sender.sendMessage(ChatColor.YELLOW + "/chatmod unmute <player> " + ChatColor.WHITE + "- Unmute a muted player");
+        sender.sendMessage(ChatColor.YELLOW + "/chatmod mutedplayers " + ChatColor.WHITE + "- List muted players");
         sender.sendMessage(ChatColor.YELLOW + "/chatmod aitest <message> " + ChatColor.WHITE + "- Test AI moderation");
+        sender.sendMessage(ChatColor.YELLOW + "/chatmod retrain " + ChatColor.WHITE + "- Retrain the local classifier");
+        sender.sendMessage(ChatColor.YELLOW + "/chatmod history <player> [count] " + ChatColor.WHITE + "- Show a player's recent violations");
+        sender.sendMessage(ChatColor.YELLOW + "/chatmod metrics [reset] " + ChatColor.WHITE + "- Show pipeline counters and latencies");
     }
 
     private void handleReload(CommandSender sender) {
@@ -155,7 +209,19 @@ public class ChatModCommand implements CommandExecutor, TabCompleter {
                 (configManager.isAIModerationEnabled() ? ChatColor.GREEN + "Enabled" : ChatColor.RED + "Disabled"));
         sender.sendMessage(ChatColor.YELLOW + "Word Filter: " +
                 (configManager.isWordFilterEnabled() ? ChatColor.GREEN + "Enabled" : ChatColor.RED + "Disabled"));
-        sender.sendMessage(ChatColor.YELLOW + "Blocked Words: " + ChatColor.WHITE + configManager.getBlockedWords().size());
+        sender.sendMessage(ChatColor.YELLOW + "Blocked Words: " + ChatColor.WHITE + plugin.getBlockedWordStore().size());
+        sender.sendMessage(ChatColor.YELLOW + "Local Rules: " + ChatColor.WHITE + moderationService.getRuleEngine().getRuleCount());
+        LocalClassifier classifier = moderationService.getLocalClassifier();
+        sender.sendMessage(ChatColor.YELLOW + "Local Classifier: " + (!configManager.isLocalClassifierEnabled()
+                ? ChatColor.RED + "Disabled"
+                : !classifier.isTrained() ? ChatColor.GOLD + "Not trained (use /chatmod retrain)"
+                : ChatColor.GREEN + "Trained on " + classifier.getTrainedSampleCount() + " samples" + ChatColor.WHITE
+                + ", " + moderationService.getDecidedLocallyCount() + " decided locally, "
+                + moderationService.getForwardedCount() + " forwarded"));
+        sender.sendMessage(ChatColor.YELLOW + "Spam Filter: " +
+                (configManager.isSpamDetectionEnabled()
+                        ? ChatColor.GREEN + "Enabled" + ChatColor.WHITE + " (" + plugin.getSpamDetector().getBlockedCount() + " blocked)"
+                        : ChatColor.RED + "Disabled"));
 
         // API checks
         boolean openaiConfigured = configManager.getOpenAIApiKey() != null &&
@@ -171,63 +237,198 @@ public class ChatModCommand implements CommandExecutor, TabCompleter {
         String preferredProvider = configManager.getPreferredAIProvider();
         sender.sendMessage(ChatColor.YELLOW + "Preferred AI Provider: " +
                 (preferredProvider != null ? ChatColor.GREEN + preferredProvider : ChatColor.RED + "Not Configured"));
+        String activeProvider = moderationService.getProviderName();
+        sender.sendMessage(ChatColor.YELLOW + "Active AI Provider: " +
+                ("none".equals(activeProvider) ? ChatColor.RED + "None (local rules only)" : ChatColor.GREEN + activeProvider));
+
+        ModerationExecutor executor = plugin.getModerationExecutor();
+        sender.sendMessage(ChatColor.YELLOW + "AI Executor: " + ChatColor.WHITE
+                + (executor.isUsingVirtualThreads() ? "virtual threads" : "thread pool")
+                + ", " + executor.getRejectedCount() + " shed to local rules");
+
+        CircuitBreaker breaker = moderationService.getCircuitBreaker();
+        ChatColor breakerColor = breaker.getState() == CircuitBreaker.State.CLOSED ? ChatColor.GREEN
+                : breaker.getState() == CircuitBreaker.State.OPEN ? ChatColor.RED : ChatColor.GOLD;
+        sender.sendMessage(ChatColor.YELLOW + "AI Circuit Breaker: " + breakerColor + breaker.getState()
+                + ChatColor.WHITE + String.format(", %.1f%% errors in last %d requests, timeout %dms",
+                breaker.getErrorRate() * 100, breaker.getWindowCount(), breaker.getTimeoutMillis()));
+
+        QuotaGovernor quota = moderationService.getQuotaGovernor();
+        if (quota.isLimited()) {
+            sender.sendMessage(ChatColor.YELLOW + "AI Quota: " + ChatColor.WHITE
+                    + quota.getQueueDepth() + " queued, "
+                    + quota.getAdmittedCount() + " sent, "
+                    + quota.getDelayedCount() + " delayed, "
+                    + quota.getExpiredCount() + " expired, "
+                    + quota.getShedCount() + " left to local rules");
+        }
+
+        if (configManager.snapshot().trust().enabled()) {
+            TrustStore trust = plugin.getTrustStore();
+            sender.sendMessage(ChatColor.YELLOW + "Trust Tiers: " + ChatColor.WHITE
+                    + trust.size() + " players scored, AI checks "
+                    + trust.getFullCheckCount() + " full, "
+                    + trust.getSampledCheckCount() + " sampled, "
+                    + trust.getLocalOnlyCheckCount() + " skipped");
+        }
+
+        if (configManager.snapshot().commands().enabled()) {
+            sender.sendMessage(ChatColor.YELLOW + "Moderated Commands: " + ChatColor.WHITE
+                    + plugin.getModeratedCommands().size() + " labels, aliases included");
+        }
+
+        if (configManager.isCacheEnabled()) {
+            VerdictCache cache = moderationService.getVerdictCache();
+            sender.sendMessage(ChatColor.YELLOW + "Verdict Cache: " + ChatColor.WHITE
+                    + cache.size() + " entries, "
+                    + cache.getHits() + " hits, "
+                    + cache.getMisses() + " misses, "
+                    + cache.getEvictions() + " evictions");
+        }
+
+        if (configManager.shouldNotifyAdmins()) {
+            NotificationService notifications = plugin.getNotificationService();
+            sender.sendMessage(ChatColor.YELLOW + "Staff Notifications: " + ChatColor.WHITE
+                    + notifications.getAudienceSize() + " staff online, "
+                    + notifications.getSentCount() + " sent, "
+                    + notifications.getSuppressedCount() + " held back by cooldown");
+        }
+
+        if (configManager.isHoldDeliveryEnabled()) {
+            HeldChatPipeline pipeline = plugin.getHeldChatPipeline();
+            sender.sendMessage(ChatColor.YELLOW + "Held Delivery: " + ChatColor.WHITE
+                    + "pending " + pipeline.getPendingCount()
+                    + ", held " + pipeline.getHeldCount()
+                    + ", released " + pipeline.getReleasedCount()
+                    + ", blocked " + pipeline.getBlockedCount()
+                    + ", dropped " + pipeline.getDroppedCount()
+                    + ", timed out " + pipeline.getTimedOutCount()
+                    + " (budget " + configManager.getHoldLatencyBudgetMs() + "ms)");
+        }
     }
 
     private void handleToggle(CommandSender sender) {
-        FileConfiguration config = plugin.getConfig();
         boolean newState = !configManager.isModerationEnabled();
-        config.set("moderation.enabled", newState);
-        plugin.saveConfig();
-        configManager.reloadConfig();
+        configManager.setModerationEnabled(newState);
         sender.sendMessage(ChatColor.translateAlternateColorCodes('&',
                 newState ? configManager.getPluginEnabled() : configManager.getPluginDisabled()));
     }
 
-    private void handleAddWord(CommandSender sender, String word) {
-        FileConfiguration config = plugin.getConfig();
-        List<String> blockedWords = new ArrayList<>(config.getStringList("moderation.blocked-words"));
-
-        if (blockedWords.contains(word.toLowerCase())) {
-            sender.sendMessage(ChatColor.RED + "Word '" + word + "' is already in the blocked list.");
+    private void handleAddWord(CommandSender sender, List<String> words) {
+        List<String> added = plugin.getBlockedWordStore().add(words);
+        if (added.isEmpty()) {
+            sender.sendMessage(ChatColor.RED + (words.size() == 1
+                    ? "Word '" + words.get(0) + "' is already in the blocked list."
+                    : "All of these words are already in the blocked list."));
             return;
         }
-
-        blockedWords.add(word.toLowerCase());
-        config.set("moderation.blocked-words", blockedWords);
-        plugin.saveConfig();
-        configManager.reloadConfig();
-        sender.sendMessage(ChatColor.GREEN + "Added '" + word + "' to blocked words list.");
+        sender.sendMessage(ChatColor.GREEN + (added.size() == 1
+                ? "Added '" + added.get(0) + "' to blocked words list."
+                : "Added " + added.size() + " words to blocked words list."));
     }
 
-    private void handleRemoveWord(CommandSender sender, String word) {
-        FileConfiguration config = plugin.getConfig();
-        List<String> blockedWords = new ArrayList<>(config.getStringList("moderation.blocked-words"));
-
-        if (!blockedWords.contains(word.toLowerCase())) {
-            sender.sendMessage(ChatColor.RED + "Word '" + word + "' is not in the blocked list.");
+    private void handleRemoveWord(CommandSender sender, List<String> words) {
+        List<String> removed = plugin.getBlockedWordStore().remove(words);
+        if (removed.isEmpty()) {
+            sender.sendMessage(ChatColor.RED + (words.size() == 1
+                    ? "Word '" + words.get(0) + "' is not in the blocked list."
+                    : "None of these words are in the blocked list."));
             return;
         }
-
-        blockedWords.remove(word.toLowerCase());
-        config.set("moderation.blocked-words", blockedWords);
-        plugin.saveConfig();
-        configManager.reloadConfig();
-        sender.sendMessage(ChatColor.GREEN + "Removed '" + word + "' from blocked words list.");
+        sender.sendMessage(ChatColor.GREEN + (removed.size() == 1
+                ? "Removed '" + removed.get(0) + "' from blocked words list."
+                : "Removed " + removed.size() + " words from blocked words list."));
     }
 
     private void handleUnmute(CommandSender sender, String targetName) {
-        Player target = Bukkit.getPlayerExact(targetName);
-        if (target == null) {
-            sender.sendMessage(ChatColor.RED + "Player not found.");
+        // Offline players are looked up by the name they had when muted
+        Player online = Bukkit.getPlayerExact(targetName);
+        MuteStore.MuteEntry mute = online != null ? null : plugin.getMuteStore().findByName(targetName);
+        if (online == null && mute == null) {
+            sender.sendMessage(ChatColor.RED + "Player " + targetName + " is not muted.");
             return;
         }
 
-        if (chatListener.isMuted(target)) {
-            chatListener.unmutePlayer(target);
-            sender.sendMessage(ChatColor.GREEN + "Player " + target.getName() + " has been unmuted.");
+        UUID uuid = online != null ? online.getUniqueId() : mute.getUniqueId();
+        String name = online != null ? online.getName() : mute.getName();
+        if (chatListener.unmutePlayer(uuid)) {
+            sender.sendMessage(ChatColor.GREEN + "Player " + name + " has been unmuted.");
         } else {
-            sender.sendMessage(ChatColor.RED + "Player " + target.getName() + " is not muted.");
+            sender.sendMessage(ChatColor.RED + "Player " + name + " is not muted.");
+        }
+    }
+
+    private void handleRetrain(CommandSender sender) {
+        sender.sendMessage(ChatColor.GOLD + "Retraining the local classifier...");
+        moderationService.getLocalClassifier().retrain(configManager.snapshot().classifier())
+                .thenAccept(summary -> SchedulerUtil.runGlobal(() ->
+                        sender.sendMessage(ChatColor.YELLOW + summary)));
+    }
+
+    private void handleHistory(CommandSender sender, String targetName, int count) {
+        int limit = Math.max(1, Math.min(count, configManager.snapshot().audit().historyPerPlayer()));
+        plugin.getAuditLog().history(targetName, limit).whenComplete((violations, error) ->
+                SchedulerUtil.runGlobal(() -> {
+                    if (error != null) {
+                        sender.sendMessage(ChatColor.RED + "Failed to read the audit log: " + error.getMessage());
+                        return;
+                    }
+                    if (violations.isEmpty()) {
+                        sender.sendMessage(ChatColor.YELLOW + "No violations recorded for " + targetName + ".");
+                        return;
+                    }
+                    sender.sendMessage(ChatColor.GOLD + "=== Violations by " + violations.get(0).getName()
+                            + " (last " + violations.size() + ") ===");
+                    for (AuditLog.Violation violation : violations) {
+                        sender.sendMessage(ChatColor.GRAY + HISTORY_TIME.format(Instant.ofEpochMilli(violation.getTime()))
+                                + " " + ChatColor.YELLOW + violation.getReason());
+                        sender.sendMessage(ChatColor.WHITE + "  " + violation.getMessage());
+                    }
+                }));
+    }
+
+    private void handleMetrics(CommandSender sender, boolean reset) {
+        ModerationMetrics metrics = plugin.getMetrics();
+        if (reset) {
+            metrics.reset();
+            sender.sendMessage(ChatColor.GREEN + "Metrics reset.");
+            return;
+        }
+
+        sender.sendMessage(ChatColor.GOLD + "=== Chat Moderator Metrics ===");
+        sender.sendMessage(ChatColor.YELLOW + "Messages: " + ChatColor.WHITE + metrics.getMessageCount()
+                + ", blocked by spam filter " + plugin.getSpamDetector().getBlockedCount()
+                + ", word filter " + metrics.getBlockedByWordFilterCount()
+                + ", moderation " + metrics.getBlockedByModerationCount());
+        sender.sendMessage(ChatColor.YELLOW + "AI Provider: " + ChatColor.WHITE
+                + moderationService.getForwardedCount() + " forwarded, "
+                + metrics.getProviderFailureCount() + " failed");
+        sender.sendMessage(ChatColor.YELLOW + "Stage latencies " + ChatColor.WHITE + "(count, p50 / p90 / p99 / max):");
+        for (ModerationMetrics.Stage stage : ModerationMetrics.Stage.values()) {
+            LatencyHistogram.Snapshot latency = metrics.getLatency(stage).snapshot();
+            if (latency.getCount() == 0) {
+                sender.sendMessage(ChatColor.YELLOW + "  " + stage.getDisplayName() + ": " + ChatColor.GRAY + "no samples");
+                continue;
+            }
+            sender.sendMessage(ChatColor.YELLOW + "  " + stage.getDisplayName() + ": " + ChatColor.WHITE
+                    + latency.getCount() + ", "
+                    + formatNanos(latency.getPercentile(50)) + " / "
+                    + formatNanos(latency.getPercentile(90)) + " / "
+                    + formatNanos(latency.getPercentile(99)) + " / "
+                    + formatNanos(latency.getMax()));
         }
+
+        LatencyHistogram.Snapshot drain = SchedulerUtil.getDispatchDrainTime().snapshot();
+        sender.sendMessage(ChatColor.YELLOW + "Dispatcher: " + ChatColor.WHITE
+                + SchedulerUtil.getDispatchQueueDepth() + " queued, drain p50 " + formatNanos(drain.getPercentile(50))
+                + ", p99 " + formatNanos(drain.getPercentile(99)) + ", max " + formatNanos(drain.getMax()));
+    }
+
+    private static String formatNanos(long nanos) {
+        if (nanos < 1_000) return nanos + "ns";
+        if (nanos < 1_000_000) return String.format("%.1fµs", nanos / 1e3);
+        if (nanos < 1_000_000_000) return String.format("%.1fms", nanos / 1e6);
+        return String.format("%.2fs", nanos / 1e9);
     }
 
     private void handleAITest(CommandSender sender, String message) {
@@ -238,6 +439,17 @@ public class ChatModCommand implements CommandExecutor, TabCompleter {
                 sender.sendMessage(ChatColor.GOLD + "=== AI Moderation Test Result ===");
                 sender.sendMessage(ChatColor.YELLOW + "Blocked: " + (result.isBlocked() ? ChatColor.RED + "Yes" : ChatColor.GREEN + "No"));
                 sender.sendMessage(ChatColor.YELLOW + "Reason: " + result.getReason());
+                if (result.hasScores()) {
+                    StringBuilder scores = new StringBuilder();
+                    for (ModerationCategory category : ModerationCategory.values()) {
+                        double score = result.getScore(category);
+                        if (score < 0.01) continue;
+                        if (scores.length() > 0) scores.append(", ");
+                        scores.append(category.getApiName()).append(String.format(" %.2f", score));
+                    }
+                    sender.sendMessage(ChatColor.YELLOW + "Scores: " + ChatColor.WHITE
+                            + (scores.length() > 0 ? scores : "all below 0.01"));
+                }
             });
         });
     }
@@ -247,19 +459,27 @@ public class ChatModCommand implements CommandExecutor, TabCompleter {
         List<String> completions = new ArrayList<>();
 
         if (args.length == 1) {
-            String[] subcommands = {"reload", "status", "toggle", "add-word", "remove-word", "unmute", "aitest", "mutedplayers"};
+            String[] subcommands = {"reload", "status", "toggle", "add-word", "remove-word", "unmute", "aitest", "mutedplayers", "retrain", "metrics", "history"};
             for (String sub : subcommands) {
                 if (sub.startsWith(args[0].toLowerCase())) completions.add(sub);
             }
         } else if (args.length == 2) {
             if (args[0].equalsIgnoreCase("remove-word")) {
-                for (String word : configManager.getBlockedWords()) {
+                for (String word : plugin.getBlockedWordStore().getWords()) {
                     if (word.startsWith(args[1].toLowerCase())) completions.add(word);
                 }
+            } else if (args[0].equalsIgnoreCase("history")) {
+                for (Player player : Bukkit.getOnlinePlayers()) {
+                    if (player.getName().toLowerCase().startsWith(args[1].toLowerCase())) {
+                        completions.add(player.getName());
+                    }
+                }
+            } else if (args[0].equalsIgnoreCase("metrics")) {
+                if ("reset".startsWith(args[1].toLowerCase())) completions.add("reset");
             } else if (args[0].equalsIgnoreCase("unmute")) {
-                for (Player p : Bukkit.getOnlinePlayers()) {
-                    if (chatListener.isMuted(p) && p.getName().toLowerCase().startsWith(args[1].toLowerCase())) {
-                        completions.add(p.getName());
+                for (MuteStore.MuteEntry mute : plugin.getMuteStore().getMutes()) {
+                    if (mute.getName().toLowerCase().startsWith(args[1].toLowerCase())) {
+                        completions.add(mute.getName());
                     }
                 }
             }
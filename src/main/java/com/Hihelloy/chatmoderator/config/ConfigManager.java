@@ -1,15 +1,25 @@
 package com.Hihelloy.chatmoderator.config;
 
 import com.Hihelloy.chatmoderator.ChatModeratorPlugin;
+import com.Hihelloy.chatmoderator.utils.AtomicFiles;
+import com.Hihelloy.chatmoderator.utils.SchedulerUtil;
 import org.bukkit.configuration.file.FileConfiguration;
-import java.util.List;
+
+import java.io.File;
+import java.io.IOException;
 import java.util.Map;
-import java.util.HashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
 
 public class ConfigManager {
 
+    // Settings changed by commands are written this long after the last change
+    private static final long SAVE_DELAY_TICKS = 20L;
+
     private final ChatModeratorPlugin plugin;
     private FileConfiguration config;
+    private volatile ConfigSnapshot snapshot;
+    private final AtomicBoolean savePending = new AtomicBoolean();
 
     public ConfigManager(ChatModeratorPlugin plugin) {
         this.plugin = plugin;
@@ -19,12 +29,16 @@ public class ConfigManager {
         plugin.saveDefaultConfig();  // Saves the default configuration file if it doesn't exist
         config = plugin.getConfig();
         applyNewConfigOptions();
+        publishSnapshot();
     }
 
     public void reloadConfig() {
+        // Don't lose a pending command change to the re-read
+        saveNow();
         plugin.reloadConfig();
         config = plugin.getConfig();
         applyNewConfigOptions();
+        publishSnapshot();
     }
 
     // This method applies new configuration options that might have been added in a newer version of the plugin
@@ -48,18 +62,260 @@ public class ConfigManager {
         if (!config.contains("actions.notify-admins")) {
             config.set("actions.notify-admins", true);  // Default value if not present
         }
+        if (!config.contains("actions.notify-cooldown-seconds")) {
+            config.set("actions.notify-cooldown-seconds", 10);  // Default value if not present
+        }
         if (!config.contains("actions.log-violations")) {
             config.set("actions.log-violations", true);  // Default value if not present
         }
+        if (!config.contains("audit.enabled")) {
+            config.set("audit.enabled", true);  // Default value if not present
+        }
+        if (!config.contains("audit.max-segment-mb")) {
+            config.set("audit.max-segment-mb", 16);  // Default value if not present
+        }
+        if (!config.contains("audit.max-segments")) {
+            config.set("audit.max-segments", 30);  // Default value if not present
+        }
+        if (!config.contains("audit.history-per-player")) {
+            config.set("audit.history-per-player", 50);  // Default value if not present
+        }
         if (!config.contains("debug.enabled")) {
             config.set("debug.enabled", false);  // Default value if not present
         }
         if (!config.contains("debug.log-all-messages")) {
             config.set("debug.log-all-messages", false);  // Default value if not present
         }
+        if (!config.contains("dispatch.tick-budget-ms")) {
+            config.set("dispatch.tick-budget-ms", 2);  // Default value if not present
+        }
+        if (!config.contains("metrics.http.enabled")) {
+            config.set("metrics.http.enabled", false);  // Default value if not present
+        }
+        if (!config.contains("metrics.http.bind")) {
+            config.set("metrics.http.bind", "127.0.0.1");  // Default value if not present
+        }
+        if (!config.contains("metrics.http.port")) {
+            config.set("metrics.http.port", 9225);  // Default value if not present
+        }
         if (!config.contains("moderation.mute-duration-seconds")) {
             config.set("moderation.mute-duration-seconds", 600);  // Default value if not present
         }
+        if (!config.contains("moderation.delivery-mode")) {
+            config.set("moderation.delivery-mode", "immediate");  // Default value if not present
+        }
+        if (!config.contains("moderation.hold.latency-budget-ms")) {
+            config.set("moderation.hold.latency-budget-ms", 1500);  // Default value if not present
+        }
+        if (!config.contains("moderation.hold.timeout-policy")) {
+            config.set("moderation.hold.timeout-policy", "release");  // Default value if not present
+        }
+        if (!config.contains("ai.batch.enabled")) {
+            config.set("ai.batch.enabled", true);  // Default value if not present
+        }
+        if (!config.contains("ai.batch.max-size")) {
+            config.set("ai.batch.max-size", 20);  // Default value if not present
+        }
+        if (!config.contains("ai.batch.linger-ms")) {
+            config.set("ai.batch.linger-ms", 50);  // Default value if not present
+        }
+        if (!config.contains("ai.executor.virtual-threads")) {
+            config.set("ai.executor.virtual-threads", true);  // Default value if not present
+        }
+        if (!config.contains("ai.executor.threads")) {
+            config.set("ai.executor.threads", 8);  // Default value if not present
+        }
+        if (!config.contains("ai.executor.queue-size")) {
+            config.set("ai.executor.queue-size", 256);  // Default value if not present
+        }
+        if (!config.contains("ai.circuit-breaker.failure-rate-threshold")) {
+            config.set("ai.circuit-breaker.failure-rate-threshold", 0.5);  // Default value if not present
+        }
+        if (!config.contains("ai.circuit-breaker.minimum-calls")) {
+            config.set("ai.circuit-breaker.minimum-calls", 10);  // Default value if not present
+        }
+        if (!config.contains("ai.circuit-breaker.window-size")) {
+            config.set("ai.circuit-breaker.window-size", 50);  // Default value if not present
+        }
+        if (!config.contains("ai.circuit-breaker.open-seconds")) {
+            config.set("ai.circuit-breaker.open-seconds", 30);  // Default value if not present
+        }
+        if (!config.contains("ai.circuit-breaker.half-open-calls")) {
+            config.set("ai.circuit-breaker.half-open-calls", 3);  // Default value if not present
+        }
+        if (!config.contains("ai.circuit-breaker.timeout-percentile")) {
+            config.set("ai.circuit-breaker.timeout-percentile", 0.99);  // Default value if not present
+        }
+        if (!config.contains("ai.circuit-breaker.timeout-multiplier")) {
+            config.set("ai.circuit-breaker.timeout-multiplier", 1.5);  // Default value if not present
+        }
+        if (!config.contains("ai.circuit-breaker.min-timeout-ms")) {
+            config.set("ai.circuit-breaker.min-timeout-ms", 500);  // Default value if not present
+        }
+        if (!config.contains("ai.circuit-breaker.max-timeout-ms")) {
+            config.set("ai.circuit-breaker.max-timeout-ms", 10000);  // Default value if not present
+        }
+        if (!config.contains("ai.quota.enabled")) {
+            config.set("ai.quota.enabled", true);  // Default value if not present
+        }
+        if (!config.contains("ai.quota.requests-per-minute")) {
+            config.set("ai.quota.requests-per-minute", 0);  // Default value if not present
+        }
+        if (!config.contains("ai.quota.tokens-per-minute")) {
+            config.set("ai.quota.tokens-per-minute", 0);  // Default value if not present
+        }
+        if (!config.contains("ai.quota.prompt-tokens")) {
+            config.set("ai.quota.prompt-tokens", 60);  // Default value if not present
+        }
+        if (!config.contains("ai.quota.max-wait-ms")) {
+            config.set("ai.quota.max-wait-ms", 2000);  // Default value if not present
+        }
+        if (!config.contains("ai.quota.max-queued")) {
+            config.set("ai.quota.max-queued", 500);  // Default value if not present
+        }
+        if (!config.contains("ai.quota.new-player-minutes")) {
+            config.set("ai.quota.new-player-minutes", 60);  // Default value if not present
+        }
+        if (!config.contains("ai.quota.recent-violation-minutes")) {
+            config.set("ai.quota.recent-violation-minutes", 30);  // Default value if not present
+        }
+        if (!config.contains("local-classifier.enabled")) {
+            config.set("local-classifier.enabled", true);  // Default value if not present
+        }
+        if (!config.contains("local-classifier.safe-below")) {
+            config.set("local-classifier.safe-below", 0.05);  // Default value if not present
+        }
+        if (!config.contains("local-classifier.block-above")) {
+            config.set("local-classifier.block-above", 0.97);  // Default value if not present
+        }
+        if (!config.contains("local-classifier.offline-threshold")) {
+            config.set("local-classifier.offline-threshold", 0.8);  // Default value if not present
+        }
+        if (!config.contains("local-classifier.collect-samples")) {
+            config.set("local-classifier.collect-samples", true);  // Default value if not present
+        }
+        if (!config.contains("local-classifier.max-samples")) {
+            config.set("local-classifier.max-samples", 50000);  // Default value if not present
+        }
+        if (!config.contains("local-classifier.min-accuracy")) {
+            config.set("local-classifier.min-accuracy", 0.9);  // Default value if not present
+        }
+        if (!config.contains("local-classifier.min-recall")) {
+            config.set("local-classifier.min-recall", 0.95);  // Default value if not present
+        }
+        if (!config.contains("spam.enabled")) {
+            config.set("spam.enabled", true);  // Default value if not present
+        }
+        if (!config.contains("spam.rate.burst")) {
+            config.set("spam.rate.burst", 5);  // Default value if not present
+        }
+        if (!config.contains("spam.rate.messages-per-second")) {
+            config.set("spam.rate.messages-per-second", 1.0);  // Default value if not present
+        }
+        if (!config.contains("spam.duplicates.max-similar")) {
+            config.set("spam.duplicates.max-similar", 2);  // Default value if not present
+        }
+        if (!config.contains("spam.duplicates.max-distance")) {
+            config.set("spam.duplicates.max-distance", 12);  // Default value if not present
+        }
+        if (!config.contains("spam.duplicates.window-seconds")) {
+            config.set("spam.duplicates.window-seconds", 30);  // Default value if not present
+        }
+        if (!config.contains("spam.flood.enabled")) {
+            config.set("spam.flood.enabled", true);  // Default value if not present
+        }
+        if (!config.contains("spam.flood.min-length")) {
+            config.set("spam.flood.min-length", 12);  // Default value if not present
+        }
+        if (!config.contains("spam.flood.max-repeats")) {
+            config.set("spam.flood.max-repeats", 5);  // Default value if not present
+        }
+        if (!config.contains("spam.flood.window-seconds")) {
+            config.set("spam.flood.window-seconds", 10);  // Default value if not present
+        }
+        if (!config.contains("trust.enabled")) {
+            config.set("trust.enabled", true);  // Default value if not present
+        }
+        if (!config.contains("trust.sampled-above")) {
+            config.set("trust.sampled-above", 250);  // Default value if not present
+        }
+        if (!config.contains("trust.local-only-above")) {
+            config.set("trust.local-only-above", 1000);  // Default value if not present
+        }
+        if (!config.contains("trust.sample-rate")) {
+            config.set("trust.sample-rate", 0.1);  // Default value if not present
+        }
+        if (!config.contains("trust.points-per-message")) {
+            config.set("trust.points-per-message", 1);  // Default value if not present
+        }
+        if (!config.contains("trust.points-per-hour")) {
+            config.set("trust.points-per-hour", 20);  // Default value if not present
+        }
+        if (!config.contains("trust.violation-penalty")) {
+            config.set("trust.violation-penalty", 500);  // Default value if not present
+        }
+        if (!config.contains("trust.half-life-days")) {
+            config.set("trust.half-life-days", 30);  // Default value if not present
+        }
+        if (!config.contains("trust.full-checks-after-violation-hours")) {
+            config.set("trust.full-checks-after-violation-hours", 24);  // Default value if not present
+        }
+        if (!config.contains("context.enabled")) {
+            config.set("context.enabled", true);  // Default value if not present
+        }
+        if (!config.contains("context.player-messages")) {
+            config.set("context.player-messages", 4);  // Default value if not present
+        }
+        if (!config.contains("context.channel-messages")) {
+            config.set("context.channel-messages", 8);  // Default value if not present
+        }
+        if (!config.contains("context.window-seconds")) {
+            config.set("context.window-seconds", 60);  // Default value if not present
+        }
+        if (!config.contains("context.max-message-length")) {
+            config.set("context.max-message-length", 40);  // Default value if not present
+        }
+        if (!config.contains("commands.enabled")) {
+            config.set("commands.enabled", true);  // Default value if not present
+        }
+        if (!config.contains("commands.moderated")) {
+            config.set("commands.moderated.msg", 1);  // Default value if not present
+            config.set("commands.moderated.tell", 1);  // Default value if not present
+            config.set("commands.moderated.w", 1);  // Default value if not present
+            config.set("commands.moderated.whisper", 1);  // Default value if not present
+            config.set("commands.moderated.pm", 1);  // Default value if not present
+            config.set("commands.moderated.r", 0);  // Default value if not present
+            config.set("commands.moderated.reply", 0);  // Default value if not present
+            config.set("commands.moderated.me", 0);  // Default value if not present
+            config.set("commands.moderated.mail", 2);  // Default value if not present
+        }
+        if (!config.contains("content.signs")) {
+            config.set("content.signs", true);  // Default value if not present
+        }
+        if (!config.contains("content.books")) {
+            config.set("content.books", true);  // Default value if not present
+        }
+        if (!config.contains("content.anvils")) {
+            config.set("content.anvils", true);  // Default value if not present
+        }
+        if (!config.contains("content.player-names")) {
+            config.set("content.player-names", true);  // Default value if not present
+        }
+        if (!config.contains("content.name-timeout-ms")) {
+            config.set("content.name-timeout-ms", 3000);  // Default value if not present
+        }
+        if (!config.contains("cache.enabled")) {
+            config.set("cache.enabled", true);  // Default value if not present
+        }
+        if (!config.contains("cache.max-size")) {
+            config.set("cache.max-size", 10000);  // Default value if not present
+        }
+        if (!config.contains("cache.safe-ttl-seconds")) {
+            config.set("cache.safe-ttl-seconds", 600);  // Default value if not present
+        }
+        if (!config.contains("cache.blocked-ttl-seconds")) {
+            config.set("cache.blocked-ttl-seconds", 3600);  // Default value if not present
+        }
         if (!config.contains("messages.message-blocked")) {
             config.set("messages.message-blocked", "&cYour message was blocked by the chat filter.");  // Default value
         }
@@ -67,7 +323,7 @@ public class ConfigManager {
             config.set("messages.violation-warning", "&eYour message contains inappropriate content. You have been muted, ask an admin for an unmute.");  // Default value
         }
         if (!config.contains("messages.admin-notification")) {
-            config.set("messages.admin-notification", "&6[ChatMod] &c{player} &7tried to send: &f{message}");  // Default value
+            config.set("messages.admin-notification", ConfigSnapshot.Messages.DEFAULT_ADMIN_NOTIFICATION);  // Default value
         }
         if (!config.contains("messages.plugin-reloaded")) {
             config.set("messages.plugin-reloaded", "&aChat Moderator configuration reloaded!");  // Default value
@@ -78,111 +334,217 @@ public class ConfigManager {
         if (!config.contains("messages.plugin-disabled")) {
             config.set("messages.plugin-disabled", "&cChat moderation disabled!");  // Default value
         }
+        if (!config.contains("messages.spam-blocked")) {
+            config.set("messages.spam-blocked", "&cPlease slow down, your message looks like spam.");  // Default value
+        }
+        if (!config.contains("messages.name-blocked")) {
+            config.set("messages.name-blocked", "&cThis player name isn't allowed on this server. Please change it to join.");  // Default value
+        }
 
         // Save the updated config file
         plugin.saveConfig();
     }
 
+    // Builds the typed snapshot and swaps it in with a single volatile write
+    private void publishSnapshot() {
+        snapshot = ConfigSnapshot.from(config);
+    }
+
+    /**
+     * Turns moderation on or off. Takes effect immediately; config.yml is written on an
+     * async thread shortly after.
+     */
+    public void setModerationEnabled(boolean enabled) {
+        synchronized (this) {
+            config.set("moderation.enabled", enabled);
+            publishSnapshot();
+        }
+        if (savePending.compareAndSet(false, true)) {
+            SchedulerUtil.runAsyncLater(this::saveNow, SAVE_DELAY_TICKS);
+        }
+    }
+
+    /**
+     * Writes config.yml if a command changed it. Called by the save timer, on reload and on shutdown.
+     */
+    public void saveNow() {
+        if (!savePending.getAndSet(false)) return;
+        String yaml;
+        synchronized (this) {
+            yaml = config.saveToString();
+        }
+        try {
+            AtomicFiles.write(new File(plugin.getDataFolder(), "config.yml").toPath(), yaml);
+        } catch (IOException e) {
+            plugin.getLogger().log(Level.WARNING, "Failed to save config.yml", e);
+        }
+    }
+
+    /**
+     * @return The current immutable config. Read it once per event and use its fields.
+     */
+    public ConfigSnapshot snapshot() {
+        return snapshot;
+    }
+
     // AI Configuration
     public String getOpenAIApiKey() {
-        return config.getString("openai.api-key", "");
+        return snapshot.ai().openAIApiKey();
     }
 
     public String getOpenAIModel() {
-        return config.getString("openai.model", "text-moderation-latest");
+        return snapshot.ai().openAIModel();
     }
 
     public String getGeminiApiKey() {
-        return config.getString("gemini.api-key", "");
+        return snapshot.ai().geminiApiKey();
     }
 
     public String getGeminiModel() {
-        return config.getString("gemini.model", "gemini-1.5-flash");
+        return snapshot.ai().geminiModel();
     }
 
     public String getPreferredAIProvider() {
-        return config.getString("ai.preferred-provider", "openai");
+        return snapshot.ai().preferredProvider();
+    }
+
+    public boolean isBatchingEnabled() {
+        return snapshot.ai().batchingEnabled();
+    }
+
+    public int getBatchMaxSize() {
+        return snapshot.ai().batchMaxSize();
+    }
+
+    public long getBatchLingerMillis() {
+        return snapshot.ai().batchLingerMillis();
+    }
+
+    public boolean useVirtualThreads() {
+        return snapshot.ai().virtualThreads();
+    }
+
+    public int getExecutorThreads() {
+        return snapshot.ai().executorThreads();
+    }
+
+    public int getExecutorQueueSize() {
+        return snapshot.ai().executorQueueSize();
     }
 
     // Moderation Settings
     public boolean isModerationEnabled() {
-        return config.getBoolean("moderation.enabled", true);
+        return snapshot.moderation().enabled();
     }
 
     public boolean isAIModerationEnabled() {
-        return config.getBoolean("moderation.use-ai-moderation", true);
+        return snapshot.moderation().aiModerationEnabled();
     }
 
     public boolean isWordFilterEnabled() {
-        return config.getBoolean("moderation.use-word-filter", true);
+        return snapshot.moderation().wordFilterEnabled();
+    }
+
+    // Chat delivery
+    public boolean isHoldDeliveryEnabled() {
+        return snapshot.moderation().holdDeliveryEnabled();
+    }
+
+    public long getHoldLatencyBudgetMs() {
+        return snapshot.moderation().holdLatencyBudgetMs();
     }
 
-    public List<String> getBlockedWords() {
-        return config.getStringList("moderation.blocked-words");
+    public boolean shouldReleaseOnTimeout() {
+        return snapshot.moderation().releaseOnTimeout();
     }
 
     public Map<String, Double> getModerationThresholds() {
-        Map<String, Double> thresholds = new HashMap<>();
-        if (config.isConfigurationSection("moderation.thresholds")) {
-            for (String key : config.getConfigurationSection("moderation.thresholds").getKeys(false)) {
-                thresholds.put(key, config.getDouble("moderation.thresholds." + key));
-            }
-        }
-        return thresholds;
+        return snapshot.moderation().thresholds();
+    }
+
+    // Local classifier
+    public boolean isLocalClassifierEnabled() {
+        return snapshot.classifier().enabled();
+    }
+
+    // Spam detection
+    public boolean isSpamDetectionEnabled() {
+        return snapshot.spam().enabled();
+    }
+
+    // Verdict cache
+    public boolean isCacheEnabled() {
+        return snapshot.cache().enabled();
+    }
+
+    public int getCacheMaxSize() {
+        return snapshot.cache().maxSize();
+    }
+
+    public long getCacheSafeTtlSeconds() {
+        return snapshot.cache().safeTtlSeconds();
+    }
+
+    public long getCacheBlockedTtlSeconds() {
+        return snapshot.cache().blockedTtlSeconds();
     }
 
     // Action Settings
     public boolean shouldBlockMessage() {
-        return config.getBoolean("actions.block-message", true);
+        return snapshot.actions().blockMessage();
     }
 
     public boolean shouldWarnPlayer() {
-        return config.getBoolean("actions.warn-player", true);
+        return snapshot.actions().warnPlayer();
     }
 
     public boolean shouldNotifyAdmins() {
-        return config.getBoolean("actions.notify-admins", true);
+        return snapshot.actions().notifyAdmins();
     }
 
     public boolean shouldLogViolations() {
-        return config.getBoolean("actions.log-violations", true);
+        return snapshot.actions().logViolations();
     }
 
     // Messages
     public String getMessageBlocked() {
-        return config.getString("messages.message-blocked", "&cYour message was blocked by the chat filter.");
+        return snapshot.messages().messageBlocked();
     }
 
     public String getViolationWarning() {
-        return config.getString("messages.violation-warning", "&eYour message contains inappropriate content. You have been muted, ask an admin for an unmute.");
+        return snapshot.messages().violationWarning();
     }
 
     public String getAdminNotification() {
-        return config.getString("messages.admin-notification", "&6[ChatMod] &c{player} &7tried to send: &f{message}");
+        return snapshot.messages().adminNotification();
     }
 
     public String getPluginReloaded() {
-        return config.getString("messages.plugin-reloaded", "&aChat Moderator configuration reloaded!");
+        return snapshot.messages().pluginReloaded();
     }
 
     public String getPluginEnabled() {
-        return config.getString("messages.plugin-enabled", "&aChat moderation enabled!");
+        return snapshot.messages().pluginEnabled();
     }
 
     public String getPluginDisabled() {
-        return config.getString("messages.plugin-disabled", "&cChat moderation disabled!");
+        return snapshot.messages().pluginDisabled();
+    }
+
+    public String getSpamBlocked() {
+        return snapshot.messages().spamBlocked();
     }
 
     // Debug Settings
     public boolean isDebugEnabled() {
-        return config.getBoolean("debug.enabled", false);
+        return snapshot.debug().enabled();
     }
 
     public boolean shouldLogAllMessages() {
-        return config.getBoolean("debug.log-all-messages", false);
+        return snapshot.debug().logAllMessages();
     }
 
     public int getMuteDurationSeconds() {
-        return config.getInt("moderation.mute-duration-seconds", 600);
+        return snapshot.moderation().muteDurationSeconds();
     }
 }
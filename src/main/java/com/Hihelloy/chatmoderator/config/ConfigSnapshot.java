@@ -0,0 +1,323 @@
+package com.Hihelloy.chatmoderator.config;
+
+import com.Hihelloy.chatmoderator.utils.ModerationCategory;
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.file.FileConfiguration;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Typed, immutable view of {@code config.yml}.<br><br>
+ *
+ * Built once by {@link ConfigManager} on load and reload, then published through a
+ * single volatile reference. Hot-path code reads plain fields from here instead of
+ * walking Bukkit's {@code MemorySection} maps, and never sees a half-applied reload.
+ */
+public record ConfigSnapshot(Ai ai,
+                             Breaker breaker,
+                             Quota quota,
+                             Moderation moderation,
+                             Classifier classifier,
+                             Spam spam,
+                             Trust trust,
+                             Context context,
+                             Commands commands,
+                             Content content,
+                             Cache cache,
+                             Actions actions,
+                             Audit audit,
+                             Messages messages,
+                             Debug debug,
+                             Metrics metrics,
+                             Dispatch dispatch) {
+
+    public static ConfigSnapshot from(FileConfiguration config) {
+        return new ConfigSnapshot(
+                Ai.from(config),
+                Breaker.from(config),
+                Quota.from(config),
+                Moderation.from(config),
+                Classifier.from(config),
+                Spam.from(config),
+                Trust.from(config),
+                Context.from(config),
+                Commands.from(config),
+                Content.from(config),
+                Cache.from(config),
+                Actions.from(config),
+                Audit.from(config),
+                Messages.from(config),
+                Debug.from(config),
+                Metrics.from(config),
+                Dispatch.from(config));
+    }
+
+    public record Ai(String preferredProvider, String openAIApiKey, String openAIModel,
+                     String geminiApiKey, String geminiModel,
+                     boolean batchingEnabled, int batchMaxSize, long batchLingerMillis,
+                     boolean virtualThreads, int executorThreads, int executorQueueSize) {
+
+        static Ai from(FileConfiguration config) {
+            return new Ai(
+                    config.getString("ai.preferred-provider", "openai"),
+                    config.getString("openai.api-key", ""),
+                    config.getString("openai.model", "text-moderation-latest"),
+                    config.getString("gemini.api-key", ""),
+                    config.getString("gemini.model", "gemini-1.5-flash"),
+                    config.getBoolean("ai.batch.enabled", true),
+                    config.getInt("ai.batch.max-size", 20),
+                    config.getLong("ai.batch.linger-ms", 50),
+                    config.getBoolean("ai.executor.virtual-threads", true),
+                    config.getInt("ai.executor.threads", 8),
+                    config.getInt("ai.executor.queue-size", 256));
+        }
+    }
+
+    public record Breaker(double failureRateThreshold, int minimumCalls, int windowSize, long openSeconds,
+                          int halfOpenCalls, double timeoutPercentile, double timeoutMultiplier,
+                          long minTimeoutMs, long maxTimeoutMs) {
+
+        static Breaker from(FileConfiguration config) {
+            long minTimeout = Math.max(1, config.getLong("ai.circuit-breaker.min-timeout-ms", 500));
+            return new Breaker(
+                    config.getDouble("ai.circuit-breaker.failure-rate-threshold", 0.5),
+                    Math.max(1, config.getInt("ai.circuit-breaker.minimum-calls", 10)),
+                    Math.max(1, config.getInt("ai.circuit-breaker.window-size", 50)),
+                    Math.max(1, config.getLong("ai.circuit-breaker.open-seconds", 30)),
+                    Math.max(1, config.getInt("ai.circuit-breaker.half-open-calls", 3)),
+                    Math.min(1.0, Math.max(0.5, config.getDouble("ai.circuit-breaker.timeout-percentile", 0.99))),
+                    Math.max(1.0, config.getDouble("ai.circuit-breaker.timeout-multiplier", 1.5)),
+                    minTimeout,
+                    Math.max(minTimeout, config.getLong("ai.circuit-breaker.max-timeout-ms", 10000)));
+        }
+    }
+
+    /**
+     * A budget of 0 means no limit. With both at 0 (or {@code enabled} off) provider calls are not throttled.
+     */
+    public record Quota(boolean enabled, int requestsPerMinute, int tokensPerMinute, int promptTokens,
+                        long maxWaitMillis, int maxQueued, long newPlayerMinutes, long recentViolationMinutes) {
+
+        static Quota from(FileConfiguration config) {
+            return new Quota(
+                    config.getBoolean("ai.quota.enabled", true),
+                    Math.max(0, config.getInt("ai.quota.requests-per-minute", 0)),
+                    Math.max(0, config.getInt("ai.quota.tokens-per-minute", 0)),
+                    Math.max(0, config.getInt("ai.quota.prompt-tokens", 60)),
+                    Math.max(1, config.getLong("ai.quota.max-wait-ms", 2000)),
+                    Math.max(1, config.getInt("ai.quota.max-queued", 500)),
+                    Math.max(0, config.getLong("ai.quota.new-player-minutes", 60)),
+                    Math.max(0, config.getLong("ai.quota.recent-violation-minutes", 30)));
+        }
+    }
+
+    /**
+     * {@code thresholdArray} holds {@code thresholds} indexed by {@link ModerationCategory}.
+     * It is shared by every reader, so it must not be modified.
+     */
+    public record Moderation(boolean enabled, boolean aiModerationEnabled, boolean wordFilterEnabled,
+                             Map<String, Double> thresholds, double[] thresholdArray, int muteDurationSeconds,
+                             boolean holdDeliveryEnabled, long holdLatencyBudgetMs, boolean releaseOnTimeout) {
+
+        static Moderation from(FileConfiguration config) {
+            Map<String, Double> thresholds = new HashMap<>();
+            if (config.isConfigurationSection("moderation.thresholds")) {
+                ConfigurationSection section = config.getConfigurationSection("moderation.thresholds");
+                for (String key : section.getKeys(false)) {
+                    thresholds.put(key, section.getDouble(key));
+                }
+            }
+
+            return new Moderation(
+                    config.getBoolean("moderation.enabled", true),
+                    config.getBoolean("moderation.use-ai-moderation", true),
+                    config.getBoolean("moderation.use-word-filter", true),
+                    Map.copyOf(thresholds),
+                    ModerationCategory.compileThresholds(thresholds),
+                    config.getInt("moderation.mute-duration-seconds", 600),
+                    "hold".equalsIgnoreCase(config.getString("moderation.delivery-mode", "immediate")),
+                    Math.max(1, config.getLong("moderation.hold.latency-budget-ms", 1500)),
+                    !"drop".equalsIgnoreCase(config.getString("moderation.hold.timeout-policy", "release")));
+        }
+    }
+
+    public record Classifier(boolean enabled, double safeBelow, double blockAbove, double offlineThreshold,
+                             boolean collectSamples, int maxSamples, double minAccuracy, double minRecall) {
+
+        static Classifier from(FileConfiguration config) {
+            return new Classifier(
+                    config.getBoolean("local-classifier.enabled", true),
+                    config.getDouble("local-classifier.safe-below", 0.05),
+                    config.getDouble("local-classifier.block-above", 0.97),
+                    config.getDouble("local-classifier.offline-threshold", 0.8),
+                    config.getBoolean("local-classifier.collect-samples", true),
+                    Math.max(100, config.getInt("local-classifier.max-samples", 50000)),
+                    Math.min(1.0, Math.max(0.0, config.getDouble("local-classifier.min-accuracy", 0.9))),
+                    Math.min(1.0, Math.max(0.0, config.getDouble("local-classifier.min-recall", 0.95))));
+        }
+    }
+
+    public record Spam(boolean enabled, int burst, double messagesPerSecond,
+                       int maxSimilar, int maxDistance, long duplicateWindowSeconds,
+                       boolean floodEnabled, int floodMinLength, int floodMaxRepeats, long floodWindowSeconds) {
+
+        static Spam from(FileConfiguration config) {
+            return new Spam(
+                    config.getBoolean("spam.enabled", true),
+                    Math.max(1, config.getInt("spam.rate.burst", 5)),
+                    config.getDouble("spam.rate.messages-per-second", 1.0),
+                    Math.max(1, config.getInt("spam.duplicates.max-similar", 2)),
+                    config.getInt("spam.duplicates.max-distance", 12),
+                    config.getLong("spam.duplicates.window-seconds", 30),
+                    config.getBoolean("spam.flood.enabled", true),
+                    config.getInt("spam.flood.min-length", 12),
+                    Math.max(1, config.getInt("spam.flood.max-repeats", 5)),
+                    Math.max(1, config.getLong("spam.flood.window-seconds", 10)));
+        }
+    }
+
+    public record Trust(boolean enabled, double sampledAbove, double localOnlyAbove, double sampleRate,
+                        double pointsPerMessage, double pointsPerHour, double violationPenalty, double halfLifeDays,
+                        long fullAfterViolationMillis) {
+
+        static Trust from(FileConfiguration config) {
+            double sampledAbove = config.getDouble("trust.sampled-above", 250);
+            return new Trust(
+                    config.getBoolean("trust.enabled", true),
+                    sampledAbove,
+                    Math.max(sampledAbove, config.getDouble("trust.local-only-above", 1000)),
+                    Math.min(1.0, Math.max(0.0, config.getDouble("trust.sample-rate", 0.1))),
+                    Math.max(0, config.getDouble("trust.points-per-message", 1)),
+                    Math.max(0, config.getDouble("trust.points-per-hour", 20)),
+                    Math.max(0, config.getDouble("trust.violation-penalty", 500)),
+                    Math.max(0.01, config.getDouble("trust.half-life-days", 30)),
+                    (long) (Math.max(0, config.getDouble("trust.full-checks-after-violation-hours", 24)) * 3_600_000L));
+        }
+    }
+
+    public record Context(boolean enabled, int playerMessages, int channelMessages, long windowSeconds,
+                          int maxMessageLength) {
+
+        static Context from(FileConfiguration config) {
+            return new Context(
+                    config.getBoolean("context.enabled", true),
+                    Math.max(1, config.getInt("context.player-messages", 4)),
+                    Math.max(1, config.getInt("context.channel-messages", 8)),
+                    Math.max(1, config.getLong("context.window-seconds", 60)),
+                    Math.max(0, config.getInt("context.max-message-length", 40)));
+        }
+    }
+
+    /**
+     * {@code moderated} maps lower-case command labels to the number of arguments before the text.
+     */
+    public record Commands(boolean enabled, Map<String, Integer> moderated) {
+
+        static Commands from(FileConfiguration config) {
+            Map<String, Integer> moderated = new HashMap<>();
+            if (config.isConfigurationSection("commands.moderated")) {
+                ConfigurationSection section = config.getConfigurationSection("commands.moderated");
+                for (String key : section.getKeys(false)) {
+                    moderated.put(key.toLowerCase(Locale.ROOT), Math.max(0, section.getInt(key)));
+                }
+            }
+            return new Commands(config.getBoolean("commands.enabled", true), Map.copyOf(moderated));
+        }
+    }
+
+    public record Content(boolean signs, boolean books, boolean anvils, boolean playerNames, long nameTimeoutMillis) {
+
+        static Content from(FileConfiguration config) {
+            return new Content(
+                    config.getBoolean("content.signs", true),
+                    config.getBoolean("content.books", true),
+                    config.getBoolean("content.anvils", true),
+                    config.getBoolean("content.player-names", true),
+                    Math.max(100, config.getLong("content.name-timeout-ms", 3000)));
+        }
+    }
+
+    public record Cache(boolean enabled, int maxSize, long safeTtlSeconds, long blockedTtlSeconds) {
+
+        static Cache from(FileConfiguration config) {
+            return new Cache(
+                    config.getBoolean("cache.enabled", true),
+                    config.getInt("cache.max-size", 10000),
+                    config.getLong("cache.safe-ttl-seconds", 600),
+                    config.getLong("cache.blocked-ttl-seconds", 3600));
+        }
+    }
+
+    public record Actions(boolean blockMessage, boolean warnPlayer, boolean notifyAdmins, long notifyCooldownSeconds,
+                          boolean logViolations) {
+
+        static Actions from(FileConfiguration config) {
+            return new Actions(
+                    config.getBoolean("actions.block-message", true),
+                    config.getBoolean("actions.warn-player", true),
+                    config.getBoolean("actions.notify-admins", true),
+                    Math.max(0, config.getLong("actions.notify-cooldown-seconds", 10)),
+                    config.getBoolean("actions.log-violations", true));
+        }
+    }
+
+    public record Audit(boolean enabled, long maxSegmentBytes, int maxSegments, int historyPerPlayer) {
+
+        static Audit from(FileConfiguration config) {
+            return new Audit(
+                    config.getBoolean("audit.enabled", true),
+                    Math.max(1, config.getLong("audit.max-segment-mb", 16)) * 1024 * 1024,
+                    Math.max(1, config.getInt("audit.max-segments", 30)),
+                    Math.max(1, config.getInt("audit.history-per-player", 50)));
+        }
+    }
+
+    public record Messages(String messageBlocked, String violationWarning, String adminNotification,
+                           String pluginReloaded, String pluginEnabled, String pluginDisabled,
+                           String spamBlocked, String nameBlocked) {
+
+        // Also written by ConfigManager for configs without the key, and shipped in config.yml
+        public static final String DEFAULT_ADMIN_NOTIFICATION =
+                "&6[ChatMod] &c{player} &7was muted for &e{reason}&7: &f{message}";
+
+        static Messages from(FileConfiguration config) {
+            return new Messages(
+                    config.getString("messages.message-blocked", "&cYour message was blocked by the chat filter."),
+                    config.getString("messages.violation-warning", "&eYour message contains inappropriate content. You have been muted, ask an admin for an unmute."),
+                    config.getString("messages.admin-notification", DEFAULT_ADMIN_NOTIFICATION),
+                    config.getString("messages.plugin-reloaded", "&aChat Moderator configuration reloaded!"),
+                    config.getString("messages.plugin-enabled", "&aChat moderation enabled!"),
+                    config.getString("messages.plugin-disabled", "&cChat moderation disabled!"),
+                    config.getString("messages.spam-blocked", "&cPlease slow down, your message looks like spam."),
+                    config.getString("messages.name-blocked", "&cThis player name isn't allowed on this server. Please change it to join."));
+        }
+    }
+
+    public record Debug(boolean enabled, boolean logAllMessages) {
+
+        static Debug from(FileConfiguration config) {
+            return new Debug(
+                    config.getBoolean("debug.enabled", false),
+                    config.getBoolean("debug.log-all-messages", false));
+        }
+    }
+
+    public record Dispatch(long tickBudgetMillis) {
+
+        static Dispatch from(FileConfiguration config) {
+            return new Dispatch(Math.max(1, config.getLong("dispatch.tick-budget-ms", 2)));
+        }
+    }
+
+    public record Metrics(boolean httpEnabled, String httpBind, int httpPort) {
+
+        static Metrics from(FileConfiguration config) {
+            return new Metrics(
+                    config.getBoolean("metrics.http.enabled", false),
+                    config.getString("metrics.http.bind", "127.0.0.1"),
+                    config.getInt("metrics.http.port", 9225));
+        }
+    }
+}
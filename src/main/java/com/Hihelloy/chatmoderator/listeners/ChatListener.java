@@ -2,8 +2,23 @@ package com.Hihelloy.chatmoderator.listeners;
 
 import com.Hihelloy.chatmoderator.ChatModeratorPlugin;
 import com.Hihelloy.chatmoderator.config.ConfigManager;
+import com.Hihelloy.chatmoderator.config.ConfigSnapshot;
+import com.Hihelloy.chatmoderator.services.AuditLog;
+import com.Hihelloy.chatmoderator.services.BlockedWordStore;
+import com.Hihelloy.chatmoderator.services.ConversationContext;
+import com.Hihelloy.chatmoderator.services.HeldChatPipeline;
+import com.Hihelloy.chatmoderator.services.ModeratedCommands;
+import com.Hihelloy.chatmoderator.services.ModerationMetrics;
 import com.Hihelloy.chatmoderator.services.ModerationService;
+import com.Hihelloy.chatmoderator.services.MuteStore;
+import com.Hihelloy.chatmoderator.services.NotificationService;
+import com.Hihelloy.chatmoderator.services.QuotaGovernor;
+import com.Hihelloy.chatmoderator.services.SpamDetector;
+import com.Hihelloy.chatmoderator.services.TrustStore;
+import com.Hihelloy.chatmoderator.utils.ModerationResult;
 import com.Hihelloy.chatmoderator.utils.SchedulerUtil;
+import com.Hihelloy.chatmoderator.utils.TextNormalizer;
+import com.Hihelloy.chatmoderator.utils.WordMatcher;
 import org.bukkit.Bukkit;
 import org.bukkit.ChatColor;
 import org.bukkit.entity.Player;
@@ -12,77 +27,117 @@ import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
 import org.bukkit.event.player.AsyncPlayerChatEvent;
 import org.bukkit.event.player.PlayerCommandPreprocessEvent;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
 
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.HashSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.UUID;
 
 public class ChatListener implements Listener {
 
     private final ChatModeratorPlugin plugin;
     private final ConfigManager configManager;
+    private final BlockedWordStore blockedWordStore;
     private final ModerationService moderationService;
+    private final QuotaGovernor quotaGovernor;
+    private final HeldChatPipeline heldChatPipeline;
+    private final SpamDetector spamDetector;
+    private final ConversationContext conversationContext;
+    private final ModeratedCommands moderatedCommands;
+    private final ModerationMetrics metrics;
 
-    private final Map<Player, Long> mutedPlayers = new ConcurrentHashMap<>();
+    private final MuteStore muteStore;
+    private final TrustStore trustStore;
+    private final AuditLog auditLog;
+    private final NotificationService notificationService;
 
     public ChatListener(ChatModeratorPlugin plugin) {
         this.plugin = plugin;
         this.configManager = plugin.getConfigManager();
+        this.blockedWordStore = plugin.getBlockedWordStore();
         this.moderationService = plugin.getModerationService();
+        this.quotaGovernor = moderationService.getQuotaGovernor();
+        this.heldChatPipeline = plugin.getHeldChatPipeline();
+        this.spamDetector = plugin.getSpamDetector();
+        this.conversationContext = plugin.getConversationContext();
+        this.moderatedCommands = plugin.getModeratedCommands();
+        this.metrics = plugin.getMetrics();
+        this.muteStore = plugin.getMuteStore();
+        this.trustStore = plugin.getTrustStore();
+        this.auditLog = plugin.getAuditLog();
+        this.notificationService = plugin.getNotificationService();
     }
 
     @EventHandler(priority = EventPriority.MONITOR)
     public void onChat(AsyncPlayerChatEvent event) {
-        if (configManager.isDebugEnabled() && configManager.shouldLogAllMessages()) {
+        ConfigSnapshot.Debug debug = configManager.snapshot().debug();
+        // Nothing below runs unless debugging, so it costs nothing per message otherwise
+        if (!debug.enabled()) return;
+
+        if (debug.logAllMessages()) {
             Bukkit.getLogger().info("[DEBUG] Chat message from " + event.getPlayer().getName()
                     + ": " + event.getMessage());
         }
 
         if (event.isCancelled()) {
-            if (configManager.isDebugEnabled()) {
-                Bukkit.getLogger().info("[DEBUG] Chat message from " + event.getPlayer().getName()
-                        + " was blocked.");
-            }
+            Bukkit.getLogger().info("[DEBUG] Chat message from " + event.getPlayer().getName()
+                    + " was blocked.");
         }
 
         if (isMuted(event.getPlayer())) {
-            if (configManager.isDebugEnabled()) {
-                Bukkit.getLogger().info("[DEBUG] Muted player " + event.getPlayer().getName()
-                        + " attempted to send a message.");
-            }
+            Bukkit.getLogger().info("[DEBUG] Muted player " + event.getPlayer().getName()
+                    + " attempted to send a message.");
         }
 
-        if (configManager.isDebugEnabled()) {
-            Bukkit.getLogger().info("[DEBUG] Current muted players: " + mutedPlayers.keySet());
-        }
+        Bukkit.getLogger().info("[DEBUG] Current muted players: " + muteStore.getMutes().size());
     }
 
     @EventHandler(priority = EventPriority.HIGHEST)
     public void onPlayerChat(AsyncPlayerChatEvent event) {
         Player player = event.getPlayer();
         String message = event.getMessage();
+        ConfigSnapshot config = configManager.snapshot();
+        metrics.messageReceived();
 
         // Check if player is muted
-        if (isMuted(player)) {
+        long muteStart = System.nanoTime();
+        boolean muted = isMuted(player);
+        metrics.record(ModerationMetrics.Stage.MUTE_CHECK, muteStart);
+        if (muted) {
             event.setCancelled(true);
             player.sendMessage(ChatColor.RED + "You are temporarily muted!");
             return;
         }
 
-// Word filter check (improved, only blocks whole words)
-        if (configManager.isWordFilterEnabled()) {
-            String[] tokens = message.toLowerCase().split("\\W+");
-            java.util.Set<String> blocked = configManager.getBlockedWords().stream()
-                    .map(String::toLowerCase)
-                    .collect(java.util.stream.Collectors.toSet());
-            for (String token : tokens) {
-                if (blocked.contains(token)) {
-                    event.setCancelled(true);
-                    blockMessageAndBroadcast(player, message, "Contains blocked word: " + token);
-                    return;
+        // Spam and flood check, before any word filter or AI work
+        if (!player.hasPermission("chatmoderator.bypass")) {
+            ModerationResult spamResult = spamDetector.check(player.getUniqueId(), message);
+            if (spamResult != null) {
+                event.setCancelled(true);
+                player.sendMessage(ChatColor.translateAlternateColorCodes('&', config.messages().spamBlocked()));
+                if (config.debug().enabled()) {
+                    plugin.getLogger().info("[DEBUG] " + spamResult.getReason() + " from " + player.getName()
+                            + ": " + message);
                 }
+                return;
             }
         }
 
+        // What the player said just before, so words split over several lines are caught too
+        ConversationContext.Recent recent = conversationContext.recent(player.getUniqueId());
+
+        // Word filter check (only blocks whole words), against the normalized text so "b.a.d" matches "bad"
+        if (config.moderation().wordFilterEnabled()) {
+            String typed = findBlockedWord(message, recent);
+            if (typed != null) {
+                metrics.blockedByWordFilter();
+                event.setCancelled(true);
+                moderationService.getLocalClassifier().recordSample(message, true, config.classifier());
+                blockMessageAndBroadcast(player, message, "Contains blocked word: " + typed);
+                return;
+            }
+        }
 
         // Bypass permission
         if (player.hasPermission("chatmoderator.bypass")) {
@@ -90,13 +145,32 @@ public class ChatListener implements Listener {
             return;
         }
 
+        // Passed the filters, counts towards the player's trust and becomes context for their next lines
+        trustStore.messageAccepted(player.getUniqueId());
+        conversationContext.record(player.getUniqueId(), player.getName(), message);
+
         // AI Moderation (async)
-        if (configManager.isAIModerationEnabled()) {
-            moderationService.checkAIModerationAsync(message)
+        if (config.moderation().aiModerationEnabled()) {
+            if (config.moderation().holdDeliveryEnabled()) {
+                // Hold the message back and re-broadcast it once the verdict is in
+                event.setCancelled(true);
+                heldChatPipeline.hold(player, event.getFormat(), message, new HashSet<>(event.getRecipients()),
+                        moderate(player, message, recent),
+                        moderationResult -> {
+                            metrics.blockedByModeration();
+                            blockMessageAndBroadcast(player, message, moderationResult.getReason());
+                        });
+                return;
+            }
+
+            moderate(player, message, recent)
                     .thenAccept(moderationResult -> {
                         if (moderationResult.isBlocked()) {
+                            metrics.blockedByModeration();
                             // Ensure cancellation and player notification run on main thread
-                            SchedulerUtil.runGlobal(() -> {
+                            long scheduled = System.nanoTime();
+                            SchedulerUtil.dispatch(player, () -> {
+                                metrics.record(ModerationMetrics.Stage.DISPATCH, scheduled);
                                 event.setCancelled(true);
                                 blockMessageAndBroadcast(player, message, moderationResult.getReason());
                             });
@@ -105,66 +179,165 @@ public class ChatListener implements Listener {
         }
     }
 
-    // Prevent muted players from using /msg, /tell, /w, etc.
-    @EventHandler(priority = EventPriority.HIGHEST)
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerJoin(PlayerJoinEvent event) {
+        notificationService.playerJoined(event.getPlayer());
+        trustStore.playerJoined(event.getPlayer());
+    }
+
+    // Per-player spam, notification and context state is only kept while the player is online
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerQuit(PlayerQuitEvent event) {
+        spamDetector.forget(event.getPlayer().getUniqueId());
+        notificationService.playerQuit(event.getPlayer());
+        trustStore.playerQuit(event.getPlayer());
+        conversationContext.playerQuit(event.getPlayer().getUniqueId());
+    }
+
+    // Whispers and other chat-like commands (commands.moderated) get the same checks as chat
+    @EventHandler(priority = EventPriority.HIGHEST, ignoreCancelled = true)
     public void onPlayerCommand(PlayerCommandPreprocessEvent event) {
-        Player player = event.getPlayer();
-        if (!isMuted(player)) return;
+        String commandLine = event.getMessage();
+        // Any other command is turned away by one lookup on its label
+        int textStart = moderatedCommands.textStart(commandLine);
+        if (textStart < 0 || textStart >= commandLine.length()) return;
 
-        String msg = event.getMessage().toLowerCase();
-        if (msg.startsWith("/msg ") || msg.startsWith("/tell ") || msg.startsWith("/w ") || msg.startsWith("/whisper ") || msg.startsWith("/pm ")) {
+        Player player = event.getPlayer();
+        if (isMuted(player)) {
             event.setCancelled(true);
             player.sendMessage(ChatColor.RED + "You are muted and cannot send private messages.");
+            return;
+        }
+
+        ConfigSnapshot config = configManager.snapshot();
+        if (!config.commands().enabled()) return;
+        String text = commandLine.substring(textStart);
+        boolean bypass = player.hasPermission("chatmoderator.bypass");
+
+        if (!bypass) {
+            ModerationResult spamResult = spamDetector.check(player.getUniqueId(), text);
+            if (spamResult != null) {
+                event.setCancelled(true);
+                player.sendMessage(ChatColor.translateAlternateColorCodes('&', config.messages().spamBlocked()));
+                return;
+            }
+        }
+
+        ConversationContext.Recent recent = conversationContext.recent(player.getUniqueId());
+        if (config.moderation().wordFilterEnabled()) {
+            String typed = findBlockedWord(text, recent);
+            if (typed != null) {
+                metrics.blockedByWordFilter();
+                event.setCancelled(true);
+                blockMessageAndBroadcast(player, text, "Contains blocked word: " + typed);
+                return;
+            }
         }
+
+        if (bypass || !config.moderation().aiModerationEnabled()) return;
+        CompletableFuture<ModerationResult> verdict = moderate(player, text, recent);
+        // Rule hits and cached verdicts are known right away, so the command can still be stopped
+        ModerationResult known = verdict.getNow(null);
+        if (known != null) {
+            if (known.isBlocked()) {
+                metrics.blockedByModeration();
+                event.setCancelled(true);
+                blockMessageAndBroadcast(player, text, known.getReason());
+            }
+            return;
+        }
+        verdict.thenAccept(moderationResult -> {
+            if (moderationResult.isBlocked()) {
+                metrics.blockedByModeration();
+                long scheduled = System.nanoTime();
+                SchedulerUtil.dispatch(player, () -> {
+                    metrics.record(ModerationMetrics.Stage.DISPATCH, scheduled);
+                    blockMessageAndBroadcast(player, text, moderationResult.getReason());
+                });
+            }
+        });
     }
 
-    // Block message, mute, and broadcast to all players
-    private void blockMessageAndBroadcast(Player player, String message, String reason) {
-        // Broadcast to all players
-        String broadcastMsg = ChatColor.RED + "[MODERATION] " + player.getName()
-                + " has been muted for: " + reason + "\n" +
-                ChatColor.YELLOW + "Blocked message: " + message;
-        for (Player p : Bukkit.getOnlinePlayers()) {
-            p.sendMessage(broadcastMsg);
+    /**
+     * Runs the word filter over a message, and over the player's recent lines joined with it.
+     *
+     * @param recent The player's recent lines, or null to check the message alone.
+     * @return The blocked word as the player typed it, or null if there is none.
+     */
+    public String findBlockedWord(String message, ConversationContext.Recent recent) {
+        WordMatcher matcher = blockedWordStore.matcher();
+        long filterStart = System.nanoTime();
+        TextNormalizer.Normalized normalized = TextNormalizer.normalize(message);
+        long match = matcher.find(normalized);
+        String typed = null;
+        if (match != WordMatcher.NO_MATCH) {
+            // Report what the player actually typed
+            typed = matcher.sourceText(normalized, match);
+        } else if (recent != null && recent.player() != null) {
+            TextNormalizer.Normalized joined = TextNormalizer.normalize(recent.joinedWith(message));
+            match = matcher.find(joined);
+            if (match != WordMatcher.NO_MATCH) {
+                typed = matcher.sourceText(joined, match) + " (across recent messages)";
+            }
         }
+        metrics.record(ModerationMetrics.Stage.WORD_FILTER, filterStart);
+        return typed;
+    }
+
+    /**
+     * Runs a player's text through the moderation service. Established players only have
+     * some (or none) of their messages sent to the AI.
+     */
+    public CompletableFuture<ModerationResult> moderate(Player player, String message,
+                                                        ConversationContext.Recent recent) {
+        TrustStore.Tier tier = trustStore.tierOf(player.getUniqueId());
+        return moderationService.checkAIModerationAsync(message, recent, quotaGovernor.priorityOf(player, tier),
+                trustStore.shouldAskProvider(tier));
+    }
+
+    // Block message, mute, and notify staff
+    public void blockMessageAndBroadcast(Player player, String message, String reason) {
+        // A chat line blocked after the fact was already recorded as context, take it out again
+        conversationContext.forget(player.getUniqueId(), player.getName(), message);
+        notificationService.notifyViolation(player, message, reason);
+        // Their next messages go to the front of the AI queue when over quota
+        quotaGovernor.recordViolation(player.getUniqueId());
+        trustStore.recordViolation(player.getUniqueId());
+
+        ConfigSnapshot config = configManager.snapshot();
 
         // Mute player
-        int muteDurationSeconds = configManager.getMuteDurationSeconds();
-        mutedPlayers.put(player, System.currentTimeMillis() + muteDurationSeconds * 1000L);
+        int muteDurationSeconds = config.moderation().muteDurationSeconds();
+        muteStore.mute(player.getUniqueId(), player.getName(), muteDurationSeconds * 1000L);
 
         // Warn player
-        if (configManager.shouldWarnPlayer()) {
+        if (config.actions().warnPlayer()) {
             player.sendMessage(ChatColor.translateAlternateColorCodes('&',
-                    configManager.getViolationWarning()));
+                    config.messages().violationWarning()));
         }
 
+        // Audit trail, searchable with /chatmod history
+        auditLog.record(player.getUniqueId(), player.getName(), reason, message);
+
         // Log
-        if (configManager.shouldLogViolations()) {
+        if (config.actions().logViolations()) {
             plugin.getLogger().warning("Chat violation by " + player.getName()
                     + " | Reason: " + reason + " | Message: " + message);
         }
     }
 
     public boolean isMuted(Player player) {
-        if (!mutedPlayers.containsKey(player)) return false;
-        long unmuteTime = mutedPlayers.get(player);
-        if (System.currentTimeMillis() >= unmuteTime) {
-            mutedPlayers.remove(player);
-            return false;
-        }
-        return true;
+        return muteStore.isMuted(player.getUniqueId());
     }
 
-    public void unmutePlayer(Player player) {
-        if (mutedPlayers.containsKey(player)) {
-            mutedPlayers.remove(player);
-            player.sendMessage(ChatColor.GREEN + "You have been unmuted by an admin.");
-        } else {
-            player.sendMessage(ChatColor.RED + "You were not muted.");
-        }
-    }
+    public boolean unmutePlayer(UUID uuid) {
+        if (muteStore.unmute(uuid) == null) return false;
 
-    public Map<Player, Long> getMutedPlayers() {
-        return mutedPlayers;
+        Player player = Bukkit.getPlayer(uuid);
+        if (player != null) {
+            SchedulerUtil.ensureEntity(player, () ->
+                    player.sendMessage(ChatColor.GREEN + "You have been unmuted by an admin."));
+        }
+        return true;
     }
-}
\ No newline at end of file
+}
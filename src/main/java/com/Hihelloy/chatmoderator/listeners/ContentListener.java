@@ -0,0 +1,330 @@
+package com.Hihelloy.chatmoderator.listeners;
+
+import com.Hihelloy.chatmoderator.ChatModeratorPlugin;
+import com.Hihelloy.chatmoderator.config.ConfigManager;
+import com.Hihelloy.chatmoderator.config.ConfigSnapshot;
+import com.Hihelloy.chatmoderator.services.AuditLog;
+import com.Hihelloy.chatmoderator.services.ModerationMetrics;
+import com.Hihelloy.chatmoderator.services.ModerationService;
+import com.Hihelloy.chatmoderator.services.QuotaGovernor;
+import com.Hihelloy.chatmoderator.utils.ModerationResult;
+import com.Hihelloy.chatmoderator.utils.SchedulerUtil;
+import org.bukkit.ChatColor;
+import org.bukkit.Material;
+import org.bukkit.block.Block;
+import org.bukkit.block.BlockState;
+import org.bukkit.block.Sign;
+import org.bukkit.block.sign.Side;
+import org.bukkit.block.sign.SignSide;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.block.SignChangeEvent;
+import org.bukkit.event.inventory.PrepareAnvilEvent;
+import org.bukkit.event.player.AsyncPlayerPreLoginEvent;
+import org.bukkit.event.player.PlayerEditBookEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+import org.bukkit.inventory.AnvilInventory;
+import org.bukkit.inventory.Inventory;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.inventory.PlayerInventory;
+import org.bukkit.inventory.meta.BookMeta;
+import org.bukkit.inventory.meta.ItemMeta;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+
+/**
+ * Moderates text players put into the world instead of chat: sign lines, book pages,
+ * anvil renames and the names of joining players.<br><br>
+ *
+ * Text goes through the same word filter and {@link ModerationService} pipeline as chat.
+ * What is known at once (a blocked word, a rule hit or a cached verdict) stops the edit in
+ * the event. An AI verdict arrives later, so a blocked one is undone on the thread that owns
+ * what was changed: the sign's region for signs, the player's for books and renamed items.
+ * The player is then handled like a blocked chat message.<br><br>
+ *
+ * A book's pages and title are checked as one message, so a whole book costs one AI request.
+ * Anvil rename text changes with every keystroke, so only the local tiers check it while it
+ * is typed, and the AI is asked once it has stopped changing. Names are checked before the
+ * player joins, on the async login thread, which may wait for the verdict.
+ */
+public class ContentListener implements Listener {
+
+    // Rename text unchanged for this long is sent to the AI
+    private static final long ANVIL_SETTLE_TICKS = 20L;
+    // Slot PlayerEditBookEvent reports for a book in the off hand
+    private static final int OFF_HAND_SLOT = -1;
+
+    private final ChatModeratorPlugin plugin;
+    private final ConfigManager configManager;
+    private final ModerationService moderationService;
+    private final ModerationMetrics metrics;
+    private final AuditLog auditLog;
+    private final ChatListener chatListener;
+
+    // Latest rename text of each player with an anvil open
+    private final Map<UUID, String> anvilText = new ConcurrentHashMap<>();
+
+    public ContentListener(ChatModeratorPlugin plugin, ChatListener chatListener) {
+        this.plugin = plugin;
+        this.configManager = plugin.getConfigManager();
+        this.moderationService = plugin.getModerationService();
+        this.metrics = plugin.getMetrics();
+        this.auditLog = plugin.getAuditLog();
+        this.chatListener = chatListener;
+    }
+
+    @EventHandler(priority = EventPriority.HIGHEST, ignoreCancelled = true)
+    public void onSignChange(SignChangeEvent event) {
+        if (!configManager.snapshot().content().signs()) return;
+        String[] lines = event.getLines().clone();
+        String text = joinLines(lines);
+        if (text.isEmpty()) return;
+
+        Player player = event.getPlayer();
+        Block block = event.getBlock();
+        Side side = event.getSide();
+        String reason = check(player, text, lateReason ->
+                // The sign lives in its region, the player may be somewhere else by now
+                SchedulerUtil.ensureLocation(block.getLocation(), () -> {
+                    if (clearSign(block, side, lines)) {
+                        SchedulerUtil.dispatch(player, () ->
+                                chatListener.blockMessageAndBroadcast(player, "[Sign] " + text, lateReason));
+                    }
+                }));
+        if (reason != null) {
+            event.setCancelled(true);
+            chatListener.blockMessageAndBroadcast(player, "[Sign] " + text, reason);
+        }
+    }
+
+    // Wipes the sign side, unless it was edited again since
+    private static boolean clearSign(Block block, Side side, String[] lines) {
+        BlockState state = block.getState();
+        if (!(state instanceof Sign sign)) return false;
+        SignSide signSide = sign.getSide(side);
+        for (int i = 0; i < lines.length; i++) {
+            if (!nullToEmpty(lines[i]).equals(nullToEmpty(signSide.getLine(i)))) return false;
+        }
+        for (int i = 0; i < lines.length; i++) {
+            signSide.setLine(i, "");
+        }
+        return sign.update();
+    }
+
+    @EventHandler(priority = EventPriority.HIGHEST, ignoreCancelled = true)
+    public void onBookEdit(PlayerEditBookEvent event) {
+        if (!configManager.snapshot().content().books()) return;
+        BookMeta book = event.getNewBookMeta();
+        List<String> pages = new ArrayList<>(book.getPages());
+        // Every page (and the title) in one message, one AI request per book
+        List<String> parts = new ArrayList<>(pages);
+        if (event.isSigning() && book.hasTitle()) parts.add(0, book.getTitle());
+        String text = String.join("\n", parts).trim();
+        if (text.isEmpty()) return;
+
+        Player player = event.getPlayer();
+        int slot = event.getSlot();
+        BookMeta previous = event.getPreviousBookMeta();
+        String reason = check(player, text, lateReason ->
+                SchedulerUtil.dispatch(player, () -> {
+                    if (revertBook(player, slot, pages, previous)) {
+                        chatListener.blockMessageAndBroadcast(player, "[Book] " + text, lateReason);
+                    }
+                }));
+        if (reason != null) {
+            event.setCancelled(true);
+            chatListener.blockMessageAndBroadcast(player, "[Book] " + text, reason);
+        }
+    }
+
+    // Puts the book back as it was before the edit, unless it was moved or edited again since
+    private static boolean revertBook(Player player, int slot, List<String> pages, BookMeta previous) {
+        PlayerInventory inventory = player.getInventory();
+        ItemStack item = slot == OFF_HAND_SLOT ? inventory.getItemInOffHand() : inventory.getItem(slot);
+        if (item == null || (item.getType() != Material.WRITABLE_BOOK && item.getType() != Material.WRITTEN_BOOK)) {
+            return false;
+        }
+        if (!(item.getItemMeta() instanceof BookMeta current) || !current.getPages().equals(pages)) return false;
+
+        // A signed book goes back to being a book and quill
+        item.setType(Material.WRITABLE_BOOK);
+        item.setItemMeta(previous);
+        if (slot == OFF_HAND_SLOT) {
+            inventory.setItemInOffHand(item);
+        } else {
+            inventory.setItem(slot, item);
+        }
+        return true;
+    }
+
+    @EventHandler(priority = EventPriority.HIGHEST)
+    public void onPrepareAnvil(PrepareAnvilEvent event) {
+        ConfigSnapshot config = configManager.snapshot();
+        if (!config.content().anvils()) return;
+        if (event.getResult() == null || !(event.getView().getPlayer() instanceof Player player)) return;
+        String text = event.getInventory().getRenameText();
+        if (text == null || text.isBlank()) {
+            anvilText.remove(player.getUniqueId());
+            return;
+        }
+
+        String blockedWord = config.moderation().wordFilterEnabled()
+                ? chatListener.findBlockedWord(text, null) : null;
+        if (blockedWord != null) {
+            // Just no result, the player hasn't taken the item yet
+            event.setResult(null);
+            return;
+        }
+        if (!config.moderation().aiModerationEnabled() || player.hasPermission("chatmoderator.bypass")) return;
+
+        // Local tiers and cached verdicts only, as the text is typed
+        ModerationResult local = moderationService.checkAIModerationAsync(text, null,
+                QuotaGovernor.Priority.NORMAL, false).getNow(null);
+        if (local != null && local.isBlocked()) {
+            event.setResult(null);
+            return;
+        }
+        if (text.equals(anvilText.put(player.getUniqueId(), text))) return;
+        SchedulerUtil.runAsyncLater(() -> {
+            if (anvilText.remove(player.getUniqueId(), text)) askAboutRename(player, text);
+        }, ANVIL_SETTLE_TICKS);
+    }
+
+    private void askAboutRename(Player player, String text) {
+        String reason = check(player, text, lateReason -> SchedulerUtil.dispatch(player, () -> {
+            undoRename(player, text);
+            chatListener.blockMessageAndBroadcast(player, "[Anvil] " + text, lateReason);
+        }));
+        if (reason != null) {
+            SchedulerUtil.dispatch(player, () -> {
+                undoRename(player, text);
+                chatListener.blockMessageAndBroadcast(player, "[Anvil] " + text, reason);
+            });
+        }
+    }
+
+    // Clears the result if the anvil is still open, and the name from items already taken
+    private static void undoRename(Player player, String text) {
+        Inventory top = player.getOpenInventory().getTopInventory();
+        if (top instanceof AnvilInventory anvil && text.equals(anvil.getRenameText())) {
+            anvil.setItem(2, null);
+        }
+        removeName(player.getItemOnCursor(), text);
+        for (ItemStack item : player.getInventory().getContents()) {
+            removeName(item, text);
+        }
+    }
+
+    private static void removeName(ItemStack item, String text) {
+        if (item == null) return;
+        ItemMeta meta = item.getItemMeta();
+        if (meta == null || !meta.hasDisplayName() || !text.equals(ChatColor.stripColor(meta.getDisplayName()))) return;
+        meta.setDisplayName(null);
+        item.setItemMeta(meta);
+    }
+
+    // Names are checked before the player exists, so waiting for the verdict here is fine
+    @EventHandler(priority = EventPriority.HIGHEST)
+    public void onPreLogin(AsyncPlayerPreLoginEvent event) {
+        if (event.getLoginResult() != AsyncPlayerPreLoginEvent.Result.ALLOWED) return;
+        ConfigSnapshot config = configManager.snapshot();
+        if (!config.content().playerNames()) return;
+        String name = event.getName();
+
+        String reason = null;
+        if (config.moderation().wordFilterEnabled()) {
+            String typed = chatListener.findBlockedWord(name, null);
+            if (typed != null) {
+                metrics.blockedByWordFilter();
+                reason = "Contains blocked word: " + typed;
+            }
+        }
+        if (reason == null && config.moderation().aiModerationEnabled()) {
+            try {
+                ModerationResult result = moderationService.checkAIModerationAsync(name, null,
+                        QuotaGovernor.Priority.HIGH, true).get(config.content().nameTimeoutMillis(), TimeUnit.MILLISECONDS);
+                if (result.isBlocked()) {
+                    metrics.blockedByModeration();
+                    reason = result.getReason();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException | TimeoutException e) {
+                // No verdict in time, let them in as chat would
+            }
+        }
+        if (reason == null) return;
+
+        event.disallow(AsyncPlayerPreLoginEvent.Result.KICK_OTHER,
+                ChatColor.translateAlternateColorCodes('&', config.messages().nameBlocked()));
+        auditLog.record(event.getUniqueId(), name, reason, "[Name] " + name);
+        if (config.actions().logViolations()) {
+            plugin.getLogger().warning("Blocked player name " + name + " | Reason: " + reason);
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerQuit(PlayerQuitEvent event) {
+        anvilText.remove(event.getPlayer().getUniqueId());
+    }
+
+    /**
+     * Runs the word filter and moderation over a player's text. Players with
+     * {@code chatmoderator.bypass} only go through the word filter, as in chat.
+     *
+     * @param lateBlock Called with the reason when a blocked verdict arrives after this returns.
+     * @return The reason the text is blocked, if that is known right away, or null.
+     */
+    private String check(Player player, String text, Consumer<String> lateBlock) {
+        ConfigSnapshot config = configManager.snapshot();
+        if (config.moderation().wordFilterEnabled()) {
+            String typed = chatListener.findBlockedWord(text, null);
+            if (typed != null) {
+                metrics.blockedByWordFilter();
+                return "Contains blocked word: " + typed;
+            }
+        }
+        if (!config.moderation().aiModerationEnabled() || player.hasPermission("chatmoderator.bypass")) return null;
+
+        // Rule hits and cached verdicts are known right away, so the edit can still be stopped
+        CompletableFuture<ModerationResult> verdict = chatListener.moderate(player, text, null);
+        ModerationResult known = verdict.getNow(null);
+        if (known != null) {
+            if (!known.isBlocked()) return null;
+            metrics.blockedByModeration();
+            return known.getReason();
+        }
+        verdict.thenAccept(result -> {
+            if (result.isBlocked()) {
+                metrics.blockedByModeration();
+                lateBlock.accept(result.getReason());
+            }
+        });
+        return null;
+    }
+
+    private static String joinLines(String[] lines) {
+        StringBuilder text = new StringBuilder();
+        for (String line : lines) {
+            if (line == null || line.isBlank()) continue;
+            if (text.length() > 0) text.append(' ');
+            text.append(line.trim());
+        }
+        return text.toString();
+    }
+
+    private static String nullToEmpty(String text) {
+        return text != null ? text : "";
+    }
+}
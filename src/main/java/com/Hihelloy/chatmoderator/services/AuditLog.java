@@ -0,0 +1,539 @@
+package com.Hihelloy.chatmoderator.services;
+
+import com.Hihelloy.chatmoderator.ChatModeratorPlugin;
+import com.Hihelloy.chatmoderator.config.ConfigManager;
+import com.Hihelloy.chatmoderator.config.ConfigSnapshot;
+import com.Hihelloy.chatmoderator.utils.SchedulerUtil;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Append-only audit trail of chat violations, kept apart from the server console.<br><br>
+ *
+ * {@link #record} only puts the violation on a lock-free queue, so the chat thread never
+ * touches the disk. An async task drains the queue every second and appends the batch to
+ * the active segment {@code audit/violations-NNNNNN.jsonl}, one JSON object per line. Once a
+ * segment reaches {@code audit.max-segment-mb} it is closed and gzipped, and the oldest
+ * segments beyond {@code audit.max-segments} are deleted.<br><br>
+ *
+ * Every appended record is also written to {@code audit/index.journal} as
+ * <pre>
+ * &lt;uuid&gt; &lt;segment&gt; &lt;byte-offset&gt; &lt;name&gt;
+ * </pre>
+ * and the last {@code audit.history-per-player} entries per player are kept in memory, so
+ * {@link #history} reads just the lines it needs instead of scanning the whole log. Index
+ * lines that can't be parsed are skipped on startup; if the index can't be read to the end,
+ * it is never compacted, so the history that wasn't read is not overwritten.
+ */
+public class AuditLog {
+
+    private static final String DIRECTORY_NAME = "audit";
+    private static final String INDEX_NAME = "index.journal";
+    private static final String SEGMENT_PREFIX = "violations-";
+    private static final String SEGMENT_SUFFIX = ".jsonl";
+    private static final String GZIP_SUFFIX = ".gz";
+    private static final int COMPACT_MIN_RECORDS = 4096;
+    // Past this many unwritten records (a stuck disk), new violations are dropped instead of queued
+    private static final int MAX_PENDING = 100_000;
+
+    private final Logger logger;
+    private final ConfigManager configManager;
+    private final Path directory;
+    private final Path indexPath;
+    private final ConcurrentLinkedQueue<Violation> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pendingCount = new AtomicInteger();
+    private final LongAdder dropped = new LongAdder();
+
+    // Everything below is only touched by the flush task and history queries, under lock
+    private final Object lock = new Object();
+    private final Map<UUID, PlayerIndex> players = new HashMap<>();
+    private final Map<String, UUID> playersByName = new HashMap<>();
+    private OutputStream segment;
+    private long segmentId;
+    private long segmentSize;
+    private BufferedWriter index;
+    private int indexRecords;
+    // Set when the index couldn't be read to the end; compacting would then drop the unread history
+    private boolean indexIncomplete;
+    private Object flushTask;
+
+    public AuditLog(ChatModeratorPlugin plugin, ConfigManager configManager) {
+        this.logger = plugin.getLogger();
+        this.configManager = configManager;
+        this.directory = plugin.getDataFolder().toPath().resolve(DIRECTORY_NAME);
+        this.indexPath = directory.resolve(INDEX_NAME);
+    }
+
+    /**
+     * Replays the index, resumes the newest segment and starts the flush timer.
+     */
+    public void load() {
+        synchronized (lock) {
+            try {
+                Files.createDirectories(directory);
+                segmentId = Math.max(1, newestSegmentId());
+                Path active = segmentPath(segmentId);
+                segmentSize = Files.exists(active) ? Files.size(active) : 0;
+                // A plain segment other than the newest was left behind by a crash mid-rotation
+                for (long id = segmentId - 1; id > 0 && Files.exists(segmentPath(id)); id--) {
+                    compress(id);
+                }
+            } catch (IOException e) {
+                logger.log(Level.WARNING, "Failed to open the audit log directory", e);
+            }
+
+            if (Files.exists(indexPath)) {
+                int lineNumber = 0;
+                try (BufferedReader reader = Files.newBufferedReader(indexPath, StandardCharsets.UTF_8)) {
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        lineNumber++;
+                        if (!line.isBlank() && !replay(line)) {
+                            logger.warning("Skipping malformed line " + lineNumber + " of " + INDEX_NAME + ": " + line);
+                        }
+                    }
+                } catch (IOException e) {
+                    indexIncomplete = true;
+                    logger.log(Level.WARNING, "Failed to read " + INDEX_NAME + " past line " + lineNumber
+                            + ", it is left as it is until it can be read in full", e);
+                }
+            }
+            compactIndex();
+        }
+        flushTask = SchedulerUtil.runAsyncTimer(this::flush, 20L, 20L);
+    }
+
+    /**
+     * @return False if the line is not a valid index record.
+     */
+    private boolean replay(String line) {
+        String[] parts = line.split(" ", 4);
+        if (parts.length != 4) return false;
+        try {
+            UUID uuid = UUID.fromString(parts[0]);
+            long segment = Long.parseLong(parts[1]);
+            long offset = Long.parseLong(parts[2]);
+            indexEntry(uuid, parts[3], segment, offset);
+            return true;
+        } catch (IllegalArgumentException e) {
+            // Bad UUID or number, e.g. a write cut short by a crash
+            return false;
+        }
+    }
+
+    /**
+     * Queues a violation for writing. Never blocks.
+     */
+    public void record(UUID uuid, String name, String reason, String message) {
+        if (!configManager.snapshot().audit().enabled()) return;
+        if (pendingCount.incrementAndGet() > MAX_PENDING) {
+            pendingCount.decrementAndGet();
+            dropped.increment();
+            return;
+        }
+        pending.add(new Violation(System.currentTimeMillis(), uuid, name, reason, message));
+    }
+
+    // Called from the async timer: appends everything queued as one batch
+    private void flush() {
+        if (pending.isEmpty()) return;
+        synchronized (lock) {
+            ConfigSnapshot.Audit config = configManager.snapshot().audit();
+            try {
+                Violation violation;
+                while ((violation = pending.poll()) != null) {
+                    pendingCount.decrementAndGet();
+                    if (segment != null && segmentSize >= config.maxSegmentBytes()) {
+                        rotate(config);
+                    }
+                    if (segment == null) openSegment();
+
+                    byte[] line = (toJson(violation) + "\n").getBytes(StandardCharsets.UTF_8);
+                    segment.write(line);
+                    appendIndex(violation.uuid, violation.name, segmentId, segmentSize);
+                    segmentSize += line.length;
+                }
+                // Another flush may have drained the queue first
+                if (segment != null) segment.flush();
+                if (index != null) index.flush();
+            } catch (IOException e) {
+                logger.log(Level.WARNING, "Failed to write the audit log", e);
+                closeQuietly();
+            }
+        }
+    }
+
+    private void openSegment() throws IOException {
+        Files.createDirectories(directory);
+        Path path = segmentPath(segmentId);
+        segmentSize = Files.exists(path) ? Files.size(path) : 0;
+        segment = new BufferedOutputStream(Files.newOutputStream(path,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND), 1 << 16);
+    }
+
+    // Closes and gzips the active segment, then drops segments past the retention limit
+    private void rotate(ConfigSnapshot.Audit config) throws IOException {
+        segment.close();
+        segment = null;
+        long closed = segmentId++;
+        segmentSize = 0;
+        compress(closed);
+
+        for (long id = segmentId - config.maxSegments(); id > 0; id--) {
+            boolean deleted = Files.deleteIfExists(compressedPath(id)) | Files.deleteIfExists(segmentPath(id));
+            if (!deleted) break;
+        }
+        if (indexRecords > Math.max(COMPACT_MIN_RECORDS, indexedCount() * 4)) {
+            compactIndex();
+        }
+    }
+
+    private void compress(long id) throws IOException {
+        Path source = segmentPath(id);
+        Path temp = directory.resolve(source.getFileName() + GZIP_SUFFIX + ".tmp");
+        try (InputStream in = Files.newInputStream(source);
+             OutputStream out = new GZIPOutputStream(Files.newOutputStream(temp), 1 << 16)) {
+            in.transferTo(out);
+        }
+        Files.move(temp, compressedPath(id), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        Files.delete(source);
+    }
+
+    private void appendIndex(UUID uuid, String name, long segment, long offset) throws IOException {
+        if (index == null) {
+            index = Files.newBufferedWriter(indexPath, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        }
+        index.write(uuid + " " + segment + " " + offset + " " + name);
+        index.newLine();
+        indexRecords++;
+        indexEntry(uuid, name, segment, offset);
+    }
+
+    private void indexEntry(UUID uuid, String name, long segment, long offset) {
+        PlayerIndex entry = players.computeIfAbsent(uuid, key -> new PlayerIndex());
+        if (entry.name != null && !entry.name.equalsIgnoreCase(name)) {
+            playersByName.remove(entry.name.toLowerCase(Locale.ROOT), uuid);
+        }
+        entry.name = name;
+        playersByName.put(name.toLowerCase(Locale.ROOT), uuid);
+        entry.add(segment, offset, configManager.snapshot().audit().historyPerPlayer());
+    }
+
+    private int indexedCount() {
+        int count = 0;
+        for (PlayerIndex entry : players.values()) count += entry.size;
+        return count;
+    }
+
+    // Rewrites the index with only the entries still kept in memory. Caller holds lock.
+    private void compactIndex() {
+        if (indexIncomplete) return;
+        Path temp = directory.resolve(INDEX_NAME + ".tmp");
+        try {
+            if (index != null) {
+                index.close();
+                index = null;
+            }
+            int records = 0;
+            try (BufferedWriter writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+                for (Map.Entry<UUID, PlayerIndex> player : players.entrySet()) {
+                    PlayerIndex entry = player.getValue();
+                    for (int i = entry.size - 1; i >= 0; i--) {
+                        long segment = entry.segment(i);
+                        if (!segmentExists(segment)) continue;
+                        writer.write(player.getKey() + " " + segment + " " + entry.offset(i) + " " + entry.name);
+                        writer.newLine();
+                        records++;
+                    }
+                }
+            }
+            Files.move(temp, indexPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            indexRecords = records;
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Failed to compact " + INDEX_NAME, e);
+        }
+    }
+
+    /**
+     * Looks up a player's most recent violations on an async thread.
+     *
+     * @param name The player's name, as it was when they last violated.
+     * @param limit How many violations to return at most.
+     * @return A future completed with the violations, newest first; empty if the player has none.
+     */
+    public CompletableFuture<List<Violation>> history(String name, int limit) {
+        CompletableFuture<List<Violation>> future = new CompletableFuture<>();
+        SchedulerUtil.runAsync(() -> {
+            try {
+                future.complete(readHistory(name, limit));
+            } catch (Exception e) {
+                future.completeExceptionally(e);
+            }
+        });
+        return future;
+    }
+
+    private List<Violation> readHistory(String name, int limit) throws IOException {
+        // Anything still queued should show up in the answer
+        flush();
+        synchronized (lock) {
+            UUID uuid = playersByName.get(name.toLowerCase(Locale.ROOT));
+            PlayerIndex entry = uuid != null ? players.get(uuid) : null;
+            if (entry == null) return Collections.emptyList();
+
+            // Group the wanted lines by segment, so each file is opened once and read forwards
+            Map<Long, List<Long>> offsetsBySegment = new TreeMap<>();
+            int count = Math.min(limit, entry.size);
+            for (int i = 0; i < count; i++) {
+                offsetsBySegment.computeIfAbsent(entry.segment(i), key -> new ArrayList<>()).add(entry.offset(i));
+            }
+
+            Map<Long, Map<Long, Violation>> read = new HashMap<>();
+            for (Map.Entry<Long, List<Long>> segment : offsetsBySegment.entrySet()) {
+                List<Long> offsets = segment.getValue();
+                Collections.sort(offsets);
+                read.put(segment.getKey(), readLines(segment.getKey(), offsets));
+            }
+
+            // Back in index order, newest first
+            List<Violation> violations = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                Violation violation = read.get(entry.segment(i)).get(entry.offset(i));
+                if (violation != null) violations.add(violation);
+            }
+            return violations;
+        }
+    }
+
+    private Map<Long, Violation> readLines(long id, List<Long> offsets) throws IOException {
+        Map<Long, Violation> out = new HashMap<>();
+        InputStream raw;
+        if (id == segmentId && segment != null) {
+            segment.flush();
+            raw = Files.newInputStream(segmentPath(id));
+        } else if (Files.exists(segmentPath(id))) {
+            raw = Files.newInputStream(segmentPath(id));
+        } else if (Files.exists(compressedPath(id))) {
+            raw = new GZIPInputStream(Files.newInputStream(compressedPath(id)), 1 << 16);
+        } else {
+            // Deleted by retention
+            return out;
+        }
+
+        try (InputStream in = new BufferedInputStream(raw, 1 << 16)) {
+            long position = 0;
+            ByteArrayOutputStream line = new ByteArrayOutputStream(256);
+            for (long offset : offsets) {
+                in.skipNBytes(offset - position);
+                position = offset;
+                line.reset();
+                int b;
+                while ((b = in.read()) != -1 && b != '\n') {
+                    line.write(b);
+                }
+                position += line.size() + (b == -1 ? 0 : 1);
+                Violation violation = fromJson(line.toString(StandardCharsets.UTF_8));
+                if (violation != null) out.put(offset, violation);
+            }
+        }
+        return out;
+    }
+
+    private static String toJson(Violation violation) {
+        JsonObject json = new JsonObject();
+        json.addProperty("time", violation.time);
+        json.addProperty("uuid", violation.uuid.toString());
+        json.addProperty("name", violation.name);
+        json.addProperty("reason", violation.reason);
+        json.addProperty("message", violation.message);
+        return json.toString();
+    }
+
+    private Violation fromJson(String line) {
+        try {
+            JsonObject json = JsonParser.parseString(line).getAsJsonObject();
+            return new Violation(json.get("time").getAsLong(), UUID.fromString(json.get("uuid").getAsString()),
+                    json.get("name").getAsString(), json.get("reason").getAsString(),
+                    json.get("message").getAsString());
+        } catch (RuntimeException e) {
+            logger.log(Level.FINE, "Skipping unreadable audit record", e);
+            return null;
+        }
+    }
+
+    private long newestSegmentId() throws IOException {
+        long newest = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*")) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                int end = name.indexOf('.');
+                if (end <= SEGMENT_PREFIX.length()) continue;
+                try {
+                    newest = Math.max(newest, Long.parseLong(name.substring(SEGMENT_PREFIX.length(), end)));
+                } catch (NumberFormatException ignored) {
+                    // Not one of ours
+                }
+            }
+        }
+        // Never append to a segment that has already been compressed
+        return Files.exists(compressedPath(newest)) ? newest + 1 : newest;
+    }
+
+    private boolean segmentExists(long id) {
+        return Files.exists(segmentPath(id)) || Files.exists(compressedPath(id));
+    }
+
+    private Path segmentPath(long id) {
+        return directory.resolve(String.format("%s%06d%s", SEGMENT_PREFIX, id, SEGMENT_SUFFIX));
+    }
+
+    private Path compressedPath(long id) {
+        return directory.resolve(String.format("%s%06d%s%s", SEGMENT_PREFIX, id, SEGMENT_SUFFIX, GZIP_SUFFIX));
+    }
+
+    private void closeQuietly() {
+        try {
+            if (segment != null) segment.close();
+            if (index != null) index.close();
+        } catch (IOException ignored) {
+            // Reopened on the next flush
+        }
+        segment = null;
+        index = null;
+    }
+
+    /**
+     * @return Violations dropped because the writer fell too far behind.
+     */
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    /**
+     * Stops the flush timer and writes out everything still queued.
+     */
+    public void shutdown() {
+        if (flushTask != null) SchedulerUtil.cancelTask(flushTask);
+        flush();
+        synchronized (lock) {
+            closeQuietly();
+        }
+    }
+
+    /**
+     * One violation as written to the audit log.
+     */
+    public static final class Violation {
+        private final long time;
+        private final UUID uuid;
+        private final String name;
+        private final String reason;
+        private final String message;
+
+        private Violation(long time, UUID uuid, String name, String reason, String message) {
+            this.time = time;
+            this.uuid = uuid;
+            this.name = name;
+            this.reason = reason;
+            this.message = message;
+        }
+
+        /**
+         * @return When the violation happened, in epoch milliseconds.
+         */
+        public long getTime() {
+            return time;
+        }
+
+        public UUID getUniqueId() {
+            return uuid;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getReason() {
+            return reason;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+    }
+
+    /**
+     * Ring of a player's most recent record locations, newest at index 0.
+     */
+    private static final class PlayerIndex {
+        private String name;
+        private long[] segments = new long[4];
+        private long[] offsets = new long[4];
+        private int head;
+        private int size;
+
+        private void add(long segment, long offset, int capacity) {
+            if (segments.length != capacity) resize(capacity);
+            head = (head + 1) % segments.length;
+            segments[head] = segment;
+            offsets[head] = offset;
+            if (size < segments.length) size++;
+        }
+
+        private void resize(int capacity) {
+            long[] newSegments = new long[capacity];
+            long[] newOffsets = new long[capacity];
+            int kept = Math.min(size, capacity);
+            // Oldest kept entry first, so the newest ends up at the head
+            for (int i = kept - 1, j = 0; i >= 0; i--, j++) {
+                newSegments[j] = segment(i);
+                newOffsets[j] = offset(i);
+            }
+            segments = newSegments;
+            offsets = newOffsets;
+            size = kept;
+            head = (kept - 1 + capacity) % capacity;
+        }
+
+        // The i-th most recent entry
+        private long segment(int i) {
+            return segments[Math.floorMod(head - i, segments.length)];
+        }
+
+        private long offset(int i) {
+            return offsets[Math.floorMod(head - i, offsets.length)];
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package com.Hihelloy.chatmoderator.services;
+
+import com.Hihelloy.chatmoderator.ChatModeratorPlugin;
+import com.Hihelloy.chatmoderator.utils.AtomicFiles;
+import com.Hihelloy.chatmoderator.utils.SchedulerUtil;
+import com.Hihelloy.chatmoderator.utils.WordMatcher;
+import org.bukkit.configuration.file.FileConfiguration;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The blocked word list, kept in {@code blocked-words.txt} with one word per line instead
+ * of in {@code config.yml}, so very large lists don't slow down config loading.<br><br>
+ *
+ * Edits from {@code /chatmod add-word} and {@code remove-word} update the in-memory list
+ * and recompile the live matcher right away. The file is written on an async thread a
+ * second after the last edit, through a temp file and an atomic rename, so a burst of
+ * edits costs one write and chat never waits on the disk.
+ */
+public class BlockedWordStore {
+
+    private static final String FILE_NAME = "blocked-words.txt";
+    private static final String HEADER = "# Words blocked by the word filter, one per line. Lines starting with # are ignored.\n"
+            + "# Words are matched as whole words, after normalization (see README), so write them plainly.\n";
+    private static final long SAVE_DELAY_TICKS = 20L;
+
+    private final ChatModeratorPlugin plugin;
+    private final Logger logger;
+    private final Path path;
+
+    // Edits are serialized on this lock; readers only see the published list and matcher
+    private final Object lock = new Object();
+    private final Set<String> words = new LinkedHashSet<>();
+    private volatile List<String> published = List.of();
+    private volatile WordMatcher matcher = WordMatcher.empty();
+
+    private final AtomicBoolean savePending = new AtomicBoolean();
+    private final Object saveLock = new Object();
+
+    public BlockedWordStore(ChatModeratorPlugin plugin) {
+        this.plugin = plugin;
+        this.logger = plugin.getLogger();
+        this.path = plugin.getDataFolder().toPath().resolve(FILE_NAME);
+    }
+
+    /**
+     * Reads {@code blocked-words.txt}. On first start it is created from the old
+     * {@code moderation.blocked-words} list in {@code config.yml}, which is then removed.
+     */
+    public void load() {
+        if (!Files.exists(path)) {
+            migrateFromConfig();
+            return;
+        }
+
+        List<String> loaded = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                loaded.add(line);
+            }
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Failed to read " + FILE_NAME + ", the word filter keeps its current list", e);
+            return;
+        }
+        synchronized (lock) {
+            words.clear();
+            addAll(loaded);
+            publish();
+        }
+    }
+
+    /**
+     * Writes any unsaved edits, then re-reads the file. Called on config reload, so edits
+     * made to the file by hand are picked up.
+     */
+    public void reload() {
+        saveNow();
+        load();
+    }
+
+    private void migrateFromConfig() {
+        FileConfiguration config = plugin.getConfig();
+        synchronized (lock) {
+            words.clear();
+            addAll(config.getStringList("moderation.blocked-words"));
+            publish();
+        }
+        savePending.set(true);
+        saveNow();
+        if (config.contains("moderation.blocked-words")) {
+            config.set("moderation.blocked-words", null);
+            plugin.saveConfig();
+            logger.info("Moved " + published.size() + " blocked words from config.yml to " + FILE_NAME);
+        }
+    }
+
+    /**
+     * Adds words and recompiles the matcher once.
+     *
+     * @return The words that were not already blocked, lower-cased.
+     */
+    public List<String> add(Collection<String> toAdd) {
+        List<String> added;
+        synchronized (lock) {
+            added = addAll(toAdd);
+            if (!added.isEmpty()) publish();
+        }
+        if (!added.isEmpty()) scheduleSave();
+        return added;
+    }
+
+    /**
+     * Removes words and recompiles the matcher once.
+     *
+     * @return The words that were blocked and are now removed, lower-cased.
+     */
+    public List<String> remove(Collection<String> toRemove) {
+        List<String> removed = new ArrayList<>();
+        synchronized (lock) {
+            for (String word : toRemove) {
+                String clean = clean(word);
+                if (clean != null && words.remove(clean)) removed.add(clean);
+            }
+            if (!removed.isEmpty()) publish();
+        }
+        if (!removed.isEmpty()) scheduleSave();
+        return removed;
+    }
+
+    // Caller holds lock
+    private List<String> addAll(Collection<String> toAdd) {
+        List<String> added = new ArrayList<>();
+        for (String word : toAdd) {
+            String clean = clean(word);
+            if (clean != null && words.add(clean)) added.add(clean);
+        }
+        return added;
+    }
+
+    // Caller holds lock
+    private void publish() {
+        List<String> list = List.copyOf(words);
+        matcher = WordMatcher.compile(list);
+        published = list;
+    }
+
+    private static String clean(String word) {
+        if (word == null) return null;
+        String trimmed = word.trim();
+        if (trimmed.isEmpty() || trimmed.startsWith("#")) return null;
+        return trimmed.toLowerCase(Locale.ROOT);
+    }
+
+    private void scheduleSave() {
+        if (savePending.compareAndSet(false, true)) {
+            SchedulerUtil.runAsyncLater(this::saveNow, SAVE_DELAY_TICKS);
+        }
+    }
+
+    /**
+     * Writes the list if there are unsaved edits. Called by the debounce timer, on reload and on shutdown.
+     */
+    public void saveNow() {
+        synchronized (saveLock) {
+            if (!savePending.getAndSet(false)) return;
+            try {
+                AtomicFiles.writeLines(path, HEADER, published);
+            } catch (IOException e) {
+                logger.log(Level.WARNING, "Failed to write " + FILE_NAME, e);
+            }
+        }
+    }
+
+    /**
+     * @return The matcher for the current list. Read it once per message.
+     */
+    public WordMatcher matcher() {
+        return matcher;
+    }
+
+    /**
+     * @return The current list, in the order words were added. Immutable.
+     */
+    public List<String> getWords() {
+        return published;
+    }
+
+    public int size() {
+        return published.size();
+    }
+}
@@ -0,0 +1,216 @@
+package com.Hihelloy.chatmoderator.services;
+
+import com.Hihelloy.chatmoderator.config.ConfigSnapshot;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeoutException;
+import java.util.logging.Logger;
+
+/**
+ * Circuit breaker around a remote AI provider.<br><br>
+ *
+ * While {@link State#CLOSED} every call goes through and its outcome is recorded in a
+ * sliding window of recent calls. Once enough calls failed the breaker trips to
+ * {@link State#OPEN}, and callers skip the provider entirely (straight to the local rules)
+ * for a cool-down period. It then lets a few trial calls through in
+ * {@link State#HALF_OPEN}; if they all succeed it closes again, otherwise it reopens.<br><br>
+ *
+ * The breaker also tracks recent call latencies and derives the time callers should wait
+ * for a verdict from a high percentile of them, so a slow provider stops holding up chat
+ * long before the HTTP client would give up. Calls slower than that timeout count as
+ * failures. State changes are logged once, instead of logging every failed message.
+ */
+public class CircuitBreaker {
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private static final int LATENCY_SAMPLES = 128;
+    // Recompute the timeout after this many new latency samples
+    private static final int TIMEOUT_REFRESH = 16;
+
+    private final String name;
+    private final Logger logger;
+
+    private ConfigSnapshot.Breaker settings;
+    private volatile State state = State.CLOSED;
+    private long openedAt;
+    private int trialsStarted;
+    private int trialsSucceeded;
+
+    // Ring of recent outcomes, true = failure
+    private boolean[] outcomes;
+    private int outcomeNext;
+    private int outcomeCount;
+    private int failureCount;
+
+    private final long[] latencies = new long[LATENCY_SAMPLES];
+    private int latencyNext;
+    private int latencyCount;
+    private int samplesSinceRefresh;
+    private volatile long timeoutMillis;
+
+    public CircuitBreaker(String name, Logger logger, ConfigSnapshot.Breaker settings) {
+        this.name = name;
+        this.logger = logger;
+        configure(settings);
+    }
+
+    /**
+     * Applies new limits and starts over with an empty, closed window. Called on config reload.
+     */
+    public synchronized void configure(ConfigSnapshot.Breaker settings) {
+        this.settings = settings;
+        this.outcomes = new boolean[settings.windowSize()];
+        this.outcomeNext = 0;
+        this.outcomeCount = 0;
+        this.failureCount = 0;
+        this.latencyCount = 0;
+        this.latencyNext = 0;
+        this.samplesSinceRefresh = 0;
+        this.timeoutMillis = settings.maxTimeoutMs();
+        if (state != State.CLOSED) transition(State.CLOSED, null);
+    }
+
+    /**
+     * Cheap check for whether it is worth queueing work for the provider at all. Does not
+     * reserve a half-open trial; {@link #tryAcquire()} still has to be called before the call.
+     */
+    public boolean allowsRequests() {
+        if (state != State.OPEN) return true;
+        synchronized (this) {
+            return System.currentTimeMillis() - openedAt >= settings.openSeconds() * 1000L;
+        }
+    }
+
+    /**
+     * Must be called right before each provider call. Every call that was allowed must be
+     * followed by exactly one {@link #recordSuccess(long)} or {@link #recordFailure(Throwable)}.
+     *
+     * @return Whether the call may go ahead.
+     */
+    public synchronized boolean tryAcquire() {
+        if (state == State.OPEN) {
+            if (System.currentTimeMillis() - openedAt < settings.openSeconds() * 1000L) return false;
+            transition(State.HALF_OPEN, null);
+        }
+        if (state == State.HALF_OPEN) {
+            if (trialsStarted >= settings.halfOpenCalls()) return false;
+            trialsStarted++;
+        }
+        return true;
+    }
+
+    /**
+     * Records a completed call. Calls slower than the current timeout count as failures,
+     * since the caller has already given up on them.
+     */
+    public synchronized void recordSuccess(long latencyNanos) {
+        long latencyMillis = latencyNanos / 1_000_000L;
+        addLatency(latencyMillis);
+        if (latencyMillis > timeoutMillis) {
+            onFailure(new TimeoutException("call took " + latencyMillis + "ms"));
+            return;
+        }
+
+        if (state == State.HALF_OPEN) {
+            if (++trialsSucceeded >= settings.halfOpenCalls()) {
+                transition(State.CLOSED, null);
+            }
+            return;
+        }
+        addOutcome(false);
+    }
+
+    public synchronized void recordFailure(Throwable cause) {
+        onFailure(cause);
+    }
+
+    private void onFailure(Throwable cause) {
+        if (state == State.HALF_OPEN) {
+            transition(State.OPEN, cause);
+            return;
+        }
+        if (state == State.OPEN) return;
+
+        addOutcome(true);
+        if (outcomeCount >= settings.minimumCalls()
+                && (double) failureCount / outcomeCount >= settings.failureRateThreshold()) {
+            transition(State.OPEN, cause);
+        }
+    }
+
+    private void addOutcome(boolean failed) {
+        if (outcomeCount == outcomes.length) {
+            if (outcomes[outcomeNext]) failureCount--;
+        } else {
+            outcomeCount++;
+        }
+        outcomes[outcomeNext] = failed;
+        if (failed) failureCount++;
+        outcomeNext = (outcomeNext + 1) % outcomes.length;
+    }
+
+    private void addLatency(long latencyMillis) {
+        latencies[latencyNext] = latencyMillis;
+        latencyNext = (latencyNext + 1) % LATENCY_SAMPLES;
+        if (latencyCount < LATENCY_SAMPLES) latencyCount++;
+
+        if (++samplesSinceRefresh >= TIMEOUT_REFRESH && latencyCount >= settings.minimumCalls()) {
+            samplesSinceRefresh = 0;
+            long[] sorted = Arrays.copyOf(latencies, latencyCount);
+            Arrays.sort(sorted);
+            int index = (int) Math.ceil(settings.timeoutPercentile() * sorted.length) - 1;
+            long percentile = sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+            long timeout = (long) (percentile * settings.timeoutMultiplier());
+            timeoutMillis = Math.max(settings.minTimeoutMs(), Math.min(settings.maxTimeoutMs(), timeout));
+        }
+    }
+
+    private void transition(State next, Throwable cause) {
+        State previous = state;
+        state = next;
+        trialsStarted = 0;
+        trialsSucceeded = 0;
+
+        switch (next) {
+            case OPEN:
+                openedAt = System.currentTimeMillis();
+                logger.warning(name + " circuit breaker opened (" + previous + " -> OPEN), using local rules for "
+                        + settings.openSeconds() + "s" + (cause != null ? ". Last error: " + cause : ""));
+                break;
+            case HALF_OPEN:
+                logger.info(name + " circuit breaker half-open, sending " + settings.halfOpenCalls() + " trial requests");
+                break;
+            case CLOSED:
+                // A recovered provider starts over with a clean window
+                Arrays.fill(outcomes, false);
+                outcomeNext = 0;
+                outcomeCount = 0;
+                failureCount = 0;
+                logger.info(name + " circuit breaker closed (" + previous + " -> CLOSED)");
+                break;
+        }
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    /**
+     * @return How long callers should wait for a provider verdict, in milliseconds.
+     */
+    public long getTimeoutMillis() {
+        return timeoutMillis;
+    }
+
+    /**
+     * @return The share of failed calls in the recent window, from 0.0 to 1.0.
+     */
+    public synchronized double getErrorRate() {
+        return outcomeCount == 0 ? 0.0 : (double) failureCount / outcomeCount;
+    }
+
+    public synchronized int getWindowCount() {
+        return outcomeCount;
+    }
+}
@@ -0,0 +1,169 @@
+package com.Hihelloy.chatmoderator.services;
+
+import com.Hihelloy.chatmoderator.config.ConfigManager;
+import com.Hihelloy.chatmoderator.config.ConfigSnapshot;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * The last few chat lines of each online player and of public chat, so a message can be
+ * judged together with what was said just before it.<br><br>
+ *
+ * Harassment split over several short messages ("you" / "should" / "die") is harmless line
+ * by line. The local rules and word filter also scan each player's recent lines joined with
+ * the new one, and short messages are sent to the AI with their context, so the split is
+ * caught without any extra remote call.<br><br>
+ *
+ * Every window is a fixed-size ring of lines and timestamps, so memory per player is
+ * bounded no matter how much they chat. Lines older than {@code context.window-seconds}
+ * are ignored, a line is taken out again if it is blocked after the fact, and a player's
+ * ring is dropped when they quit. Public chat is one channel;
+ * the plugin has no chat channels of its own.
+ */
+public class ConversationContext {
+
+    // Longer lines are cut to this many characters, to keep windows and prompts compact
+    private static final int MAX_LINE_LENGTH = 128;
+
+    private final Supplier<ConfigSnapshot> config;
+    private final Map<UUID, Ring> players = new ConcurrentHashMap<>();
+    private volatile Ring channel;
+
+    public ConversationContext(ConfigManager configManager) {
+        this.config = configManager::snapshot;
+        reload();
+    }
+
+    /**
+     * Applies new window sizes. Existing windows are cleared. Called on config reload.
+     */
+    public void reload() {
+        players.clear();
+        channel = new Ring(config.get().context().channelMessages());
+    }
+
+    /**
+     * @return The player's and public chat's recent lines, or null if context is off or
+     *         there is none yet. Does not include {@code message} itself.
+     */
+    public Recent recent(UUID uuid) {
+        ConfigSnapshot.Context settings = config.get().context();
+        if (!settings.enabled()) return null;
+
+        long since = System.currentTimeMillis() - TimeUnit.SECONDS.toMillis(settings.windowSeconds());
+        Ring own = players.get(uuid);
+        String player = own != null ? own.join(since) : null;
+        String chat = channel.join(since);
+        if (player == null && chat == null) return null;
+        return new Recent(player, chat);
+    }
+
+    /**
+     * Adds a message that got past the filters to the player's and public chat's windows.
+     */
+    public void record(UUID uuid, String name, String message) {
+        ConfigSnapshot.Context settings = config.get().context();
+        if (!settings.enabled()) return;
+
+        String line = message.length() > MAX_LINE_LENGTH ? message.substring(0, MAX_LINE_LENGTH) : message;
+        long now = System.currentTimeMillis();
+        players.computeIfAbsent(uuid, key -> new Ring(settings.playerMessages())).add(line, now);
+        channel.add(name + ": " + line, now);
+    }
+
+    /**
+     * Takes a recorded message out of the windows again, once it is blocked, so it isn't
+     * held against the player's next lines. Does nothing if it isn't there (any more).
+     */
+    public void forget(UUID uuid, String name, String message) {
+        String line = message.length() > MAX_LINE_LENGTH ? message.substring(0, MAX_LINE_LENGTH) : message;
+        Ring own = players.get(uuid);
+        if (own != null) own.remove(line);
+        channel.remove(name + ": " + line);
+    }
+
+    public void playerQuit(UUID uuid) {
+        players.remove(uuid);
+    }
+
+    /**
+     * @return The number of players with a window.
+     */
+    public int size() {
+        return players.size();
+    }
+
+    /**
+     * Recent lines, oldest first, one per line. Either may be null when there are none.
+     *
+     * @param player The sender's own earlier lines.
+     * @param channel Earlier public chat lines as {@code name: text}, including the sender's.
+     */
+    public record Recent(String player, String channel) {
+
+        /**
+         * @return The sender's earlier lines followed by {@code message}, space separated,
+         *         for scanning with the local matchers.
+         */
+        public String joinedWith(String message) {
+            return player != null ? player.replace('\n', ' ') + " " + message : message;
+        }
+    }
+
+    /**
+     * Fixed-size ring of lines with the time each was added.
+     */
+    private static final class Ring {
+        private final String[] lines;
+        private final long[] times;
+        private int next;
+        private int count;
+
+        private Ring(int capacity) {
+            this.lines = new String[Math.max(1, capacity)];
+            this.times = new long[lines.length];
+        }
+
+        private synchronized void add(String line, long now) {
+            lines[next] = line;
+            times[next] = now;
+            next = (next + 1) % lines.length;
+            if (count < lines.length) count++;
+        }
+
+        /**
+         * Blanks the newest copy of the line. A blank slot is skipped until it is reused.
+         */
+        private synchronized void remove(String line) {
+            for (int i = 1; i <= count; i++) {
+                int slot = (next - i + lines.length) % lines.length;
+                if (line.equals(lines[slot])) {
+                    lines[slot] = null;
+                    return;
+                }
+            }
+        }
+
+        /**
+         * @return Lines added at or after {@code since}, oldest first, or null if none.
+         */
+        private synchronized String join(long since) {
+            StringBuilder out = null;
+            for (int i = count; i > 0; i--) {
+                int slot = (next - i + lines.length) % lines.length;
+                if (lines[slot] == null || times[slot] < since) continue;
+                if (out == null) {
+                    out = new StringBuilder();
+                } else {
+                    out.append('\n');
+                }
+                out.append(lines[slot]);
+            }
+            return out != null ? out.toString() : null;
+        }
+    }
+}
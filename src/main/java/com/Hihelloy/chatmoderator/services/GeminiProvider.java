@@ -0,0 +1,174 @@
+package com.Hihelloy.chatmoderator.services;
+
+import com.Hihelloy.chatmoderator.utils.ModerationCategory;
+import com.google.genai.Client;
+import com.google.genai.types.GenerateContentConfig;
+import com.google.genai.types.GenerateContentResponse;
+import com.google.genai.types.HttpOptions;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Moderation through a Gemini model, prompted to answer with a label and a confidence
+ * per message. The label's category gets the confidence as its score; SAFE scores zero
+ * everywhere.
+ */
+public class GeminiProvider implements ModerationProvider {
+
+    private static final Map<String, ModerationCategory> LABELS = Map.of(
+            "HARASSMENT", ModerationCategory.HARASSMENT,
+            "HATE", ModerationCategory.HATE,
+            "SEXUAL", ModerationCategory.SEXUAL,
+            "VIOLENCE", ModerationCategory.VIOLENCE,
+            "SELF_HARM", ModerationCategory.SELF_HARM);
+    private static final String LABEL_LIST = "SAFE, HARASSMENT, HATE, SEXUAL, VIOLENCE, SELF_HARM";
+
+    // Matches "HATE 0.92", "hate: 0.9", or a bare "SAFE"
+    private static final Pattern ANSWER = Pattern.compile("^\\W*([A-Za-z_]+)\\W*?([01](?:\\.\\d+)?)?\\s*$");
+    // Matches "3: HATE 0.92", "3. hate", "3) SAFE" and similar lines in a batch reply
+    private static final Pattern BATCH_LINE = Pattern.compile("^\\s*(\\d+)\\s*[:.)\\-]\\s*(.*)$");
+
+    private final Client client;
+    private final String model;
+    // Request options carrying the current call timeout, or null for the client's defaults
+    private volatile GenerateContentConfig requestConfig;
+    private volatile long callTimeoutMillis;
+
+    public GeminiProvider(String apiKey, String model) {
+        this.client = Client.builder().apiKey(apiKey).build();
+        this.model = model;
+    }
+
+    @Override
+    public String getName() {
+        return "Gemini";
+    }
+
+    /**
+     * Sent with each request as its HTTP timeout, so the call is abandoned and the thread
+     * freed when the caller stops waiting. Options are only rebuilt when the value changes.
+     */
+    @Override
+    public void setCallTimeout(long millis) {
+        if (millis == callTimeoutMillis) return;
+        callTimeoutMillis = millis;
+        requestConfig = millis <= 0 ? null : GenerateContentConfig.builder()
+                .httpOptions(HttpOptions.builder().timeout((int) Math.min(Integer.MAX_VALUE, millis)).build())
+                .build();
+    }
+
+    @Override
+    public double[] score(String message) throws Exception {
+        return score(message, null);
+    }
+
+    /**
+     * Shows the model the recent public chat (or the sender's own recent lines) above the
+     * message, marked as context, and asks about the message only.
+     */
+    @Override
+    public double[] score(String message, ConversationContext.Recent context) throws Exception {
+        String recent = shownContext(context);
+        String prompt = "Classify this chat message for moderation.\n\n" +
+                (recent != null ? "Recent chat before it (context only, do not classify):\n" + recent + "\n\n" : "") +
+                "Message: \"" + message + "\"\n\n" +
+                "Respond with only ONE label (" + LABEL_LIST + ") followed by your confidence from 0 to 1, " +
+                "e.g. \"HATE 0.85\".";
+
+        GenerateContentResponse response = client.models.generateContent(model, prompt, requestConfig);
+
+        if (response != null && response.text() != null) {
+            return parseAnswer(response.text().trim());
+        }
+        return null;
+    }
+
+    /**
+     * Asks about several messages in one numbered prompt. A message whose answer is missing
+     * or unreadable in the reply gets null; {@link ModerationService} decides whether to ask
+     * about it again, through the circuit breaker and the quota.
+     */
+    @Override
+    public List<double[]> scoreBatch(List<String> messages) throws Exception {
+        return scoreBatch(messages, Collections.nCopies(messages.size(), null));
+    }
+
+    /**
+     * As {@link #scoreBatch(List)}, with the same context {@link #score(String, ConversationContext.Recent)}
+     * shows for each message in brackets after it.
+     */
+    @Override
+    public List<double[]> scoreBatch(List<String> messages, List<ConversationContext.Recent> contexts)
+            throws Exception {
+        if (messages.size() == 1) {
+            return Collections.singletonList(score(messages.get(0), contexts.get(0)));
+        }
+
+        double[][] results = new double[messages.size()][];
+
+        StringBuilder prompt = new StringBuilder("Classify each numbered chat message for moderation.\n")
+                .append("Respond with exactly one line per message in the form <number>: <LABEL> <confidence>, ")
+                .append("using only the labels ").append(LABEL_LIST)
+                .append(" and a confidence from 0 to 1. ")
+                .append("Text in [brackets] is what was said in chat just before; use it as context only.\n\n");
+        for (int i = 0; i < messages.size(); i++) {
+            prompt.append(i + 1).append(". \"").append(messages.get(i).replace('\n', ' ')).append('"');
+            String recent = shownContext(contexts.get(i));
+            if (recent != null) {
+                prompt.append(" [said just before: \"").append(recent.replace("\n", "\" / \"")).append("\"]");
+            }
+            prompt.append('\n');
+        }
+
+        GenerateContentResponse response = client.models.generateContent(model, prompt.toString(), requestConfig);
+
+        if (response != null && response.text() != null) {
+            for (String line : response.text().split("\n")) {
+                Matcher matcher = BATCH_LINE.matcher(line);
+                if (!matcher.find()) continue;
+                int index = Integer.parseInt(matcher.group(1)) - 1;
+                if (index < 0 || index >= results.length || results[index] != null) continue;
+                results[index] = parseAnswer(matcher.group(2).trim());
+            }
+        }
+
+        return Arrays.asList(results);
+    }
+
+    /**
+     * @return The recent public chat, or the sender's own lines if there is none, or null.
+     */
+    private static String shownContext(ConversationContext.Recent context) {
+        if (context == null) return null;
+        return context.channel() != null ? context.channel() : context.player();
+    }
+
+    /**
+     * @return The scores for an answer such as "HATE 0.85", or null if it can't be read.
+     */
+    private static double[] parseAnswer(String answer) {
+        Matcher matcher = ANSWER.matcher(answer);
+        if (!matcher.find()) return null;
+
+        String label = matcher.group(1).toUpperCase(Locale.ROOT);
+        double[] scores = new double[ModerationCategory.COUNT];
+        if (label.equals("SAFE")) return scores;
+
+        ModerationCategory category = LABELS.get(label);
+        if (category == null) return null;
+        // A label without a confidence is taken as certain
+        scores[category.ordinal()] = matcher.group(2) != null ? Double.parseDouble(matcher.group(2)) : 1.0;
+        return scores;
+    }
+
+    @Override
+    public void close() {
+        client.close();
+    }
+}
@@ -0,0 +1,230 @@
+package com.Hihelloy.chatmoderator.services;
+
+import com.Hihelloy.chatmoderator.ChatModeratorPlugin;
+import com.Hihelloy.chatmoderator.config.ConfigManager;
+import com.Hihelloy.chatmoderator.config.ConfigSnapshot;
+import com.Hihelloy.chatmoderator.utils.ModerationResult;
+import com.Hihelloy.chatmoderator.utils.SchedulerUtil;
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.IllegalFormatException;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Holds chat messages until their AI verdict arrives, then re-broadcasts or drops them.<br><br>
+ *
+ * {@code AsyncPlayerChatEvent} is delivered long before a remote verdict comes back, so
+ * cancelling it from the verdict callback has no effect. In hold mode the original event
+ * is cancelled up front and the message is queued per player. Once the verdict (or the
+ * latency budget) resolves the head of a player's queue, messages are delivered to the
+ * recipients captured from the original event, strictly in the order they were sent.
+ */
+public class HeldChatPipeline {
+
+    private enum Outcome { RELEASE, DROP, BLOCK }
+
+    private final ChatModeratorPlugin plugin;
+    private final ConfigManager configManager;
+    private final ModerationMetrics metrics;
+    private final Map<UUID, PlayerQueue> queues = new ConcurrentHashMap<>();
+
+    private final LongAdder held = new LongAdder();
+    private final LongAdder released = new LongAdder();
+    private final LongAdder blocked = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder timedOut = new LongAdder();
+
+    public HeldChatPipeline(ChatModeratorPlugin plugin, ConfigManager configManager) {
+        this.plugin = plugin;
+        this.configManager = configManager;
+        this.metrics = plugin.getMetrics();
+    }
+
+    /**
+     * Queues a message whose original chat event has already been cancelled.
+     *
+     * @param player The sender.
+     * @param format The chat format of the original event.
+     * @param message The message text.
+     * @param recipients A snapshot of the original event's recipients.
+     * @param verdict The pending moderation verdict.
+     * @param onBlocked Called on the global thread if the verdict blocks the message.
+     */
+    public void hold(Player player, String format, String message, Set<Player> recipients,
+                     CompletableFuture<ModerationResult> verdict, Consumer<ModerationResult> onBlocked) {
+        UUID uuid = player.getUniqueId();
+        HeldMessage entry = new HeldMessage(player, format, message, recipients, onBlocked);
+
+        queues.compute(uuid, (key, queue) -> {
+            if (queue == null) queue = new PlayerQueue();
+            queue.messages.addLast(entry);
+            return queue;
+        });
+        held.increment();
+
+        ConfigSnapshot.Moderation config = configManager.snapshot().moderation();
+        long budget = config.holdLatencyBudgetMs();
+        boolean releaseOnTimeout = config.releaseOnTimeout();
+
+        // Bound the wait on a private future so a shared verdict is never completed by us
+        CompletableFuture<ModerationResult> gate = new CompletableFuture<>();
+        verdict.whenComplete((result, error) -> gate.complete(error == null ? result : null));
+        gate.completeOnTimeout(null, budget, TimeUnit.MILLISECONDS).thenAccept(result -> {
+            if (result == null) {
+                timedOut.increment();
+                entry.outcome = releaseOnTimeout ? Outcome.RELEASE : Outcome.DROP;
+            } else if (result.isBlocked()) {
+                entry.result = result;
+                entry.outcome = Outcome.BLOCK;
+            } else {
+                entry.outcome = Outcome.RELEASE;
+            }
+            drain(uuid);
+        });
+    }
+
+    // Delivers every resolved message at the head of the player's queue. Messages are taken
+    // off under the map's per-key lock and dispatched after it is released. Only one thread
+    // drains a queue at a time, so concurrent verdicts can't reorder deliveries; a verdict
+    // that arrives meanwhile leaves the extra round to the thread already draining.
+    private void drain(UUID uuid) {
+        PlayerQueue queue = queues.get(uuid);
+        if (queue == null || queue.drains.getAndIncrement() != 0) return;
+
+        int missed = 1;
+        List<HeldMessage> ready = new ArrayList<>();
+        do {
+            queues.computeIfPresent(uuid, (key, current) -> {
+                if (current != queue) return current;
+                HeldMessage head;
+                while ((head = current.messages.peekFirst()) != null && head.outcome != null) {
+                    ready.add(current.messages.pollFirst());
+                }
+                return current;
+            });
+            for (HeldMessage entry : ready) {
+                dispatch(entry);
+            }
+            ready.clear();
+        } while ((missed = queue.drains.addAndGet(-missed)) != 0);
+
+        // A message held after this starts a new queue, which can't overtake what was dispatched above
+        queues.computeIfPresent(uuid, (key, current) ->
+                current == queue && current.messages.isEmpty() && current.drains.get() == 0 ? null : current);
+    }
+
+    private void dispatch(HeldMessage entry) {
+        long scheduled = System.nanoTime();
+        switch (entry.outcome) {
+            case RELEASE:
+                released.increment();
+                SchedulerUtil.dispatch(() -> {
+                    metrics.record(ModerationMetrics.Stage.DISPATCH, scheduled);
+                    deliver(entry);
+                });
+                break;
+            case BLOCK:
+                blocked.increment();
+                SchedulerUtil.dispatch(entry.player, () -> {
+                    metrics.record(ModerationMetrics.Stage.DISPATCH, scheduled);
+                    entry.onBlocked.accept(entry.result);
+                });
+                break;
+            default:
+                dropped.increment();
+                break;
+        }
+    }
+
+    private void deliver(HeldMessage entry) {
+        String line;
+        try {
+            line = String.format(entry.format, entry.player.getDisplayName(), entry.message);
+        } catch (IllegalFormatException e) {
+            line = "<" + entry.player.getDisplayName() + "> " + entry.message;
+        }
+        for (Player recipient : entry.recipients) {
+            if (recipient.isOnline()) recipient.sendMessage(line);
+        }
+        Bukkit.getConsoleSender().sendMessage(line);
+    }
+
+    /**
+     * @return The number of messages currently waiting for a verdict.
+     */
+    public int getPendingCount() {
+        int pending = 0;
+        for (PlayerQueue queue : queues.values()) {
+            pending += queue.messages.size();
+        }
+        return pending;
+    }
+
+    public long getHeldCount() {
+        return held.sum();
+    }
+
+    public long getReleasedCount() {
+        return released.sum();
+    }
+
+    /**
+     * @return Held messages the verdict blocked.
+     */
+    public long getBlockedCount() {
+        return blocked.sum();
+    }
+
+    /**
+     * @return Held messages dropped because their verdict missed the budget, with
+     *         {@code moderation.hold.timeout-policy: drop}.
+     */
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    public long getTimedOutCount() {
+        return timedOut.sum();
+    }
+
+    private static final class PlayerQueue {
+        // Changed only inside the map's per-key lock
+        private final Deque<HeldMessage> messages = new ArrayDeque<>();
+        // Verdicts waiting for this queue to be drained; the one that raises it from zero drains
+        private final AtomicInteger drains = new AtomicInteger();
+    }
+
+    private static final class HeldMessage {
+        private final Player player;
+        private final String format;
+        private final String message;
+        private final Set<Player> recipients;
+        private final Consumer<ModerationResult> onBlocked;
+
+        // Written by the verdict thread before drain() takes the per-key lock
+        private volatile Outcome outcome;
+        private volatile ModerationResult result;
+
+        private HeldMessage(Player player, String format, String message, Set<Player> recipients,
+                            Consumer<ModerationResult> onBlocked) {
+            this.player = player;
+            this.format = format;
+            this.message = message;
+            this.recipients = recipients;
+            this.onBlocked = onBlocked;
+        }
+    }
+}
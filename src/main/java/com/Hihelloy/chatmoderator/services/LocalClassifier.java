@@ -0,0 +1,447 @@
+package com.Hihelloy.chatmoderator.services;
+
+import com.Hihelloy.chatmoderator.ChatModeratorPlugin;
+import com.Hihelloy.chatmoderator.config.ConfigSnapshot;
+import com.Hihelloy.chatmoderator.utils.ModerationResult;
+import com.Hihelloy.chatmoderator.utils.SchedulerUtil;
+import com.Hihelloy.chatmoderator.utils.TextNormalizer;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Small offline text classifier that decides clear-cut messages without a remote AI call.<br><br>
+ *
+ * It is a logistic regression over hashed character 2- to 4-grams of the lower-cased
+ * message, so it catches misspellings and word fragments a word list misses. Scoring walks
+ * the message once and allocates nothing; weights live in one {@code float[]}.<br><br>
+ *
+ * Training data is collected as the plugin runs: AI verdicts for messages the classifier
+ * was unsure about, plus messages blocked by the word filter or local rules, are appended
+ * to {@code classifier-samples.tsv}. {@code /chatmod retrain} fits a new model from that
+ * file and writes it to {@code classifier.bin}, which is loaded on startup. A new model is
+ * only kept if it does well enough on held-out samples (see {@link #retrain}); otherwise
+ * the previous one stays in use. Until a model has been trained every message is forwarded
+ * as before.
+ */
+public class LocalClassifier {
+
+    private static final String MODEL_NAME = "classifier.bin";
+    private static final String SAMPLES_NAME = "classifier-samples.tsv";
+    private static final int MAGIC = 0x434D4C43;
+    // Version 2: features are extracted from TextNormalizer output
+    private static final int VERSION = 2;
+
+    private static final int BITS = 18;
+    private static final int DIMENSIONS = 1 << BITS;
+    private static final int MIN_GRAM = 2;
+    private static final int MAX_GRAM = 4;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private static final int EPOCHS = 8;
+    private static final double LEARNING_RATE = 0.5;
+    private static final double L2 = 1e-6;
+    // With a tenth held out, this leaves at least 20 of each class to judge the model by
+    private static final int MIN_SAMPLES_PER_CLASS = 200;
+
+    private static final ThreadLocal<int[]> FEATURES = ThreadLocal.withInitial(() -> new int[256]);
+
+    private final Logger logger;
+    private final Path modelPath;
+    private final Path samplesPath;
+    private final ConcurrentLinkedQueue<String> pendingSamples = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean training = new AtomicBoolean();
+    private final Object samplesLock = new Object();
+
+    private volatile Model model;
+    private Object flushTask;
+
+    public LocalClassifier(ChatModeratorPlugin plugin) {
+        this(plugin.getLogger(), plugin.getDataFolder().toPath());
+    }
+
+    /**
+     * A classifier keeping its files in {@code dataFolder}, without a running plugin. Used by
+     * the benchmarks; {@link #load()} needs the scheduler and isn't called there.
+     */
+    LocalClassifier(Logger logger, Path dataFolder) {
+        this.logger = logger;
+        this.modelPath = dataFolder.resolve(MODEL_NAME);
+        this.samplesPath = dataFolder.resolve(SAMPLES_NAME);
+    }
+
+    /**
+     * Loads {@code classifier.bin} if it exists and starts writing collected samples every 5 seconds.
+     */
+    public void load() {
+        if (Files.exists(modelPath)) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(modelPath)))) {
+                model = readModel(in);
+                logger.info("Loaded local classifier trained on " + model.sampleCount + " samples");
+            } catch (IOException e) {
+                logger.log(Level.WARNING, "Failed to load " + MODEL_NAME + ", local classifier is disabled", e);
+            }
+        }
+        flushTask = SchedulerUtil.runAsyncTimer(this::flushSamples, 100, 100);
+    }
+
+    public void shutdown() {
+        if (flushTask != null) SchedulerUtil.cancelTask(flushTask);
+        flushSamples();
+    }
+
+    /**
+     * @return The probability (0 to 1) that the message violates the rules, or NaN if no model is loaded.
+     */
+    public double score(CharSequence message) {
+        Model current = model;
+        if (current == null) return Double.NaN;
+
+        int[] features = featureBuffer(message.length());
+        int count = extract(TextNormalizer.normalize(message), features);
+        if (count == 0) return sigmoid(current.bias);
+
+        double sum = 0;
+        for (int i = 0; i < count; i++) {
+            sum += current.weights[features[i]];
+        }
+        return sigmoid(current.bias + sum / Math.sqrt(count));
+    }
+
+    /**
+     * @return The block result for a score at or above the block threshold.
+     */
+    public static ModerationResult block(double score) {
+        return ModerationResult.block(String.format("Local classifier (%.2f)", score),
+                ModerationResult.ViolationType.HARASSMENT);
+    }
+
+    public boolean isTrained() {
+        return model != null;
+    }
+
+    /**
+     * @return The number of samples the current model was trained on, or 0.
+     */
+    public int getTrainedSampleCount() {
+        Model current = model;
+        return current != null ? current.sampleCount : 0;
+    }
+
+    /**
+     * Queues a labelled message for the next {@code /chatmod retrain}, if sample collection is on.
+     */
+    public void recordSample(String message, boolean violation, ConfigSnapshot.Classifier config) {
+        if (!config.enabled() || !config.collectSamples()) return;
+        String clean = message.replace('\t', ' ').replace('\n', ' ').replace('\r', ' ');
+        pendingSamples.add((violation ? "1\t" : "0\t") + clean);
+    }
+
+    private void flushSamples() {
+        if (pendingSamples.isEmpty()) return;
+        synchronized (samplesLock) {
+            try {
+                Files.createDirectories(samplesPath.getParent());
+                try (BufferedWriter writer = Files.newBufferedWriter(samplesPath, StandardCharsets.UTF_8,
+                        StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+                    String line;
+                    while ((line = pendingSamples.poll()) != null) {
+                        writer.write(line);
+                        writer.newLine();
+                    }
+                }
+            } catch (IOException e) {
+                logger.log(Level.WARNING, "Failed to write " + SAMPLES_NAME, e);
+            }
+        }
+    }
+
+    /**
+     * Trains a new model from the collected samples on an async thread, saves it and swaps it in.
+     * A tenth of each class is held out. The model is only used if its accuracy on those
+     * samples reaches {@code min-accuracy}, and if it scores at least {@code min-recall} of the
+     * held-out violations at or above {@code safe-below}, i.e. doesn't allow them unchecked.
+     *
+     * @return A future completed with a one-line summary for the command sender.
+     */
+    public CompletableFuture<String> retrain(ConfigSnapshot.Classifier settings) {
+        CompletableFuture<String> result = new CompletableFuture<>();
+        if (!training.compareAndSet(false, true)) {
+            result.complete("Training is already running.");
+            return result;
+        }
+        SchedulerUtil.runAsync(() -> {
+            try {
+                result.complete(train(settings));
+            } catch (Exception e) {
+                logger.log(Level.WARNING, "Local classifier training failed", e);
+                result.complete("Training failed: " + e.getMessage());
+            } finally {
+                training.set(false);
+            }
+        });
+        return result;
+    }
+
+    private String train(ConfigSnapshot.Classifier settings) throws IOException {
+        int maxSamples = settings.maxSamples();
+        flushSamples();
+
+        // Later samples win, so a message's newest label is used
+        Map<String, Boolean> labelled = new LinkedHashMap<>();
+        synchronized (samplesLock) {
+            if (Files.exists(samplesPath)) {
+                try (BufferedReader reader = Files.newBufferedReader(samplesPath, StandardCharsets.UTF_8)) {
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        if (line.length() < 3 || line.charAt(1) != '\t') continue;
+                        String text = line.substring(2);
+                        labelled.remove(text);
+                        labelled.put(text, line.charAt(0) == '1');
+                    }
+                }
+            }
+        }
+
+        List<Map.Entry<String, Boolean>> samples = new ArrayList<>(labelled.entrySet());
+        if (samples.size() > maxSamples) {
+            samples = new ArrayList<>(samples.subList(samples.size() - maxSamples, samples.size()));
+            trimSamples(samples);
+        }
+
+        int positives = 0;
+        for (Map.Entry<String, Boolean> sample : samples) {
+            if (sample.getValue()) positives++;
+        }
+        int negatives = samples.size() - positives;
+        if (positives < MIN_SAMPLES_PER_CLASS || negatives < MIN_SAMPLES_PER_CLASS) {
+            return "Not enough samples yet: " + positives + " violations and " + negatives
+                    + " clean messages, need " + MIN_SAMPLES_PER_CLASS + " of each.";
+        }
+
+        int[][] features = new int[samples.size()][];
+        boolean[] labels = new boolean[samples.size()];
+        for (int i = 0; i < samples.size(); i++) {
+            String text = samples.get(i).getKey();
+            int[] buffer = new int[(text.length() + 2) * (MAX_GRAM - MIN_GRAM + 1)];
+            int count = extract(TextNormalizer.normalize(text), buffer);
+            features[i] = Arrays.copyOf(buffer, count);
+            labels[i] = samples.get(i).getValue();
+        }
+
+        // Hold back 10% of each class to judge the model by
+        List<Integer> order = new ArrayList<>(samples.size());
+        for (int i = 0; i < samples.size(); i++) order.add(i);
+        Collections.shuffle(order, new Random(42));
+        List<Integer> test = new ArrayList<>();
+        List<Integer> train = new ArrayList<>();
+        int heldPositives = 0;
+        int heldNegatives = 0;
+        for (int index : order) {
+            if (labels[index] && heldPositives < positives / 10) {
+                heldPositives++;
+                test.add(index);
+            } else if (!labels[index] && heldNegatives < negatives / 10) {
+                heldNegatives++;
+                test.add(index);
+            } else {
+                train.add(index);
+            }
+        }
+
+        // Violations are rare, so weigh them up to balance the classes
+        double positiveWeight = Math.min(20.0, Math.max(1.0, (double) negatives / positives));
+        float[] weights = new float[DIMENSIONS];
+        double bias = 0;
+        Random random = new Random(7);
+        for (int epoch = 0; epoch < EPOCHS; epoch++) {
+            Collections.shuffle(train, random);
+            double rate = LEARNING_RATE / (1 + epoch);
+            for (int index : train) {
+                int[] sample = features[index];
+                double scale = sample.length == 0 ? 0 : 1 / Math.sqrt(sample.length);
+                double sum = 0;
+                for (int feature : sample) sum += weights[feature];
+                double prediction = sigmoid(bias + sum * scale);
+                double gradient = (prediction - (labels[index] ? 1 : 0)) * (labels[index] ? positiveWeight : 1);
+                bias -= rate * gradient;
+                for (int feature : sample) {
+                    weights[feature] -= (float) (rate * (gradient * scale + L2 * weights[feature]));
+                }
+            }
+        }
+
+        Model trained = new Model(weights, (float) bias, samples.size());
+        int correct = 0;
+        int caught = 0;
+        for (int index : test) {
+            double sum = 0;
+            for (int feature : features[index]) sum += weights[feature];
+            double scale = features[index].length == 0 ? 0 : 1 / Math.sqrt(features[index].length);
+            double score = sigmoid(bias + sum * scale);
+            if ((score >= 0.5) == labels[index]) correct++;
+            if (labels[index] && score >= settings.safeBelow()) caught++;
+        }
+        double accuracy = (double) correct / test.size();
+        double recall = (double) caught / heldPositives;
+
+        String results = String.format("%.1f%% accuracy and %.1f%% of violations caught on %d held-out samples",
+                100 * accuracy, 100 * recall, test.size());
+        if (accuracy < settings.minAccuracy() || recall < settings.minRecall()) {
+            String summary = String.format("New model not used: %s, below the %.1f%% accuracy and %.1f%% recall "
+                            + "required. %s", results, 100 * settings.minAccuracy(), 100 * settings.minRecall(),
+                    model != null ? "The previous model stays in use." : "The classifier stays off.");
+            logger.warning("Local classifier: " + summary);
+            return summary;
+        }
+
+        saveModel(trained);
+        model = trained;
+        String summary = String.format("Trained on %d samples (%d violations), %s.", samples.size(), positives, results);
+        logger.info("Local classifier: " + summary);
+        return summary;
+    }
+
+    // Keeps the samples file from growing without bound
+    private void trimSamples(List<Map.Entry<String, Boolean>> samples) throws IOException {
+        Path temp = samplesPath.resolveSibling(SAMPLES_NAME + ".tmp");
+        synchronized (samplesLock) {
+            try (BufferedWriter writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+                for (Map.Entry<String, Boolean> sample : samples) {
+                    writer.write((sample.getValue() ? "1\t" : "0\t") + sample.getKey());
+                    writer.newLine();
+                }
+            }
+            Files.move(temp, samplesPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+    }
+
+    /**
+     * Writes only the non-zero weights, as (index, weight) pairs.
+     */
+    private void saveModel(Model trained) throws IOException {
+        Files.createDirectories(modelPath.getParent());
+        Path temp = modelPath.resolveSibling(MODEL_NAME + ".tmp");
+        int nonZero = 0;
+        for (float weight : trained.weights) {
+            if (weight != 0f) nonZero++;
+        }
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(BITS);
+            out.writeInt(trained.sampleCount);
+            out.writeFloat(trained.bias);
+            out.writeInt(nonZero);
+            for (int i = 0; i < trained.weights.length; i++) {
+                if (trained.weights[i] == 0f) continue;
+                out.writeInt(i);
+                out.writeFloat(trained.weights[i]);
+            }
+        }
+        Files.move(temp, modelPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static Model readModel(DataInputStream in) throws IOException {
+        if (in.readInt() != MAGIC || in.readInt() != VERSION || in.readInt() != BITS) {
+            throw new IOException("Unsupported classifier file, retrain with /chatmod retrain");
+        }
+        int sampleCount = in.readInt();
+        float bias = in.readFloat();
+        int nonZero = in.readInt();
+        float[] weights = new float[DIMENSIONS];
+        for (int i = 0; i < nonZero; i++) {
+            int index = in.readInt();
+            if (index < 0 || index >= DIMENSIONS) throw new IOException("Corrupt classifier file");
+            weights[index] = in.readFloat();
+        }
+        return new Model(weights, bias, sampleCount);
+    }
+
+    private static int[] featureBuffer(int length) {
+        int needed = (length + 2) * (MAX_GRAM - MIN_GRAM + 1);
+        int[] buffer = FEATURES.get();
+        if (buffer.length < needed) {
+            buffer = new int[Integer.highestOneBit(needed) << 1];
+            FEATURES.set(buffer);
+        }
+        return buffer;
+    }
+
+    /**
+     * Writes the hashed n-gram indices of a message into {@code out}. Letters and digits are
+     * lower-cased, anything else becomes a single space, and the message is padded with a
+     * space on both ends so n-grams can tell word starts and ends apart.
+     *
+     * @return The number of indices written.
+     */
+    static int extract(CharSequence text, int[] out) {
+        int count = 0;
+        // Last MAX_GRAM characters of the normalized stream, newest in the low bits
+        long window = 0;
+        int seen = 0;
+        char previous = ' ';
+        int length = text.length();
+        for (int i = 0; i <= length + 1; i++) {
+            char c;
+            if (i == 0 || i > length) {
+                c = ' ';
+            } else {
+                char raw = text.charAt(i - 1);
+                c = Character.isLetterOrDigit(raw) ? Character.toLowerCase(raw) : ' ';
+                if (c == ' ' && previous == ' ') continue;
+            }
+            if (i > length && previous == ' ' && seen > 0) break;
+            previous = c;
+            window = (window << 16) | c;
+            seen++;
+
+            for (int n = MIN_GRAM; n <= MAX_GRAM && n <= seen; n++) {
+                long hash = 0xcbf29ce484222325L ^ n;
+                for (int k = n - 1; k >= 0; k--) {
+                    hash = (hash ^ ((window >>> (16 * k)) & 0xFFFF)) * FNV_PRIME;
+                }
+                out[count++] = (int) (hash ^ (hash >>> 32)) & (DIMENSIONS - 1);
+            }
+        }
+        return count;
+    }
+
+    private static double sigmoid(double z) {
+        return 1 / (1 + Math.exp(-z));
+    }
+
+    private static final class Model {
+        private final float[] weights;
+        private final float bias;
+        private final int sampleCount;
+
+        private Model(float[] weights, float bias, int sampleCount) {
+            this.weights = weights;
+            this.bias = bias;
+            this.sampleCount = sampleCount;
+        }
+    }
+}
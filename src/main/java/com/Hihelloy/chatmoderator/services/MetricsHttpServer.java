@@ -0,0 +1,229 @@
+package com.Hihelloy.chatmoderator.services;
+
+import com.Hihelloy.chatmoderator.ChatModeratorPlugin;
+import com.Hihelloy.chatmoderator.config.ConfigSnapshot;
+import com.Hihelloy.chatmoderator.utils.LatencyHistogram;
+import com.Hihelloy.chatmoderator.utils.SchedulerUtil;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Optional local HTTP endpoint that serves {@link ModerationMetrics} and the other pipeline
+ * counters in the Prometheus text format at {@code /metrics}.<br><br>
+ *
+ * Uses the JDK's built-in HTTP server on a single daemon thread, so scrapes never touch a
+ * server thread. Off unless {@code metrics.http.enabled} is set, and bound to localhost by default.
+ */
+public class MetricsHttpServer {
+
+    private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+    // Histogram buckets are exported at powers of two from about 1 µs to about 17 s
+    private static final int MIN_BUCKET_EXPONENT = 10;
+    private static final int MAX_BUCKET_EXPONENT = 34;
+
+    private final ChatModeratorPlugin plugin;
+
+    private HttpServer server;
+    private ExecutorService executor;
+    private ConfigSnapshot.Metrics running;
+
+    public MetricsHttpServer(ChatModeratorPlugin plugin) {
+        this.plugin = plugin;
+    }
+
+    /**
+     * Starts, stops or rebinds the endpoint to match the current config. Called on enable and reload.
+     */
+    public synchronized void apply(ConfigSnapshot.Metrics config) {
+        if (config.httpEnabled() && config.equals(running)) return;
+        stop();
+        if (!config.httpEnabled()) return;
+
+        try {
+            server = HttpServer.create(new InetSocketAddress(config.httpBind(), config.httpPort()), 0);
+        } catch (IOException | IllegalArgumentException e) {
+            plugin.getLogger().warning("Could not start the metrics endpoint on " + config.httpBind() + ":"
+                    + config.httpPort() + ": " + e.getMessage());
+            server = null;
+            return;
+        }
+        executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "ChatModerator-Metrics");
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setExecutor(executor);
+        server.createContext("/metrics", this::handle);
+        server.start();
+        running = config;
+        plugin.getLogger().info("Metrics endpoint listening on http://" + config.httpBind() + ":"
+                + config.httpPort() + "/metrics");
+    }
+
+    public synchronized void stop() {
+        if (server != null) {
+            server.stop(0);
+            executor.shutdownNow();
+            server = null;
+            executor = null;
+        }
+        running = null;
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            if (!"GET".equals(exchange.getRequestMethod()) && !"HEAD".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            byte[] body = render().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+            if ("HEAD".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(200, -1);
+                return;
+            }
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * @return Every metric in the Prometheus text exposition format.
+     */
+    String render() {
+        StringBuilder out = new StringBuilder(8192);
+        ModerationMetrics metrics = plugin.getMetrics();
+        ModerationService moderationService = plugin.getModerationService();
+        VerdictCache cache = moderationService.getVerdictCache();
+        CircuitBreaker breaker = moderationService.getCircuitBreaker();
+        HeldChatPipeline held = plugin.getHeldChatPipeline();
+
+        counter(out, "messages_total", "Chat messages checked.", metrics.getMessageCount());
+        header(out, "blocked_total", "counter", "Chat messages blocked, by the stage that blocked them.");
+        sample(out, "blocked_total", "stage=\"spam\"", plugin.getSpamDetector().getBlockedCount());
+        sample(out, "blocked_total", "stage=\"word_filter\"", metrics.getBlockedByWordFilterCount());
+        sample(out, "blocked_total", "stage=\"moderation\"", metrics.getBlockedByModerationCount());
+        counter(out, "decided_locally_total", "Messages the local classifier decided without an AI call.",
+                moderationService.getDecidedLocallyCount());
+        counter(out, "forwarded_total", "Messages that needed an AI verdict.", moderationService.getForwardedCount());
+        counter(out, "provider_failures_total", "Failed AI provider requests.", metrics.getProviderFailureCount());
+        counter(out, "executor_rejected_total", "AI calls shed because the executor was saturated.",
+                plugin.getModerationExecutor().getRejectedCount());
+
+        QuotaGovernor quota = moderationService.getQuotaGovernor();
+        counter(out, "quota_admitted_total", "AI checks let through by the quota governor.", quota.getAdmittedCount());
+        counter(out, "quota_delayed_total", "AI checks that waited for quota.", quota.getDelayedCount());
+        counter(out, "quota_expired_total", "AI checks that waited too long for quota and used the local rules.",
+                quota.getExpiredCount());
+        counter(out, "quota_shed_total", "AI checks left to the local rules without waiting for quota.",
+                quota.getShedCount());
+        gauge(out, "quota_queue_depth", "AI checks currently waiting for quota.", quota.getQueueDepth());
+
+        TrustStore trust = plugin.getTrustStore();
+        header(out, "trust_checks_total", "counter", "AI-eligible messages by the depth their sender's trust tier chose.");
+        sample(out, "trust_checks_total", "depth=\"full\"", trust.getFullCheckCount());
+        sample(out, "trust_checks_total", "depth=\"sampled\"", trust.getSampledCheckCount());
+        sample(out, "trust_checks_total", "depth=\"local_only\"", trust.getLocalOnlyCheckCount());
+        gauge(out, "trust_players", "Players with a trust score.", trust.size());
+        gauge(out, "context_players", "Online players with a conversation window.",
+                plugin.getConversationContext().size());
+
+        counter(out, "cache_hits_total", "Verdict cache hits.", cache.getHits());
+        counter(out, "cache_misses_total", "Verdict cache misses.", cache.getMisses());
+        counter(out, "cache_evictions_total", "Verdict cache evictions.", cache.getEvictions());
+        gauge(out, "cache_entries", "Verdicts currently cached.", cache.size());
+
+        header(out, "circuit_breaker_state", "gauge", "1 for the AI circuit breaker's current state.");
+        for (CircuitBreaker.State state : CircuitBreaker.State.values()) {
+            sample(out, "circuit_breaker_state", "state=\"" + state.name().toLowerCase(Locale.ROOT) + "\"",
+                    breaker.getState() == state ? 1 : 0);
+        }
+        gauge(out, "circuit_breaker_error_rate", "Share of recent AI requests that failed.", breaker.getErrorRate());
+        gauge(out, "ai_timeout_seconds", "Current learned AI request timeout.", breaker.getTimeoutMillis() / 1e3);
+
+        counter(out, "held_total", "Messages held for a verdict.", held.getHeldCount());
+        counter(out, "held_released_total", "Held messages delivered.", held.getReleasedCount());
+        counter(out, "held_blocked_total", "Held messages blocked by their verdict.", held.getBlockedCount());
+        counter(out, "held_dropped_total", "Held messages dropped after their verdict timed out.",
+                held.getDroppedCount());
+        counter(out, "held_timed_out_total", "Held messages whose verdict missed the latency budget.",
+                held.getTimedOutCount());
+        gauge(out, "held_pending", "Messages currently waiting for a verdict.", held.getPendingCount());
+        counter(out, "notifications_sent_total", "Violation notifications sent to staff.",
+                plugin.getNotificationService().getSentCount());
+        counter(out, "notifications_suppressed_total", "Violation notifications held back by the per-player cooldown.",
+                plugin.getNotificationService().getSuppressedCount());
+        counter(out, "audit_dropped_total", "Violations dropped because the audit writer fell behind.",
+                plugin.getAuditLog().getDroppedCount());
+        gauge(out, "muted_players", "Players currently muted.", plugin.getMuteStore().getMutes().size());
+
+        gauge(out, "dispatch_queue_depth", "Tasks waiting for the main-thread dispatcher.",
+                SchedulerUtil.getDispatchQueueDepth());
+        header(out, "dispatch_drain_seconds", "histogram", "Time the dispatcher spent per tick.");
+        histogram(out, "dispatch_drain_seconds", null, SchedulerUtil.getDispatchDrainTime().snapshot());
+
+        header(out, "stage_latency_seconds", "histogram", "Time spent in each pipeline stage.");
+        for (ModerationMetrics.Stage stage : ModerationMetrics.Stage.values()) {
+            histogram(out, "stage_latency_seconds", "stage=\"" + stage.getMetricName() + "\"",
+                    metrics.getLatency(stage).snapshot());
+        }
+        return out.toString();
+    }
+
+    private static void histogram(StringBuilder out, String name, String labels, LatencyHistogram.Snapshot snapshot) {
+        String prefix = labels != null ? labels + "," : "";
+        for (int exponent = MIN_BUCKET_EXPONENT; exponent <= MAX_BUCKET_EXPONENT; exponent++) {
+            long bound = 1L << exponent;
+            sample(out, name + "_bucket", prefix + "le=\"" + seconds(bound) + "\"", snapshot.countAtMost(bound - 1));
+        }
+        sample(out, name + "_bucket", prefix + "le=\"+Inf\"", snapshot.getCount());
+        sample(out, name + "_sum", labels, snapshot.getSum() / 1e9);
+        sample(out, name + "_count", labels, snapshot.getCount());
+    }
+
+    private static void counter(StringBuilder out, String name, String help, long value) {
+        header(out, name, "counter", help);
+        sample(out, name, null, value);
+    }
+
+    private static void gauge(StringBuilder out, String name, String help, double value) {
+        header(out, name, "gauge", help);
+        sample(out, name, null, value);
+    }
+
+    private static void header(StringBuilder out, String name, String type, String help) {
+        out.append("# HELP chatmoderator_").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE chatmoderator_").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static void sample(StringBuilder out, String name, String labels, long value) {
+        sampleName(out, name, labels).append(value).append('\n');
+    }
+
+    private static void sample(StringBuilder out, String name, String labels, double value) {
+        sampleName(out, name, labels).append(value).append('\n');
+    }
+
+    private static StringBuilder sampleName(StringBuilder out, String name, String labels) {
+        out.append("chatmoderator_").append(name);
+        if (labels != null) out.append('{').append(labels).append('}');
+        return out.append(' ');
+    }
+
+    private static String seconds(long nanos) {
+        return BigDecimal.valueOf(nanos, 9).stripTrailingZeros().toPlainString();
+    }
+}
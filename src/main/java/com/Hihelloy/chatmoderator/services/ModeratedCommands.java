@@ -0,0 +1,126 @@
+package com.Hihelloy.chatmoderator.services;
+
+import com.Hihelloy.chatmoderator.ChatModeratorPlugin;
+import com.Hihelloy.chatmoderator.config.ConfigManager;
+import com.Hihelloy.chatmoderator.utils.SchedulerUtil;
+import org.bukkit.Bukkit;
+import org.bukkit.command.Command;
+import org.bukkit.command.CommandMap;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The chat-like commands ({@code /msg}, {@code /me}, {@code /mail send}, ...) whose text
+ * is moderated like chat, from {@code commands.moderated}.<br><br>
+ *
+ * Each configured label maps to the number of arguments that come before the text, e.g.
+ * 1 for {@code /msg <player> <text>}. The labels, and the names and aliases the server's
+ * command map knows for them, are compiled into one hash map, so any other command is
+ * turned away with a single lookup on its label. Namespaced labels such as
+ * {@code /minecraft:tell} match their plain form.
+ */
+public class ModeratedCommands {
+
+    private final Logger logger;
+    private final ConfigManager configManager;
+    private volatile Map<String, Integer> labels = Map.of();
+
+    public ModeratedCommands(ChatModeratorPlugin plugin, ConfigManager configManager) {
+        this.logger = plugin.getLogger();
+        this.configManager = configManager;
+    }
+
+    /**
+     * Compiles the configured labels now, and again once the server is running, when every
+     * plugin has registered its commands and their aliases can be looked up.
+     */
+    public void load() {
+        reload();
+        SchedulerUtil.runGlobal(this::reload);
+    }
+
+    /**
+     * Recompiles the labels from the current config. Called on config reload.
+     */
+    public void reload() {
+        CommandMap commandMap = commandMap();
+        labels = compile(configManager.snapshot().commands().moderated(),
+                commandMap != null ? commandMap::getCommand : null);
+    }
+
+    /**
+     * @param configured Labels from the config, with the arguments to skip for each.
+     * @param commands Looks up the command registered for a label, or null to skip aliases.
+     * @return The configured labels with the names and aliases of their commands.
+     */
+    static Map<String, Integer> compile(Map<String, Integer> configured, Function<String, Command> commands) {
+        Map<String, Integer> compiled = new HashMap<>(configured);
+        if (commands != null) {
+            // Configured labels win over aliases picked up from other commands
+            for (Map.Entry<String, Integer> entry : configured.entrySet()) {
+                Command command = commands.apply(entry.getKey());
+                if (command == null) continue;
+                compiled.putIfAbsent(command.getName().toLowerCase(Locale.ROOT), entry.getValue());
+                for (String alias : command.getAliases()) {
+                    compiled.putIfAbsent(alias.toLowerCase(Locale.ROOT), entry.getValue());
+                }
+            }
+        }
+        return Map.copyOf(compiled);
+    }
+
+    // The Spigot API has no getter for the command map, but every server implementation has this method
+    private CommandMap commandMap() {
+        try {
+            Object server = Bukkit.getServer();
+            return (CommandMap) server.getClass().getMethod("getCommandMap").invoke(server);
+        } catch (ReflectiveOperationException | ClassCastException e) {
+            logger.log(Level.FINE, "Command map not available, command aliases are not moderated", e);
+            return null;
+        }
+    }
+
+    /**
+     * Finds where the text to moderate starts in a command line.
+     *
+     * @param commandLine The command as typed, with the leading slash.
+     * @return The index of the text (the line's length if there is none), or -1 if the
+     *         command isn't moderated.
+     */
+    public int textStart(String commandLine) {
+        return textStart(labels, commandLine);
+    }
+
+    static int textStart(Map<String, Integer> labels, String commandLine) {
+        int end = commandLine.indexOf(' ');
+        if (end < 0) end = commandLine.length();
+        int namespace = commandLine.lastIndexOf(':', end - 1);
+        Integer skip = labels.get(commandLine.substring(namespace > 0 ? namespace + 1 : 1, end)
+                .toLowerCase(Locale.ROOT));
+        if (skip == null) return -1;
+
+        int position = skipSpaces(commandLine, end);
+        for (int argument = 0; argument < skip && position < commandLine.length(); argument++) {
+            while (position < commandLine.length() && commandLine.charAt(position) != ' ') position++;
+            position = skipSpaces(commandLine, position);
+        }
+        return position;
+    }
+
+    private static int skipSpaces(String text, int position) {
+        while (position < text.length() && text.charAt(position) == ' ') position++;
+        return position;
+    }
+
+    /**
+     * @return The number of labels moderated, aliases included.
+     */
+    public int size() {
+        return labels.size();
+    }
+}
@@ -0,0 +1,197 @@
+package com.Hihelloy.chatmoderator.services;
+
+import com.Hihelloy.chatmoderator.utils.ModerationResult;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+
+/**
+ * Collects moderation checks into micro-batches so one provider round trip covers many
+ * chat lines.<br><br>
+ *
+ * A batch is sent as soon as it holds {@code maxBatchSize} messages, or when the first
+ * message in it has waited {@code lingerMillis}, whichever comes first. Each message keeps
+ * its own conversation context (or null) alongside it in the batch. Each caller gets
+ * its own future, completed with the result at its position in the batch. A null result
+ * means the provider gave no usable verdict and the caller should fall back.<br><br>
+ *
+ * Before a batch is sent it is admitted as one request, with the combined token estimate
+ * of its messages and the priority of its most urgent message. A batch that isn't admitted
+ * gets a null result for every message.
+ */
+public class ModerationBatcher {
+
+    /**
+     * Decides whether a batch may be sent, e.g. by waiting for room in the provider's quota.
+     */
+    @FunctionalInterface
+    public interface Admission {
+        /**
+         * @param priority The most urgent priority among the batch's messages.
+         * @param size The number of messages in the batch.
+         * @param tokenCost The estimated tokens of the batch's messages, without the prompt.
+         * @return A future completed with true once the batch may be sent, or false to drop it.
+         */
+        CompletableFuture<Boolean> admit(QuotaGovernor.Priority priority, int size, double tokenCost);
+    }
+
+    private final BiFunction<List<String>, List<ConversationContext.Recent>, List<ModerationResult>> classifier;
+    private final Admission admission;
+    private final Executor executor;
+    private final ScheduledExecutorService timer;
+    private final Object lock = new Object();
+
+    private List<Pending> buffer = new ArrayList<>();
+    private ScheduledFuture<?> lingerTask;
+
+    private volatile int maxBatchSize;
+    private volatile long lingerMillis;
+
+    /**
+     * @param classifier Classifies a batch, given the messages and their contexts. Must return one
+     *                   result (or null) per message, in order.
+     * @param admission Admits each batch before it is sent.
+     * @param executor Runs the classifier. If it rejects a batch, every message in it gets a null result.
+     */
+    public ModerationBatcher(BiFunction<List<String>, List<ConversationContext.Recent>, List<ModerationResult>> classifier,
+                             Admission admission, Executor executor,
+                             int maxBatchSize, long lingerMillis) {
+        this.classifier = classifier;
+        this.admission = admission;
+        this.executor = executor;
+        this.timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "ChatModerator-Batcher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        configure(maxBatchSize, lingerMillis);
+    }
+
+    public void configure(int maxBatchSize, long lingerMillis) {
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+        this.lingerMillis = Math.max(1, lingerMillis);
+    }
+
+    /**
+     * Adds a message to the current batch.
+     *
+     * @param message The message to classify.
+     * @param context What was said before it, or null.
+     * @param priority The message's place in the quota queue.
+     * @param tokenCost The message's estimated tokens, without the prompt.
+     * @return A future completed with the message's verdict, or null if there was none.
+     */
+    public CompletableFuture<ModerationResult> submit(String message, ConversationContext.Recent context,
+                                                      QuotaGovernor.Priority priority, double tokenCost) {
+        Pending pending = new Pending(message, context, priority, tokenCost);
+        List<Pending> ready = null;
+        synchronized (lock) {
+            buffer.add(pending);
+            if (buffer.size() >= maxBatchSize) {
+                ready = takeBuffer();
+            } else if (lingerTask == null) {
+                lingerTask = timer.schedule(this::flush, lingerMillis, TimeUnit.MILLISECONDS);
+            }
+        }
+        if (ready != null) send(ready);
+        return pending.future;
+    }
+
+    /**
+     * Sends whatever is buffered right now.
+     */
+    public void flush() {
+        List<Pending> ready;
+        synchronized (lock) {
+            ready = takeBuffer();
+        }
+        if (!ready.isEmpty()) send(ready);
+    }
+
+    private List<Pending> takeBuffer() {
+        List<Pending> taken = buffer;
+        buffer = new ArrayList<>();
+        if (lingerTask != null) {
+            lingerTask.cancel(false);
+            lingerTask = null;
+        }
+        return taken;
+    }
+
+    private void send(List<Pending> batch) {
+        QuotaGovernor.Priority priority = QuotaGovernor.Priority.TRUSTED;
+        double tokenCost = 0;
+        for (Pending pending : batch) {
+            if (pending.priority.ordinal() < priority.ordinal()) priority = pending.priority;
+            tokenCost += pending.tokenCost;
+        }
+        admission.admit(priority, batch.size(), tokenCost).whenComplete((granted, error) -> {
+            if (error != null || !Boolean.TRUE.equals(granted)) {
+                completeAll(batch);
+                return;
+            }
+            try {
+                executor.execute(() -> classify(batch));
+            } catch (RejectedExecutionException e) {
+                completeAll(batch);
+            }
+        });
+    }
+
+    private static void completeAll(List<Pending> batch) {
+        for (Pending pending : batch) {
+            pending.future.complete(null);
+        }
+    }
+
+    private void classify(List<Pending> batch) {
+        List<String> messages = new ArrayList<>(batch.size());
+        List<ConversationContext.Recent> contexts = new ArrayList<>(batch.size());
+        for (Pending pending : batch) {
+            messages.add(pending.message);
+            contexts.add(pending.context);
+        }
+
+        List<ModerationResult> results = null;
+        try {
+            results = classifier.apply(messages, contexts);
+        } finally {
+            for (int i = 0; i < batch.size(); i++) {
+                ModerationResult result = results != null && i < results.size() ? results.get(i) : null;
+                batch.get(i).future.complete(result);
+            }
+        }
+    }
+
+    /**
+     * Sends the last partial batch and stops the linger timer.
+     */
+    public void shutdown() {
+        flush();
+        timer.shutdownNow();
+    }
+
+    private static final class Pending {
+        private final String message;
+        private final ConversationContext.Recent context;
+        private final QuotaGovernor.Priority priority;
+        private final double tokenCost;
+        private final CompletableFuture<ModerationResult> future = new CompletableFuture<>();
+
+        private Pending(String message, ConversationContext.Recent context, QuotaGovernor.Priority priority,
+                        double tokenCost) {
+            this.message = message;
+            this.context = context;
+            this.priority = priority;
+            this.tokenCost = tokenCost;
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package com.Hihelloy.chatmoderator.services;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+
+/**
+ * Executor for blocking AI provider calls, owned by the plugin.<br><br>
+ *
+ * Provider calls block on HTTP, so they must not run on {@code ForkJoinPool.commonPool()},
+ * which is small and shared with the server and other plugins. On Java 21+ every task gets
+ * its own virtual thread; on older runtimes a fixed pool of daemon platform threads is used.
+ * Either way at most {@code threads} calls run at once and at most {@code queueSize} more
+ * wait for a turn; anything beyond that is rejected with a {@link RejectedExecutionException}
+ * so the caller can shed the message to the local rule check. With virtual threads a waiting
+ * task is a parked virtual thread, let through in arrival order as running calls finish.
+ */
+public class ModerationExecutor implements Executor {
+
+    private final ExecutorService delegate;
+    // Virtual threads only: tasks running or waiting, and tasks running
+    private final Semaphore permits;
+    private final Semaphore running;
+    private final boolean virtualThreads;
+    private final LongAdder rejected = new LongAdder();
+
+    public ModerationExecutor(Logger logger, boolean preferVirtualThreads, int threads, int queueSize) {
+        threads = Math.max(1, threads);
+        queueSize = Math.max(1, queueSize);
+
+        ExecutorService virtual = preferVirtualThreads ? newVirtualThreadExecutor() : null;
+        if (virtual != null) {
+            // Virtual threads are cheap, so bound how many calls may be in flight instead
+            this.delegate = virtual;
+            this.permits = new Semaphore(threads + queueSize);
+            this.running = new Semaphore(threads, true);
+            this.virtualThreads = true;
+        } else {
+            AtomicInteger counter = new AtomicInteger();
+            this.delegate = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+                    new ArrayBlockingQueue<>(queueSize), runnable -> {
+                        Thread thread = new Thread(runnable, "ChatModerator-AI-" + counter.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    }, new ThreadPoolExecutor.AbortPolicy());
+            ((ThreadPoolExecutor) delegate).allowCoreThreadTimeOut(true);
+            this.permits = null;
+            this.running = null;
+            this.virtualThreads = false;
+        }
+
+        logger.info("AI moderation executor: " + (virtualThreads ? "virtual threads" : threads + " platform threads")
+                + ", capacity " + (threads + queueSize));
+    }
+
+    // Executors.newVirtualThreadPerTaskExecutor() only exists on Java 21+, and we compile for 17
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return null;
+        }
+    }
+
+    /**
+     * @throws RejectedExecutionException If the executor is saturated or shut down.
+     */
+    @Override
+    public void execute(Runnable command) {
+        if (permits == null) {
+            try {
+                delegate.execute(command);
+            } catch (RejectedExecutionException e) {
+                rejected.increment();
+                throw e;
+            }
+            return;
+        }
+
+        if (!permits.tryAcquire()) {
+            rejected.increment();
+            throw new RejectedExecutionException("AI moderation executor is saturated");
+        }
+        try {
+            delegate.execute(() -> {
+                try {
+                    // Waits here, parked, while all threads' worth of calls are running
+                    running.acquire();
+                } catch (InterruptedException e) {
+                    // Shut down while waiting; the caller's timeout covers the dropped call
+                    permits.release();
+                    return;
+                }
+                try {
+                    command.run();
+                } finally {
+                    running.release();
+                    permits.release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            permits.release();
+            rejected.increment();
+            throw e;
+        }
+    }
+
+    public boolean isUsingVirtualThreads() {
+        return virtualThreads;
+    }
+
+    /**
+     * @return How many tasks were shed because the executor was full.
+     */
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    /**
+     * Stops accepting work and waits briefly for in-flight calls before interrupting them.
+     */
+    public void shutdown() {
+        delegate.shutdown();
+        try {
+            if (!delegate.awaitTermination(2, TimeUnit.SECONDS)) {
+                delegate.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            delegate.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+}
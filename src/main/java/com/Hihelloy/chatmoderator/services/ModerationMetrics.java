@@ -0,0 +1,115 @@
+package com.Hihelloy.chatmoderator.services;
+
+import com.Hihelloy.chatmoderator.utils.LatencyHistogram;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters and latency histograms for every stage of the chat pipeline.<br><br>
+ *
+ * Recording is a couple of {@link LongAdder} increments, so the instrumentation stays on
+ * all the time. Shown by {@code /chatmod metrics} and, when enabled, exported in Prometheus
+ * text format by {@link MetricsHttpServer}.
+ */
+public class ModerationMetrics {
+
+    /**
+     * Timed pipeline stages, in the order a message passes through them.
+     */
+    public enum Stage {
+        MUTE_CHECK("mute_check", "Mute check"),
+        WORD_FILTER("word_filter", "Word filter"),
+        RULES("rules", "Local rules"),
+        CACHE("cache", "Verdict cache"),
+        QUOTA("quota_wait", "Quota wait"),
+        PROVIDER("provider", "AI provider"),
+        DISPATCH("dispatch", "Main-thread dispatch");
+
+        private final String metricName;
+        private final String displayName;
+
+        Stage(String metricName, String displayName) {
+            this.metricName = metricName;
+            this.displayName = displayName;
+        }
+
+        public String getMetricName() {
+            return metricName;
+        }
+
+        public String getDisplayName() {
+            return displayName;
+        }
+    }
+
+    private final LatencyHistogram[] latencies = new LatencyHistogram[Stage.values().length];
+    private final LongAdder messages = new LongAdder();
+    private final LongAdder blockedByWordFilter = new LongAdder();
+    private final LongAdder blockedByModeration = new LongAdder();
+    private final LongAdder providerFailures = new LongAdder();
+
+    public ModerationMetrics() {
+        for (int i = 0; i < latencies.length; i++) {
+            latencies[i] = new LatencyHistogram();
+        }
+    }
+
+    /**
+     * Records the time a stage took, given its {@link System#nanoTime()} start.
+     */
+    public void record(Stage stage, long startNanos) {
+        latencies[stage.ordinal()].recordSince(startNanos);
+    }
+
+    public LatencyHistogram getLatency(Stage stage) {
+        return latencies[stage.ordinal()];
+    }
+
+    public void messageReceived() {
+        messages.increment();
+    }
+
+    public void blockedByWordFilter() {
+        blockedByWordFilter.increment();
+    }
+
+    /**
+     * A message blocked by the rules, the local classifier or the AI.
+     */
+    public void blockedByModeration() {
+        blockedByModeration.increment();
+    }
+
+    public void providerFailed() {
+        providerFailures.increment();
+    }
+
+    public long getMessageCount() {
+        return messages.sum();
+    }
+
+    public long getBlockedByWordFilterCount() {
+        return blockedByWordFilter.sum();
+    }
+
+    public long getBlockedByModerationCount() {
+        return blockedByModeration.sum();
+    }
+
+    public long getProviderFailureCount() {
+        return providerFailures.sum();
+    }
+
+    /**
+     * Clears every counter and histogram.
+     */
+    public void reset() {
+        for (LatencyHistogram latency : latencies) {
+            latency.reset();
+        }
+        messages.reset();
+        blockedByWordFilter.reset();
+        blockedByModeration.reset();
+        providerFailures.reset();
+    }
+}
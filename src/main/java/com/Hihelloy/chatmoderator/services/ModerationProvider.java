@@ -0,0 +1,80 @@
+package com.Hihelloy.chatmoderator.services;
+
+import com.Hihelloy.chatmoderator.utils.ModerationCategory;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A remote AI service that {@link ModerationService} can ask for per-category scores.<br><br>
+ *
+ * Scores are {@code double[]} arrays of {@link ModerationCategory#COUNT} values from 0 to 1,
+ * indexed by {@link ModerationCategory#ordinal()}; {@link ModerationService} turns them into
+ * verdicts using the configured thresholds. Implementations are called from the moderation
+ * executor and may block. They should throw when the request itself failed (network error,
+ * bad status), so the circuit breaker can count it, and return null for a message the AI
+ * gave no usable answer for.
+ */
+public interface ModerationProvider {
+
+    /**
+     * @return A short display name, e.g. "OpenAI".
+     */
+    String getName();
+
+    /**
+     * @return The scores, or null if the local rules should decide.
+     */
+    double[] score(String message) throws Exception;
+
+    /**
+     * Scores several messages, ideally in one request. Implementations should not retry
+     * messages left out of a reply themselves; a null entry is asked about again by the
+     * caller, where the extra request is counted by the circuit breaker and the quota.
+     *
+     * @return One score array (or null) per message, in order.
+     */
+    default List<double[]> scoreBatch(List<String> messages) throws Exception {
+        List<double[]> results = new ArrayList<>(messages.size());
+        for (String message : messages) {
+            results.add(score(message));
+        }
+        return results;
+    }
+
+    /**
+     * Scores a message together with what was said just before it, so content split over
+     * several lines can be recognized. Only the message is being judged; the context is
+     * background. The default ignores the context.
+     *
+     * @param context The recent lines, or null for none.
+     * @return The scores, or null if the local rules should decide.
+     */
+    default double[] score(String message, ConversationContext.Recent context) throws Exception {
+        return score(message);
+    }
+
+    /**
+     * Scores several messages, each with its own context (or null). The default ignores the context.
+     *
+     * @return One score array (or null) per message, in order.
+     */
+    default List<double[]> scoreBatch(List<String> messages, List<ConversationContext.Recent> contexts)
+            throws Exception {
+        return scoreBatch(messages);
+    }
+
+    /**
+     * Sets how long calls started from now on may take before they are abandoned, so a call
+     * nobody waits for any more doesn't keep holding its moderation thread. Called before
+     * every call with the circuit breaker's current timeout. The default ignores it.
+     */
+    default void setCallTimeout(long millis) {
+    }
+
+    /**
+     * Releases anything the provider holds. Called when it is swapped out on reload.
+     */
+    default void close() {
+    }
+}
@@ -2,84 +2,506 @@ package com.Hihelloy.chatmoderator.services;
 
 import com.Hihelloy.chatmoderator.ChatModeratorPlugin;
 import com.Hihelloy.chatmoderator.config.ConfigManager;
+import com.Hihelloy.chatmoderator.config.ConfigSnapshot;
 import com.Hihelloy.chatmoderator.utils.ModerationResult;
-import com.google.genai.Client;
-import com.google.genai.types.GenerateContentResponse;
+import okhttp3.OkHttpClient;
 
-import java.util.Locale;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
 import java.util.logging.Level;
+import java.util.logging.Logger;
 
 public class ModerationService {
 
-    private final ChatModeratorPlugin plugin;
-    private final ConfigManager configManager;
-    private final Client geminiClient;
+    // Marks a batched message the provider left out of its answer, to be asked about again on its own
+    private static final ModerationResult UNANSWERED = ModerationResult.error("No answer in batch");
+
+    private final Logger logger;
+    private final Supplier<ConfigSnapshot> config;
+    private final OkHttpClient httpClient;
+    private final VerdictCache verdictCache;
+    private final ModerationBatcher batcher;
+    private final QuotaGovernor quotaGovernor;
+    private final ModerationExecutor executor;
+    private final RuleEngine ruleEngine;
+    private final LocalClassifier localClassifier;
+    private final ModerationMetrics metrics;
+    private final LongAdder decidedLocally = new LongAdder();
+    private final LongAdder forwarded = new LongAdder();
+
+    // Provider and its breaker are swapped together on reload
+    private volatile ActiveProvider active;
 
     public ModerationService(ChatModeratorPlugin plugin, ConfigManager configManager) {
-        this.plugin = plugin;
-        this.configManager = configManager;
-
-        // Initialize Gemini client if AI provider is Gemini
-        if ("gemini".equalsIgnoreCase(configManager.getPreferredAIProvider())) {
-            String apiKey = configManager.getGeminiApiKey();
-            if (apiKey != null && !apiKey.equals("your-gemini-api-key-here")) {
-                this.geminiClient = new Client();
-            } else {
-                this.geminiClient = null; // disable AI moderation
+        this(plugin.getLogger(), configManager::snapshot, plugin.getModerationExecutor(),
+                new RuleEngine(plugin), new LocalClassifier(plugin), plugin.getMetrics(), null);
+        ruleEngine.load();
+        localClassifier.load();
+        active = createProvider(configManager.snapshot());
+    }
+
+    /**
+     * Wires the service from ready-made parts with a fixed provider, instead of loading files
+     * and picking the provider from the config. Used by the benchmarks.
+     *
+     * @param provider The provider to call, or null for none. {@link #reloadProvider()} replaces it.
+     */
+    ModerationService(Logger logger, Supplier<ConfigSnapshot> config, ModerationExecutor executor,
+                      RuleEngine ruleEngine, LocalClassifier localClassifier, ModerationMetrics metrics,
+                      ModerationProvider provider) {
+        ConfigSnapshot snapshot = config.get();
+        this.logger = logger;
+        this.config = config;
+        this.verdictCache = new VerdictCache(snapshot.cache().maxSize(),
+                snapshot.cache().safeTtlSeconds(), snapshot.cache().blockedTtlSeconds());
+        this.executor = executor;
+        this.ruleEngine = ruleEngine;
+        this.localClassifier = localClassifier;
+        this.metrics = metrics;
+        this.httpClient = OpenAIProvider.createHttpClient(snapshot.ai().executorThreads(),
+                snapshot.breaker().maxTimeoutMs());
+        this.quotaGovernor = new QuotaGovernor(snapshot.quota());
+        this.batcher = new ModerationBatcher(this::classifyBatch, this::admitBatch, executor,
+                snapshot.ai().batchMaxSize(), snapshot.ai().batchLingerMillis());
+        String breakerName = provider != null ? provider.getName() : "AI";
+        this.active = new ActiveProvider(provider, new CircuitBreaker(breakerName, logger, snapshot.breaker()));
+    }
+
+    /**
+     * Builds the provider selected by {@code ai.preferred-provider}, or none if its API key isn't set.
+     */
+    private ActiveProvider createProvider(ConfigSnapshot config) {
+        ModerationProvider provider = null;
+        String name = config.ai().preferredProvider();
+        if ("gemini".equalsIgnoreCase(name)) {
+            String apiKey = config.ai().geminiApiKey();
+            if (apiKey != null && !apiKey.isEmpty() && !apiKey.equals("your-gemini-api-key-here")) {
+                provider = new GeminiProvider(apiKey, config.ai().geminiModel());
+            }
+        } else if ("openai".equalsIgnoreCase(name)) {
+            String apiKey = config.ai().openAIApiKey();
+            if (apiKey != null && !apiKey.isEmpty() && !apiKey.equals("your-openai-api-key-here")) {
+                provider = new OpenAIProvider(httpClient, apiKey, config.ai().openAIModel());
             }
         } else {
-            this.geminiClient = null; // AI provider not Gemini
+            logger.warning("Unknown AI provider '" + name + "', AI moderation is disabled");
         }
+
+        String breakerName = provider != null ? provider.getName() : "AI";
+        return new ActiveProvider(provider, new CircuitBreaker(breakerName, logger, config.breaker()));
     }
 
     /**
-     * Asynchronously checks a message for moderation
+     * Asynchronously checks a message for moderation.<br><br>
+     *
+     * Local tiers run first and skip the remote call when they are sure: a rule hit
+     * blocks, and the local classifier allows or blocks messages whose score is clear-cut.
+     * Only messages in the classifier's uncertain band (or all of them, until it has been
+     * trained) are scored by the AI provider against the per-category thresholds.
      */
     public CompletableFuture<ModerationResult> checkAIModerationAsync(String message) {
-        return CompletableFuture.supplyAsync(() -> {
-            try {
-                if (geminiClient != null) {
-                    String prompt = "Classify this chat message for moderation.\n\n" +
-                            "Message: \"" + message + "\"\n\n" +
-                            "Respond with only ONE label: SAFE, HATE, SEXUAL, VIOLENCE, SELF_HARM.";
-
-                    GenerateContentResponse response = geminiClient.models
-                            .generateContent(configManager.getGeminiModel(), prompt, null);
-
-                    if (response != null && response.text() != null) {
-                        String result = response.text().trim().toUpperCase(Locale.ROOT);
-                        switch (result) {
-                            case "SEXUAL":
-                                return ModerationResult.safe();
-                            case "VIOLENCE":
-                            case "SELF_HARM":
-                                return ModerationResult.block("AI flagged: " + result);
-                        }
+        return checkAIModerationAsync(message, null, QuotaGovernor.Priority.NORMAL, true);
+    }
+
+    /**
+     * Same as {@link #checkAIModerationAsync(String)}, for a player's chat message.<br><br>
+     *
+     * The rules also run over the player's recent lines joined with this one, so content
+     * split over several messages is caught. Short messages are sent to the AI with their
+     * context, which can include other players' lines, so their verdicts skip the verdict
+     * cache and aren't kept as classifier samples. Longer ones are judged, and cached, on
+     * their own.
+     *
+     * @param context What was said just before, or null.
+     * @param priority The player's place in the quota queue when the provider is over budget.
+     * @param askProvider False to stop after the local tiers and the verdict cache, for
+     *                    players trusted enough to skip the AI.
+     */
+    public CompletableFuture<ModerationResult> checkAIModerationAsync(String message, ConversationContext.Recent context,
+                                                                      QuotaGovernor.Priority priority,
+                                                                      boolean askProvider) {
+        ConfigSnapshot config = this.config.get();
+        ConfigSnapshot.Classifier classifier = config.classifier();
+
+        long rulesStart = System.nanoTime();
+        ModerationResult local = checkAIRules(message);
+        if (!local.isBlocked() && context != null && context.player() != null) {
+            ModerationResult across = checkAIRules(context.joinedWith(message));
+            if (across.isBlocked()) {
+                local = ModerationResult.block(across.getReason() + " (across recent messages)",
+                        across.getViolationType());
+            }
+        }
+        metrics.record(ModerationMetrics.Stage.RULES, rulesStart);
+        if (local.isBlocked()) {
+            localClassifier.recordSample(message, true, classifier);
+            return CompletableFuture.completedFuture(local);
+        }
+        // Only short lines are judged with their context, the split-message case it is for
+        ConversationContext.Recent sent = context != null && (context.player() != null || context.channel() != null)
+                && message.length() <= config.context().maxMessageLength() ? context : null;
+
+        double localScore = classifier.enabled() ? localClassifier.score(message) : Double.NaN;
+        if (!Double.isNaN(localScore)) {
+            if (localScore < classifier.safeBelow()) {
+                decidedLocally.increment();
+                return CompletableFuture.completedFuture(local);
+            }
+            if (localScore >= classifier.blockAbove()) {
+                decidedLocally.increment();
+                return CompletableFuture.completedFuture(LocalClassifier.block(localScore));
+            }
+        }
+        // With no usable AI verdict, a fairly confident local score still blocks
+        ModerationResult offline = !Double.isNaN(localScore) && localScore >= classifier.offlineThreshold()
+                ? LocalClassifier.block(localScore) : local;
+
+        // A verdict judged with context says nothing about the same text in another conversation
+        boolean useCache = config.cache().enabled() && sent == null;
+        long cacheKey = useCache ? VerdictCache.key(message) : 0L;
+        if (useCache) {
+            long cacheStart = System.nanoTime();
+            ModerationResult cached = verdictCache.get(cacheKey);
+            metrics.record(ModerationMetrics.Stage.CACHE, cacheStart);
+            if (cached != null) {
+                return CompletableFuture.completedFuture(cached);
+            }
+        }
+
+        if (!askProvider) {
+            return CompletableFuture.completedFuture(offline);
+        }
+
+        forwarded.increment();
+        ActiveProvider current = active;
+        CompletableFuture<ModerationResult> verdict;
+        if (current.provider == null || !current.breaker.allowsRequests()) {
+            // No provider, or the breaker is open: the local rules decide
+            verdict = CompletableFuture.completedFuture(null);
+        } else if (config.ai().batchingEnabled()) {
+            // The batcher charges the quota once per batch it sends
+            verdict = sendBatched(message, sent, priority, config, current);
+        } else {
+            verdict = sendAlone(message, sent, priority, config, current);
+        }
+
+        return verdict.thenApply(result -> {
+            if (result == null) {
+                // No AI verdict, fall back to the local tiers
+                return offline;
+            }
+            if (sent == null) {
+                if (useCache) verdictCache.put(cacheKey, result);
+                localClassifier.recordSample(message, result.isBlocked(), classifier);
+            }
+            return result;
+        });
+    }
+
+    private CompletableFuture<ModerationResult> sendBatched(String message, ConversationContext.Recent context,
+                                                             QuotaGovernor.Priority priority, ConfigSnapshot config,
+                                                             ActiveProvider current) {
+        // The batch may wait for the quota before it is sent
+        long wait = current.breaker.getTimeoutMillis() + config.ai().batchLingerMillis()
+                + (quotaGovernor.isLimited() ? config.quota().maxWaitMillis() : 0);
+        return batcher.submit(message, context, priority, messageTokens(message, context))
+                .completeOnTimeout(null, wait, TimeUnit.MILLISECONDS)
+                .thenCompose(result -> {
+                    if (result != UNANSWERED) return CompletableFuture.completedFuture(result);
+                    // Left out of the batch reply, ask about it on its own
+                    ActiveProvider now = active;
+                    if (now.provider == null || !now.breaker.allowsRequests()) {
+                        return CompletableFuture.completedFuture(null);
                     }
+                    return sendAlone(message, context, priority, config, now);
+                });
+    }
+
+    /**
+     * Sends a message in a request of its own, once the quota has room for a whole request.
+     * Over budget, the local rules decide.
+     */
+    private CompletableFuture<ModerationResult> sendAlone(String message, ConversationContext.Recent context,
+                                                           QuotaGovernor.Priority priority, ConfigSnapshot config,
+                                                           ActiveProvider current) {
+        if (!quotaGovernor.isLimited()) return classifyAsync(message, context, config, current);
+        long quotaStart = System.nanoTime();
+        return quotaGovernor.acquire(priority, 1.0, messageTokens(message, context) + config.quota().promptTokens())
+                .thenCompose(granted -> {
+                    metrics.record(ModerationMetrics.Stage.QUOTA, quotaStart);
+                    return granted ? classifyAsync(message, context, config, current)
+                            : CompletableFuture.completedFuture(null);
+                });
+    }
+
+    /**
+     * Admits a batch as one request carrying one copy of the prompt.
+     */
+    private CompletableFuture<Boolean> admitBatch(QuotaGovernor.Priority priority, int size, double tokenCost) {
+        if (!quotaGovernor.isLimited()) return CompletableFuture.completedFuture(true);
+        long quotaStart = System.nanoTime();
+        return quotaGovernor.acquire(priority, 1.0, tokenCost + config.get().quota().promptTokens())
+                .whenComplete((granted, error) -> metrics.record(ModerationMetrics.Stage.QUOTA, quotaStart));
+    }
+
+    private CompletableFuture<ModerationResult> classifyAsync(String message, ConversationContext.Recent context,
+                                                               ConfigSnapshot config, ActiveProvider current) {
+        try {
+            return CompletableFuture.supplyAsync(() -> classify(message, context), executor)
+                    .completeOnTimeout(null, current.breaker.getTimeoutMillis(), TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // Executor is saturated, shed this message to the local rules
+            return CompletableFuture.completedFuture(null);
+        }
+    }
+
+    // Roughly four characters per token, not counting the prompt sent once per request
+    private static double messageTokens(String message, ConversationContext.Recent context) {
+        int chars = message.length();
+        if (context != null) {
+            if (context.player() != null) chars += context.player().length();
+            if (context.channel() != null) chars += context.channel().length();
+        }
+        return chars / 4.0 + 1;
+    }
+
+    /**
+     * Asks the AI to score a single message, through the circuit breaker.
+     *
+     * @return The AI verdict, or null if the AI gave none and the rules should decide.
+     */
+    private ModerationResult classify(String message, ConversationContext.Recent context) {
+        ActiveProvider current = enterActive();
+        try {
+            if (current.provider == null || !current.breaker.tryAcquire()) return null;
+            current.provider.setCallTimeout(current.breaker.getTimeoutMillis());
+            long start = System.nanoTime();
+            try {
+                double[] scores = context != null ? current.provider.score(message, context)
+                        : current.provider.score(message);
+                current.breaker.recordSuccess(System.nanoTime() - start);
+                metrics.record(ModerationMetrics.Stage.PROVIDER, start);
+                return toVerdict(scores);
+            } catch (Exception e) {
+                current.breaker.recordFailure(e);
+                metrics.providerFailed();
+                // The circuit breaker logs when failures pile up, so keep this quiet
+                logger.log(Level.FINE, "AI moderation failed", e);
+                return null;
+            }
+        } finally {
+            current.exit();
+        }
+    }
+
+    /**
+     * Asks the AI to score several messages in one request, through the circuit breaker.
+     *
+     * @return One verdict (or null) per message, in order. A message the reply left out
+     *         gets {@link #UNANSWERED}, so its caller can ask about it on its own.
+     */
+    private List<ModerationResult> classifyBatch(List<String> messages, List<ConversationContext.Recent> contexts) {
+        if (messages.size() == 1) {
+            return Collections.singletonList(classify(messages.get(0), contexts.get(0)));
+        }
+
+        ModerationResult[] verdicts = new ModerationResult[messages.size()];
+        ActiveProvider current = enterActive();
+        try {
+            if (current.provider == null || !current.breaker.tryAcquire()) {
+                // Breaker opened (or the provider was removed) while this batch was lingering
+                return Arrays.asList(verdicts);
+            }
+            current.provider.setCallTimeout(current.breaker.getTimeoutMillis());
+            long start = System.nanoTime();
+            try {
+                List<double[]> scores = contexts.stream().allMatch(Objects::isNull)
+                        ? current.provider.scoreBatch(messages) : current.provider.scoreBatch(messages, contexts);
+                current.breaker.recordSuccess(System.nanoTime() - start);
+                metrics.record(ModerationMetrics.Stage.PROVIDER, start);
+                for (int i = 0; i < verdicts.length; i++) {
+                    double[] itemScores = i < scores.size() ? scores.get(i) : null;
+                    verdicts[i] = itemScores != null ? toVerdict(itemScores) : UNANSWERED;
                 }
-                // fallback to rule-based check
-                return checkAIRules(message);
             } catch (Exception e) {
-                plugin.getLogger().log(Level.SEVERE, "AI moderation failed", e);
-                return checkAIRules(message);
+                current.breaker.recordFailure(e);
+                metrics.providerFailed();
+                // The whole request failed, let the rules decide rather than retrying every item
+                logger.log(Level.FINE, "AI batch moderation failed", e);
             }
-        });
+            return Arrays.asList(verdicts);
+        } finally {
+            current.exit();
+        }
+    }
+
+    /**
+     * @return The current provider, counted as in use until {@link ActiveProvider#exit()}.
+     */
+    private ActiveProvider enterActive() {
+        while (true) {
+            ActiveProvider current = active;
+            // Fails only if a reload or shutdown retired it just now, and both put another in place first
+            if (current.enter()) return current;
+        }
+    }
+
+    /**
+     * Checks provider scores against the current thresholds.
+     */
+    private ModerationResult toVerdict(double[] scores) {
+        if (scores == null) return null;
+        return ModerationResult.fromScores(scores, config.get().moderation().thresholdArray());
+    }
+
+    /**
+     * Applies the current batching limits. Called on config reload.
+     */
+    public void reconfigureBatching() {
+        ConfigSnapshot.Ai ai = config.get().ai();
+        batcher.configure(ai.batchMaxSize(), ai.batchLingerMillis());
+    }
+
+    /**
+     * Applies the current quota budgets. Called on config reload.
+     */
+    public void reconfigureQuota() {
+        quotaGovernor.configure(config.get().quota());
+    }
+
+    public QuotaGovernor getQuotaGovernor() {
+        return quotaGovernor;
+    }
+
+    /**
+     * Swaps in the provider selected by the current config, with a fresh circuit breaker.
+     * Requests already running finish on the old provider, which is closed once the last
+     * of them returns. Called on config reload.
+     */
+    public void reloadProvider() {
+        ActiveProvider previous = active;
+        active = createProvider(config.get());
+        previous.retire();
+        logger.info("AI moderation provider: " + getProviderName());
+    }
+
+    /**
+     * @return The name of the provider in use, or "none" if AI moderation has no provider.
+     */
+    public String getProviderName() {
+        ModerationProvider provider = active.provider;
+        return provider != null ? provider.getName() : "none";
+    }
+
+    public CircuitBreaker getCircuitBreaker() {
+        return active.breaker;
+    }
+
+    public LocalClassifier getLocalClassifier() {
+        return localClassifier;
     }
 
     /**
-     * Simple keyword-based moderation fallback
+     * @return Messages the local classifier allowed or blocked without an AI call.
+     */
+    public long getDecidedLocallyCount() {
+        return decidedLocally.sum();
+    }
+
+    /**
+     * @return Messages that needed an AI verdict (including ones answered by the verdict cache).
+     */
+    public long getForwardedCount() {
+        return forwarded.sum();
+    }
+
+    public void shutdown() {
+        // The last partial batch still goes through the quota, which then drops whatever waits
+        batcher.shutdown();
+        quotaGovernor.shutdown();
+        localClassifier.shutdown();
+        // Calls still queued or lingering find no provider instead of a retired one
+        ActiveProvider previous = active;
+        active = new ActiveProvider(null, previous.breaker);
+        previous.retire();
+        OpenAIProvider.closeHttpClient(httpClient);
+    }
+
+    /**
+     * Drops all cached verdicts and applies the current cache limits.
+     * Called on config reload, which is also where the model can change.
+     */
+    public void resetVerdictCache() {
+        ConfigSnapshot.Cache cache = config.get().cache();
+        verdictCache.configure(cache.maxSize(), cache.safeTtlSeconds(), cache.blockedTtlSeconds());
+        verdictCache.clear();
+    }
+
+    public VerdictCache getVerdictCache() {
+        return verdictCache;
+    }
+
+    /**
+     * Reloads rules.yml. Called on config reload.
+     */
+    public void reloadRules() {
+        ruleEngine.load();
+    }
+
+    public RuleEngine getRuleEngine() {
+        return ruleEngine;
+    }
+
+    /**
+     * Local rule-based moderation, checked before any AI call
      */
     private ModerationResult checkAIRules(String message) {
-        String lower = message.toLowerCase(Locale.ROOT);
+        return ruleEngine.evaluate(message);
+    }
+
+    /**
+     * A provider with its breaker, and a count of the calls using it. The count holds one
+     * extra reference for as long as it is the active provider; {@link #retire()} drops that
+     * one, and whoever drops the last reference closes the provider.
+     */
+    private static final class ActiveProvider {
+        private final ModerationProvider provider;
+        private final CircuitBreaker breaker;
+        private final AtomicInteger references = new AtomicInteger(1);
 
-        if (lower.contains("kys") || lower.contains("nigger") || lower.contains("faggot") || lower.contains("negro") || lower.equalsIgnoreCase("Kill yourself") || lower.contains("gfys") || lower.contains("nga") || lower.contains("nigga") || lower.contains("ngr") || lower.contains("retard") || lower.contains("fag") || lower.contains("sped")) {
-            return ModerationResult.block("Rule: violence/self-harm/hate-speech keyword/keyphrase detected");
+        private ActiveProvider(ModerationProvider provider, CircuitBreaker breaker) {
+            this.provider = provider;
+            this.breaker = breaker;
         }
-        if (lower.contains("sex") || lower.contains("rape") || lower.equalsIgnoreCase("I'm horny") || lower.contains("horny") || lower.contains("nude") || lower.contains("naked") || lower.equalsIgnoreCase("I'm gonna rape you") || lower.equalsIgnoreCase("I'm going to goon") || lower.contains("goon") || lower.contains("blowjob") || lower.equalsIgnoreCase("I'm gonna blow you") || lower.contains("cum") || lower.equalsIgnoreCase("I'm cumming") || lower.equalsIgnoreCase("fuck me in the ass") || lower.equalsIgnoreCase("goon me") || lower.equalsIgnoreCase("fiddle with me") || lower.equalsIgnoreCase("twirl my pubes") || lower.contains("pubes") || lower.equalsIgnoreCase("blow me")) {
-            return ModerationResult.block("Rule: sexual content keyword/keyphrase detected");
+
+        /**
+         * @return False if the provider was already retired and may be closed.
+         */
+        private boolean enter() {
+            while (true) {
+                int count = references.get();
+                if (count == 0) return false;
+                if (references.compareAndSet(count, count + 1)) return true;
+            }
         }
-        return ModerationResult.safe();
-    }
 
+        private void exit() {
+            if (references.decrementAndGet() == 0 && provider != null) provider.close();
+        }
+
+        /**
+         * Drops the active reference. Called once, when the provider is replaced or on shutdown.
+         */
+        private void retire() {
+            exit();
+        }
+    }
 }
@@ -0,0 +1,318 @@
+package com.Hihelloy.chatmoderator.services;
+
+import com.Hihelloy.chatmoderator.ChatModeratorPlugin;
+import com.Hihelloy.chatmoderator.utils.SchedulerUtil;
+import org.bukkit.Bukkit;
+import org.bukkit.ChatColor;
+import org.bukkit.entity.Player;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Persistent store of muted players, keyed by UUID.<br><br>
+ *
+ * Lookups are a single hash probe and never hold on to {@code Player} objects, so mutes
+ * work for offline players and don't leak after logout. Expiry is driven by a
+ * {@link DelayQueue} that a repeating async task polls, so players are told when their
+ * mute ends instead of entries only being cleaned up when they next chat.<br><br>
+ *
+ * Every change is queued as one journal line and appended to {@code mutes.journal} by the
+ * expiry timer, so muting a player never waits on the disk:
+ * <pre>
+ * M &lt;uuid&gt; &lt;expires-at-millis&gt; &lt;name&gt;
+ * U &lt;uuid&gt;
+ * </pre>
+ * Startup replays the journal sequentially, skipping lines it can't parse. Once it holds
+ * many more records than there are live mutes, it is compacted by writing the live set to a
+ * temp file and renaming it over the journal. If the journal could not be read to the end,
+ * it is never compacted, so the mutes that weren't read are not overwritten.
+ */
+public class MuteStore {
+
+    private static final String JOURNAL_NAME = "mutes.journal";
+    private static final int COMPACT_MIN_RECORDS = 1024;
+
+    private final Logger logger;
+    private final Path journalPath;
+    private final Map<UUID, MuteEntry> mutes = new ConcurrentHashMap<>();
+    private final DelayQueue<MuteEntry> expiries = new DelayQueue<>();
+    // Journal lines not yet written, in the order the changes were made
+    private final ConcurrentLinkedQueue<String> pending = new ConcurrentLinkedQueue<>();
+
+    private final Object journalLock = new Object();
+    private BufferedWriter journal;
+    private int journalRecords;
+    // Set when the journal couldn't be read to the end; compacting would then drop the unread mutes
+    private boolean journalIncomplete;
+    private Object expiryTask;
+
+    public MuteStore(ChatModeratorPlugin plugin) {
+        this(plugin.getLogger(), new File(plugin.getDataFolder(), JOURNAL_NAME).toPath());
+    }
+
+    /**
+     * A store journaling to the given file, without a running plugin. Used by the benchmarks.
+     */
+    MuteStore(Logger logger, Path journalPath) {
+        this.logger = logger;
+        this.journalPath = journalPath;
+    }
+
+    /**
+     * Replays the journal, compacts it and starts the expiry timer.
+     */
+    public void load() {
+        long now = System.currentTimeMillis();
+        boolean complete = true;
+        if (Files.exists(journalPath)) {
+            int lineNumber = 0;
+            try (BufferedReader reader = Files.newBufferedReader(journalPath, StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    lineNumber++;
+                    if (!line.isBlank() && !replay(line)) {
+                        logger.warning("Skipping malformed line " + lineNumber + " of " + JOURNAL_NAME + ": " + line);
+                    }
+                }
+            } catch (IOException e) {
+                complete = false;
+                logger.log(Level.WARNING, "Failed to read " + JOURNAL_NAME + " past line " + lineNumber
+                        + ", it is left as it is until it can be read in full", e);
+            }
+        }
+
+        mutes.values().removeIf(entry -> entry.expiresAt <= now);
+        expiries.addAll(mutes.values());
+
+        synchronized (journalLock) {
+            journalIncomplete = !complete;
+            compact();
+        }
+        expiryTask = SchedulerUtil.runAsyncTimer(this::expireDue, 20L, 20L);
+    }
+
+    /**
+     * @return False if the line is not a valid record.
+     */
+    private boolean replay(String line) {
+        String[] parts = line.split(" ", 4);
+        try {
+            if (parts.length >= 2 && parts[0].equals("U")) {
+                mutes.remove(UUID.fromString(parts[1]));
+                return true;
+            }
+            if (parts.length == 4 && parts[0].equals("M")) {
+                UUID uuid = UUID.fromString(parts[1]);
+                mutes.put(uuid, new MuteEntry(uuid, parts[3], Long.parseLong(parts[2])));
+                return true;
+            }
+        } catch (IllegalArgumentException e) {
+            // Bad UUID or timestamp, e.g. a write cut short by a crash
+        }
+        return false;
+    }
+
+    /**
+     * Mutes a player, replacing any existing mute.
+     */
+    public void mute(UUID uuid, String name, long durationMillis) {
+        MuteEntry entry = new MuteEntry(uuid, name, System.currentTimeMillis() + durationMillis);
+        mutes.put(uuid, entry);
+        expiries.add(entry);
+        append("M " + uuid + " " + entry.expiresAt + " " + name);
+    }
+
+    /**
+     * @return The removed mute, or null if the player wasn't muted.
+     */
+    public MuteEntry unmute(UUID uuid) {
+        MuteEntry entry = mutes.remove(uuid);
+        if (entry != null) {
+            expiries.remove(entry);
+            append("U " + uuid);
+        }
+        return entry;
+    }
+
+    public boolean isMuted(UUID uuid) {
+        MuteEntry entry = mutes.get(uuid);
+        return entry != null && entry.expiresAt > System.currentTimeMillis();
+    }
+
+    /**
+     * @return The active mute for a player name (case-insensitive), or null.
+     */
+    public MuteEntry findByName(String name) {
+        for (MuteEntry entry : mutes.values()) {
+            if (entry.name.equalsIgnoreCase(name) && entry.expiresAt > System.currentTimeMillis()) {
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    public Collection<MuteEntry> getMutes() {
+        List<MuteEntry> active = new ArrayList<>();
+        long now = System.currentTimeMillis();
+        for (MuteEntry entry : mutes.values()) {
+            if (entry.expiresAt > now) active.add(entry);
+        }
+        return Collections.unmodifiableList(active);
+    }
+
+    // Called from the async timer: drops expired mutes, tells online players and writes the journal
+    private void expireDue() {
+        MuteEntry expired;
+        while ((expired = expiries.poll()) != null) {
+            // A newer mute may have replaced this entry
+            if (!mutes.remove(expired.uuid, expired)) continue;
+            append("U " + expired.uuid);
+
+            Player player = Bukkit.getPlayer(expired.uuid);
+            if (player != null) {
+                SchedulerUtil.ensureEntity(player, () ->
+                        player.sendMessage(ChatColor.GREEN + "Your mute has expired."));
+            }
+        }
+        writeJournal();
+    }
+
+    // Changes are applied to the map before they are queued, so a compaction covers every queued line
+    private void append(String record) {
+        pending.add(record);
+    }
+
+    // Appends the queued lines as one batch, compacting once the journal has grown large
+    private void writeJournal() {
+        if (pending.isEmpty()) return;
+        synchronized (journalLock) {
+            try {
+                if (journal == null) {
+                    Files.createDirectories(journalPath.getParent());
+                    journal = Files.newBufferedWriter(journalPath, StandardCharsets.UTF_8,
+                            StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+                }
+                String record;
+                while ((record = pending.poll()) != null) {
+                    journal.write(record);
+                    journal.newLine();
+                    journalRecords++;
+                }
+                journal.flush();
+
+                if (journalRecords > Math.max(COMPACT_MIN_RECORDS, mutes.size() * 4)) {
+                    compact();
+                }
+            } catch (IOException e) {
+                logger.log(Level.WARNING, "Failed to write " + JOURNAL_NAME, e);
+            }
+        }
+    }
+
+    // Rewrites the journal with only the live mutes. Caller holds journalLock.
+    private void compact() {
+        if (journalIncomplete) return;
+        // Cleared before the live set is read, so every line dropped here is already in it
+        pending.clear();
+        Path temp = journalPath.resolveSibling(JOURNAL_NAME + ".tmp");
+        try {
+            closeJournal();
+            Files.createDirectories(journalPath.getParent());
+            int records = 0;
+            try (BufferedWriter writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+                for (MuteEntry entry : mutes.values()) {
+                    writer.write("M " + entry.uuid + " " + entry.expiresAt + " " + entry.name);
+                    writer.newLine();
+                    records++;
+                }
+            }
+            Files.move(temp, journalPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            journalRecords = records;
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Failed to compact " + JOURNAL_NAME, e);
+        }
+    }
+
+    private void closeJournal() throws IOException {
+        if (journal != null) {
+            journal.close();
+            journal = null;
+        }
+    }
+
+    /**
+     * Stops the expiry timer, writes what is still queued and leaves a compacted (or, after a
+     * failed read, closed) journal behind.
+     */
+    public void shutdown() {
+        SchedulerUtil.cancelTask(expiryTask);
+        writeJournal();
+        synchronized (journalLock) {
+            compact();
+            try {
+                closeJournal();
+            } catch (IOException e) {
+                logger.log(Level.WARNING, "Failed to close " + JOURNAL_NAME, e);
+            }
+        }
+    }
+
+    public static final class MuteEntry implements Delayed {
+        private final UUID uuid;
+        private final String name;
+        private final long expiresAt;
+
+        private MuteEntry(UUID uuid, String name, long expiresAt) {
+            this.uuid = uuid;
+            this.name = name;
+            this.expiresAt = expiresAt;
+        }
+
+        public UUID getUniqueId() {
+            return uuid;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getExpiresAt() {
+            return expiresAt;
+        }
+
+        public long getRemainingMillis() {
+            return Math.max(0, expiresAt - System.currentTimeMillis());
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(expiresAt - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return Long.compare(expiresAt, ((MuteEntry) other).expiresAt);
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package com.Hihelloy.chatmoderator.services;
+
+import com.Hihelloy.chatmoderator.config.ConfigManager;
+import com.Hihelloy.chatmoderator.config.ConfigSnapshot;
+import com.Hihelloy.chatmoderator.utils.MessageTemplate;
+import com.Hihelloy.chatmoderator.utils.SchedulerUtil;
+import org.bukkit.Bukkit;
+import org.bukkit.ChatColor;
+import org.bukkit.entity.Player;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Tells staff about violations, instead of broadcasting them to the whole server.<br><br>
+ *
+ * The {@code messages.admin-notification} template is parsed once per reload, and each
+ * notification is rendered once and sent only to online players with
+ * {@value #NOTIFY_PERMISSION}. That audience is kept as a set updated on join and quit,
+ * and re-checked every few seconds so granted or revoked permissions are picked up without
+ * testing every online player on each violation. Notifications about the same player are
+ * limited to one per {@code actions.notify-cooldown-seconds}; the next one says how many
+ * were held back.
+ */
+public class NotificationService {
+
+    public static final String NOTIFY_PERMISSION = "chatmoderator.notify";
+    // How often the staff audience is re-checked for permission changes, in ticks
+    private static final long AUDIENCE_REFRESH_TICKS = 100L;
+
+    private final ConfigManager configManager;
+    private final Set<Player> audience = ConcurrentHashMap.newKeySet();
+    private final Map<UUID, Cooldown> cooldowns = new ConcurrentHashMap<>();
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder suppressed = new LongAdder();
+
+    private volatile MessageTemplate adminNotification;
+    private Object refreshTask;
+
+    public NotificationService(ConfigManager configManager) {
+        this.configManager = configManager;
+    }
+
+    /**
+     * Parses the templates, collects the online staff and starts the audience refresh.
+     */
+    public void load() {
+        reload();
+        refreshTask = SchedulerUtil.runGlobalTimer(this::refreshAudience, AUDIENCE_REFRESH_TICKS,
+                AUDIENCE_REFRESH_TICKS);
+    }
+
+    /**
+     * Re-parses the templates and re-checks the audience. Called on config reload.
+     */
+    public void reload() {
+        adminNotification = MessageTemplate.compile(configManager.snapshot().messages().adminNotification(),
+                "player", "message", "reason");
+        refreshAudience();
+    }
+
+    public void shutdown() {
+        SchedulerUtil.cancelTask(refreshTask);
+        audience.clear();
+        cooldowns.clear();
+    }
+
+    private void refreshAudience() {
+        for (Player player : Bukkit.getOnlinePlayers()) {
+            playerJoined(player);
+        }
+        audience.removeIf(player -> !player.isOnline() || !player.hasPermission(NOTIFY_PERMISSION));
+    }
+
+    public void playerJoined(Player player) {
+        if (player.hasPermission(NOTIFY_PERMISSION)) {
+            audience.add(player);
+        } else {
+            audience.remove(player);
+        }
+    }
+
+    public void playerQuit(Player player) {
+        audience.remove(player);
+        cooldowns.remove(player.getUniqueId());
+    }
+
+    /**
+     * Tells online staff that a player's message was blocked, unless notifications are off
+     * or this player was already reported within the cooldown.
+     */
+    public void notifyViolation(Player offender, String message, String reason) {
+        ConfigSnapshot.Actions actions = configManager.snapshot().actions();
+        if (!actions.notifyAdmins() || audience.isEmpty()) return;
+
+        long now = System.nanoTime();
+        long cooldown = TimeUnit.SECONDS.toNanos(actions.notifyCooldownSeconds());
+        Cooldown state = cooldowns.computeIfAbsent(offender.getUniqueId(), uuid -> new Cooldown());
+        int held;
+        synchronized (state) {
+            if (state.notified && now - state.lastSent < cooldown) {
+                state.suppressed++;
+                suppressed.increment();
+                return;
+            }
+            held = state.suppressed;
+            state.suppressed = 0;
+            state.lastSent = now;
+            state.notified = true;
+        }
+
+        String line = adminNotification.render(offender.getName(), message, reason);
+        if (held > 0) {
+            line += ChatColor.GRAY + " (+" + held + " more since the last notice)";
+        }
+        for (Player staff : audience) {
+            staff.sendMessage(line);
+        }
+        sent.increment();
+    }
+
+    /**
+     * @return The number of online players who receive notifications.
+     */
+    public int getAudienceSize() {
+        return audience.size();
+    }
+
+    public long getSentCount() {
+        return sent.sum();
+    }
+
+    public long getSuppressedCount() {
+        return suppressed.sum();
+    }
+
+    private static final class Cooldown {
+        private boolean notified;
+        private long lastSent;
+        private int suppressed;
+    }
+}
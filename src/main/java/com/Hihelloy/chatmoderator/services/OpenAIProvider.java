@@ -0,0 +1,195 @@
+package com.Hihelloy.chatmoderator.services;
+
+import com.Hihelloy.chatmoderator.utils.ModerationCategory;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import okhttp3.Call;
+import okhttp3.ConnectionPool;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Moderation through OpenAI's {@code /v1/moderations} endpoint.<br><br>
+ *
+ * Batches are sent as one request with an array input, which the endpoint answers with
+ * one result per message. All requests go through a single shared {@link OkHttpClient}
+ * (see {@link #createHttpClient(int, long)}), so they reuse pooled, already-handshaken
+ * HTTP/2 connections instead of opening a new TLS connection per chat line.
+ */
+public class OpenAIProvider implements ModerationProvider {
+
+    private static final String ENDPOINT = "https://api.openai.com/v1/moderations";
+    private static final MediaType JSON = MediaType.get("application/json; charset=utf-8");
+
+    private final OkHttpClient httpClient;
+    private final String apiKey;
+    private final String model;
+    private volatile long callTimeoutMillis;
+
+    /**
+     * @param httpClient The shared client from {@link #createHttpClient(int, long)}. Not closed by this provider.
+     */
+    public OpenAIProvider(OkHttpClient httpClient, String apiKey, String model) {
+        this.httpClient = httpClient;
+        this.apiKey = apiKey;
+        this.model = model;
+    }
+
+    /**
+     * Builds the HTTP client shared by every OpenAI provider instance, so warm connections
+     * survive a provider swap on reload.
+     *
+     * @param maxIdleConnections Idle connections kept in the pool, roughly the number of AI threads.
+     * @param callTimeoutMillis Hard limit for a whole request, when no shorter one is set
+     *                          with {@link #setCallTimeout(long)}.
+     */
+    public static OkHttpClient createHttpClient(int maxIdleConnections, long callTimeoutMillis) {
+        return new OkHttpClient.Builder()
+                .connectionPool(new ConnectionPool(Math.max(1, maxIdleConnections), 5, TimeUnit.MINUTES))
+                .protocols(List.of(Protocol.HTTP_2, Protocol.HTTP_1_1))
+                .connectTimeout(5, TimeUnit.SECONDS)
+                .callTimeout(callTimeoutMillis, TimeUnit.MILLISECONDS)
+                // Keeps idle HTTP/2 connections alive through NATs and load balancers
+                .pingInterval(30, TimeUnit.SECONDS)
+                .retryOnConnectionFailure(true)
+                .build();
+    }
+
+    /**
+     * Closes the pooled connections and the client's threads. Call once, on plugin disable.
+     */
+    public static void closeHttpClient(OkHttpClient httpClient) {
+        httpClient.dispatcher().executorService().shutdown();
+        httpClient.connectionPool().evictAll();
+    }
+
+    @Override
+    public String getName() {
+        return "OpenAI";
+    }
+
+    /**
+     * Applied to each OkHttp call, in place of the client's fixed call timeout, so the
+     * connection is given up on and the thread freed when the caller stops waiting.
+     */
+    @Override
+    public void setCallTimeout(long millis) {
+        this.callTimeoutMillis = millis;
+    }
+
+    @Override
+    public double[] score(String message) throws Exception {
+        return scoreBatch(List.of(message)).get(0);
+    }
+
+    @Override
+    public double[] score(String message, ConversationContext.Recent context) throws Exception {
+        return scoreBatch(List.of(message), Collections.singletonList(context)).get(0);
+    }
+
+    @Override
+    public List<double[]> scoreBatch(List<String> messages) throws Exception {
+        return scoreBatch(messages, Collections.nCopies(messages.size(), null));
+    }
+
+    /**
+     * The endpoint takes no instructions, so a message with context is sent as three inputs
+     * in the same request: the message alone, the sender's earlier lines followed by the
+     * message, and the earlier lines alone. The message scores, per category, the higher of
+     * its own score and what joining it to its context added over the context alone. A split
+     * message is caught, and a harmless follow-up doesn't inherit the context's scores.
+     */
+    @Override
+    public List<double[]> scoreBatch(List<String> messages, List<ConversationContext.Recent> contexts)
+            throws Exception {
+        JsonArray input = new JsonArray();
+        // Position of each message's own input; a message with context has the other two right after it
+        int[] first = new int[messages.size()];
+        for (int i = 0; i < messages.size(); i++) {
+            ConversationContext.Recent context = contexts.get(i);
+            first[i] = input.size();
+            input.add(messages.get(i));
+            if (context != null && context.player() != null) {
+                input.add(context.player() + "\n" + messages.get(i));
+                input.add(context.player());
+            }
+        }
+        JsonObject body = new JsonObject();
+        body.addProperty("model", model);
+        body.add("input", input);
+
+        Request request = new Request.Builder()
+                .url(ENDPOINT)
+                .header("Authorization", "Bearer " + apiKey)
+                .post(RequestBody.create(body.toString(), JSON))
+                .build();
+
+        Call call = httpClient.newCall(request);
+        long timeout = callTimeoutMillis;
+        if (timeout > 0) call.timeout().timeout(timeout, TimeUnit.MILLISECONDS);
+
+        String text;
+        try (Response response = call.execute()) {
+            ResponseBody responseBody = response.body();
+            text = responseBody != null ? responseBody.string() : "";
+            if (!response.isSuccessful()) {
+                throw new IOException("OpenAI moderation returned HTTP " + response.code() + ": "
+                        + (text.length() > 200 ? text.substring(0, 200) + "..." : text));
+            }
+        }
+
+        JsonArray results = JsonParser.parseString(text).getAsJsonObject().getAsJsonArray("results");
+        List<double[]> scores = new ArrayList<>(messages.size());
+        for (int i = 0; i < messages.size(); i++) {
+            double[] own = resultAt(results, first[i]);
+            ConversationContext.Recent context = contexts.get(i);
+            if (own != null && context != null && context.player() != null) {
+                double[] joined = resultAt(results, first[i] + 1);
+                double[] before = resultAt(results, first[i] + 2);
+                if (joined != null && before != null) {
+                    for (int c = 0; c < own.length; c++) {
+                        own[c] = Math.max(own[c], joined[c] - before[c]);
+                    }
+                }
+            }
+            scores.add(own);
+        }
+        return scores;
+    }
+
+    private static double[] resultAt(JsonArray results, int index) {
+        return results != null && index < results.size() ? scoresFor(results.get(index).getAsJsonObject()) : null;
+    }
+
+    /**
+     * Reads {@code category_scores} into an array indexed by {@link ModerationCategory}.
+     * Categories this plugin doesn't know are ignored.
+     */
+    private static double[] scoresFor(JsonObject result) {
+        JsonObject categoryScores = result.getAsJsonObject("category_scores");
+        if (categoryScores == null) return null;
+
+        double[] scores = new double[ModerationCategory.COUNT];
+        for (Map.Entry<String, JsonElement> entry : categoryScores.entrySet()) {
+            ModerationCategory category = ModerationCategory.byName(entry.getKey());
+            if (category != null && !entry.getValue().isJsonNull()) {
+                scores[category.ordinal()] = entry.getValue().getAsDouble();
+            }
+        }
+        return scores;
+    }
+}
@@ -0,0 +1,307 @@
+package com.Hihelloy.chatmoderator.services;
+
+import com.Hihelloy.chatmoderator.config.ConfigSnapshot;
+import org.bukkit.entity.Player;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Keeps AI provider calls within the provider's per-minute quota.<br><br>
+ *
+ * Two token buckets, one for requests and one for (estimated) tokens, refill continuously
+ * at {@code quota.requests-per-minute} and {@code quota.tokens-per-minute} and hold at most
+ * one minute's worth. A check that fits the buckets goes straight through. Otherwise it
+ * waits in a priority queue: messages from new players and from players with a recent
+ * violation are sent first, and messages from players the {@link TrustStore} rates as
+ * established are not queued at all but left to the local tiers. A check still waiting
+ * after {@code quota.max-wait-ms} is dropped to the local tiers too, since a verdict that
+ * late is no use to chat.<br><br>
+ *
+ * With batching on, the {@link ModerationBatcher} asks once per batch it sends: one request,
+ * the batch's combined tokens and one copy of the prompt, queued at the priority of its
+ * most urgent message.
+ */
+public class QuotaGovernor {
+
+    /**
+     * Queue order for a check. Lower ordinals are sent first.
+     */
+    public enum Priority {
+        /** New players and players with a recent violation. */
+        HIGH,
+        NORMAL,
+        /** Players in a trust tier below {@link TrustStore.Tier#FULL}. Never queued when over quota. */
+        TRUSTED
+    }
+
+    private static final CompletableFuture<Boolean> GRANTED = CompletableFuture.completedFuture(true);
+    private static final CompletableFuture<Boolean> DENIED = CompletableFuture.completedFuture(false);
+    // How often recent violations older than the window are forgotten, in minutes
+    private static final long PRUNE_MINUTES = 5;
+
+    private final ScheduledExecutorService timer;
+    private final Object lock = new Object();
+    private final PriorityQueue<Waiter> queue = new PriorityQueue<>(
+            Comparator.comparingInt((Waiter waiter) -> waiter.priority.ordinal()).thenComparingLong(waiter -> waiter.sequence));
+    private final Map<UUID, Long> lastViolation = new ConcurrentHashMap<>();
+
+    private final LongAdder admitted = new LongAdder();
+    private final LongAdder delayed = new LongAdder();
+    private final LongAdder expired = new LongAdder();
+    private final LongAdder shed = new LongAdder();
+
+    private volatile ConfigSnapshot.Quota settings;
+    private long sequence;
+    private double requests;
+    private double tokens;
+    private long lastRefill;
+    private ScheduledFuture<?> wakeup;
+    private long wakeupAt;
+
+    public QuotaGovernor(ConfigSnapshot.Quota settings) {
+        this.timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "ChatModerator-Quota");
+            thread.setDaemon(true);
+            return thread;
+        });
+        configure(settings);
+        timer.scheduleAtFixedRate(this::pruneViolations, PRUNE_MINUTES, PRUNE_MINUTES, TimeUnit.MINUTES);
+    }
+
+    /**
+     * Applies new budgets and refills both buckets. Checks already queued keep their place.
+     * Called on config reload.
+     */
+    public void configure(ConfigSnapshot.Quota settings) {
+        synchronized (lock) {
+            this.settings = settings;
+            this.requests = settings.requestsPerMinute();
+            this.tokens = settings.tokensPerMinute();
+            this.lastRefill = System.nanoTime();
+        }
+        timer.execute(this::drain);
+    }
+
+    /**
+     * @return Whether a budget is set, so calls can skip the governor otherwise.
+     */
+    public boolean isLimited() {
+        ConfigSnapshot.Quota quota = settings;
+        return quota.enabled() && (quota.requestsPerMinute() > 0 || quota.tokensPerMinute() > 0);
+    }
+
+    /**
+     * Picks the queue priority for a message from a player in the given trust tier.
+     */
+    public Priority priorityOf(Player player, TrustStore.Tier tier) {
+        if (tier != TrustStore.Tier.FULL) return Priority.TRUSTED;
+        ConfigSnapshot.Quota quota = settings;
+        long now = System.currentTimeMillis();
+        Long flagged = lastViolation.get(player.getUniqueId());
+        if (flagged != null && now - flagged < TimeUnit.MINUTES.toMillis(quota.recentViolationMinutes())) {
+            return Priority.HIGH;
+        }
+        long known = player.hasPlayedBefore() ? now - player.getFirstPlayed() : 0L;
+        return known < TimeUnit.MINUTES.toMillis(quota.newPlayerMinutes()) ? Priority.HIGH : Priority.NORMAL;
+    }
+
+    /**
+     * Remembers a violation, so the player's next messages are checked first.
+     */
+    public void recordViolation(UUID uuid) {
+        lastViolation.put(uuid, System.currentTimeMillis());
+    }
+
+    private void pruneViolations() {
+        long cutoff = System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(settings.recentViolationMinutes());
+        lastViolation.values().removeIf(time -> time < cutoff);
+    }
+
+    /**
+     * Waits for room in the quota.
+     *
+     * @param requestCost Requests this check uses.
+     * @param tokenCost Estimated tokens this check uses.
+     * @return A future completed with true once the call may be made, or false if it should
+     *         be left to the local tiers.
+     */
+    public CompletableFuture<Boolean> acquire(Priority priority, double requestCost, double tokenCost) {
+        if (!isLimited()) return GRANTED;
+
+        Waiter waiter;
+        synchronized (lock) {
+            ConfigSnapshot.Quota quota = settings;
+            long now = System.nanoTime();
+            refill(now, quota);
+            if (queue.isEmpty() && tryTake(requestCost, tokenCost, quota)) {
+                admitted.increment();
+                return GRANTED;
+            }
+            if (priority == Priority.TRUSTED || queue.size() >= quota.maxQueued()) {
+                shed.increment();
+                return DENIED;
+            }
+            waiter = new Waiter(priority, sequence++, requestCost, tokenCost);
+            queue.add(waiter);
+            delayed.increment();
+            waiter.expiry = timer.schedule(() -> expire(waiter), quota.maxWaitMillis(), TimeUnit.MILLISECONDS);
+            scheduleDrain(now, quota);
+        }
+        return waiter.future;
+    }
+
+    private void expire(Waiter waiter) {
+        synchronized (lock) {
+            if (!queue.remove(waiter)) return;
+        }
+        expired.increment();
+        waiter.future.complete(false);
+    }
+
+    /**
+     * Lets queued checks through, in priority order, while the buckets allow.
+     */
+    private void drain() {
+        List<Waiter> ready = new ArrayList<>();
+        synchronized (lock) {
+            wakeup = null;
+            ConfigSnapshot.Quota quota = settings;
+            long now = System.nanoTime();
+            refill(now, quota);
+            while (!queue.isEmpty()) {
+                Waiter head = queue.peek();
+                if (isLimited() && !tryTake(head.requestCost, head.tokenCost, quota)) break;
+                queue.poll();
+                head.expiry.cancel(false);
+                ready.add(head);
+            }
+            if (!queue.isEmpty()) scheduleDrain(now, quota);
+        }
+        admitted.add(ready.size());
+        for (Waiter waiter : ready) {
+            waiter.future.complete(true);
+        }
+    }
+
+    // Caller holds lock
+    private void scheduleDrain(long now, ConfigSnapshot.Quota quota) {
+        Waiter head = queue.peek();
+        if (head == null) return;
+        long at = now + nanosUntilAvailable(head, quota);
+        if (wakeup != null && wakeupAt <= at) return;
+        if (wakeup != null) wakeup.cancel(false);
+        wakeupAt = at;
+        wakeup = timer.schedule(this::drain, Math.max(0, at - now), TimeUnit.NANOSECONDS);
+    }
+
+    // Caller holds lock
+    private void refill(long now, ConfigSnapshot.Quota quota) {
+        double minutes = (now - lastRefill) / (double) TimeUnit.MINUTES.toNanos(1);
+        lastRefill = now;
+        requests = Math.min(quota.requestsPerMinute(), requests + minutes * quota.requestsPerMinute());
+        tokens = Math.min(quota.tokensPerMinute(), tokens + minutes * quota.tokensPerMinute());
+    }
+
+    // Caller holds lock. A cost larger than a whole bucket is capped, or it would never fit
+    private boolean tryTake(double requestCost, double tokenCost, ConfigSnapshot.Quota quota) {
+        double needRequests = Math.min(requestCost, quota.requestsPerMinute());
+        double needTokens = Math.min(tokenCost, quota.tokensPerMinute());
+        if (quota.requestsPerMinute() > 0 && requests < needRequests) return false;
+        if (quota.tokensPerMinute() > 0 && tokens < needTokens) return false;
+        if (quota.requestsPerMinute() > 0) requests -= needRequests;
+        if (quota.tokensPerMinute() > 0) tokens -= needTokens;
+        return true;
+    }
+
+    // Caller holds lock
+    private long nanosUntilAvailable(Waiter waiter, ConfigSnapshot.Quota quota) {
+        long minute = TimeUnit.MINUTES.toNanos(1);
+        long wait = 0;
+        if (quota.requestsPerMinute() > 0) {
+            double missing = Math.min(waiter.requestCost, quota.requestsPerMinute()) - requests;
+            wait = Math.max(wait, (long) Math.ceil(missing / quota.requestsPerMinute() * minute));
+        }
+        if (quota.tokensPerMinute() > 0) {
+            double missing = Math.min(waiter.tokenCost, quota.tokensPerMinute()) - tokens;
+            wait = Math.max(wait, (long) Math.ceil(missing / quota.tokensPerMinute() * minute));
+        }
+        return wait;
+    }
+
+    /**
+     * Sends every queued check to the local tiers and stops the timer.
+     */
+    public void shutdown() {
+        List<Waiter> dropped;
+        synchronized (lock) {
+            dropped = new ArrayList<>(queue);
+            queue.clear();
+        }
+        timer.shutdownNow();
+        for (Waiter waiter : dropped) {
+            waiter.future.complete(false);
+        }
+    }
+
+    public int getQueueDepth() {
+        synchronized (lock) {
+            return queue.size();
+        }
+    }
+
+    /**
+     * @return Checks let through to the provider, straight away or after waiting.
+     */
+    public long getAdmittedCount() {
+        return admitted.sum();
+    }
+
+    /**
+     * @return Checks that had to wait in the queue.
+     */
+    public long getDelayedCount() {
+        return delayed.sum();
+    }
+
+    /**
+     * @return Checks that waited longer than {@code quota.max-wait-ms} and were dropped.
+     */
+    public long getExpiredCount() {
+        return expired.sum();
+    }
+
+    /**
+     * @return Checks left to the local tiers without queueing: trusted players, or a full queue.
+     */
+    public long getShedCount() {
+        return shed.sum();
+    }
+
+    private static final class Waiter {
+        private final Priority priority;
+        private final long sequence;
+        private final double requestCost;
+        private final double tokenCost;
+        private final CompletableFuture<Boolean> future = new CompletableFuture<>();
+        private ScheduledFuture<?> expiry;
+
+        private Waiter(Priority priority, long sequence, double requestCost, double tokenCost) {
+            this.priority = priority;
+            this.sequence = sequence;
+            this.requestCost = requestCost;
+            this.tokenCost = tokenCost;
+        }
+    }
+}
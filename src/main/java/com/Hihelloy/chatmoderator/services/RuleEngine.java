@@ -0,0 +1,192 @@
+package com.Hihelloy.chatmoderator.services;
+
+import com.Hihelloy.chatmoderator.ChatModeratorPlugin;
+import com.Hihelloy.chatmoderator.utils.ModerationResult;
+import com.Hihelloy.chatmoderator.utils.RegexAutomaton;
+import com.Hihelloy.chatmoderator.utils.TextNormalizer;
+import com.Hihelloy.chatmoderator.utils.WordMatcher;
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.file.YamlConfiguration;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.logging.Logger;
+
+/**
+ * Local, data-driven rule check loaded from {@code rules.yml}.<br><br>
+ *
+ * Rules are grouped into categories, each mapped to a {@link ModerationResult.ViolationType}.
+ * Substring and whole-word rules from every category are compiled into one
+ * {@link WordMatcher}, and regex rules into one {@link RegexAutomaton}, each tagged with
+ * their category. A message is therefore checked with one scan per automaton no matter how
+ * many rules there are, and no regex can backtrack. Exact-phrase rules (the whole message
+ * equals the phrase) are a single hash lookup.<br><br>
+ *
+ * Every rule is checked against the {@link TextNormalizer} form of the message: lower-case
+ * letters and digits separated by single spaces, with look-alikes, leet spellings and
+ * long runs of repeated letters folded. Literal rules are normalized the same way, and also
+ * match stretched spellings ({@code fuuuck}); regex rules are not, so they should be written
+ * against normalized text (e.g. {@code ki+l} rather than {@code kill}).
+ */
+public class RuleEngine {
+
+    private static final String FILE_NAME = "rules.yml";
+
+    private final ChatModeratorPlugin plugin;
+    private final Logger logger;
+    private volatile CompiledRules rules = CompiledRules.EMPTY;
+
+    public RuleEngine(ChatModeratorPlugin plugin) {
+        this.plugin = plugin;
+        this.logger = plugin.getLogger();
+    }
+
+    /**
+     * An engine with rules compiled from an in-memory {@code categories} section instead of
+     * {@code rules.yml}. Used by the benchmarks; {@link #load()} can't be called on it.
+     */
+    RuleEngine(Logger logger, ConfigurationSection categories) {
+        this.plugin = null;
+        this.logger = logger;
+        this.rules = compile(categories);
+    }
+
+    /**
+     * (Re)loads {@code rules.yml}, writing the default file first if it doesn't exist.
+     * Invalid rules are logged and skipped. The new rules are swapped in atomically.
+     */
+    public void load() {
+        File file = new File(plugin.getDataFolder(), FILE_NAME);
+        if (!file.exists()) {
+            plugin.saveResource(FILE_NAME, false);
+        }
+        YamlConfiguration yaml = YamlConfiguration.loadConfiguration(file);
+        rules = compile(yaml.getConfigurationSection("categories"));
+        logger.info("Loaded " + rules.ruleCount + " local moderation rules in "
+                + rules.categories.length + " categories");
+    }
+
+    private CompiledRules compile(ConfigurationSection section) {
+        if (section == null) return CompiledRules.EMPTY;
+
+        List<Category> categories = new ArrayList<>();
+        WordMatcher.Builder literals = WordMatcher.builder();
+        RegexAutomaton.Builder regexes = RegexAutomaton.builder();
+        Map<String, Integer> phrases = new HashMap<>();
+        Map<String, Integer> squeezedPhrases = new HashMap<>();
+        int ruleCount = 0;
+
+        for (String key : section.getKeys(false)) {
+            ConfigurationSection rule = section.getConfigurationSection(key);
+            if (rule == null) continue;
+
+            ModerationResult.ViolationType type;
+            String typeName = rule.getString("type", key).toUpperCase(Locale.ROOT).replace('-', '_');
+            try {
+                type = ModerationResult.ViolationType.valueOf(typeName);
+            } catch (IllegalArgumentException e) {
+                logger.warning("Unknown violation type '" + typeName + "' for rule category " + key);
+                continue;
+            }
+
+            int tag = categories.size();
+            categories.add(new Category(type, rule.getString("reason", key + " keyword/keyphrase detected")));
+
+            for (String text : rule.getStringList("substring")) {
+                literals.add(text, false, tag);
+                ruleCount++;
+            }
+            for (String text : rule.getStringList("word")) {
+                literals.add(text, true, tag);
+                ruleCount++;
+            }
+            for (String text : rule.getStringList("phrase")) {
+                String normalized = TextNormalizer.normalizeToString(text);
+                if (normalized.isEmpty()) continue;
+                phrases.putIfAbsent(normalized, tag);
+                squeezedPhrases.putIfAbsent(TextNormalizer.squeeze(normalized), tag);
+                ruleCount++;
+            }
+            for (String pattern : rule.getStringList("regex")) {
+                try {
+                    regexes.add(pattern, tag);
+                    ruleCount++;
+                } catch (IllegalArgumentException e) {
+                    logger.warning("Skipping invalid regex rule in " + key + ": " + e.getMessage());
+                }
+            }
+        }
+
+        return new CompiledRules(categories.toArray(new Category[0]), literals.build(), regexes.build(),
+                phrases, squeezedPhrases, ruleCount);
+    }
+
+    /**
+     * Checks a message against every loaded rule.
+     *
+     * @return A block result with the category's violation type, or {@link ModerationResult#safe()}.
+     */
+    public ModerationResult evaluate(String message) {
+        CompiledRules current = rules;
+        TextNormalizer.Normalized normalized = TextNormalizer.normalize(message);
+
+        if (!current.phrases.isEmpty()) {
+            Integer tag = current.phrases.get(normalized.toString());
+            // A stretched message ("hiii there") also matches the phrase with its runs folded
+            if (tag == null && normalized.isStretched()) {
+                tag = current.squeezedPhrases.get(normalized.squeezed().toString());
+            }
+            if (tag != null) return current.categories[tag].result;
+        }
+
+        long match = current.literals.find(normalized);
+        if (match != WordMatcher.NO_MATCH) {
+            return current.categories[current.literals.tag(match)].result;
+        }
+
+        int tag = current.regexes.find(normalized);
+        if (tag >= 0) {
+            return current.categories[tag].result;
+        }
+        return ModerationResult.safe();
+    }
+
+    public int getRuleCount() {
+        return rules.ruleCount;
+    }
+
+    private static final class Category {
+        private final ModerationResult result;
+
+        private Category(ModerationResult.ViolationType type, String reason) {
+            // Results are immutable, so every hit in a category can share one instance
+            this.result = ModerationResult.block("Rule: " + reason, type);
+        }
+    }
+
+    private static final class CompiledRules {
+        private static final CompiledRules EMPTY = new CompiledRules(new Category[0], WordMatcher.empty(),
+                RegexAutomaton.empty(), Map.of(), Map.of(), 0);
+
+        private final Category[] categories;
+        private final WordMatcher literals;
+        private final RegexAutomaton regexes;
+        private final Map<String, Integer> phrases;
+        private final Map<String, Integer> squeezedPhrases;
+        private final int ruleCount;
+
+        private CompiledRules(Category[] categories, WordMatcher literals, RegexAutomaton regexes,
+                              Map<String, Integer> phrases, Map<String, Integer> squeezedPhrases, int ruleCount) {
+            this.categories = categories;
+            this.literals = literals;
+            this.regexes = regexes;
+            this.phrases = phrases;
+            this.squeezedPhrases = squeezedPhrases;
+            this.ruleCount = ruleCount;
+        }
+    }
+}
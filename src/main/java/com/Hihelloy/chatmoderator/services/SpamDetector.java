@@ -0,0 +1,195 @@
+package com.Hihelloy.chatmoderator.services;
+
+import com.Hihelloy.chatmoderator.config.ConfigManager;
+import com.Hihelloy.chatmoderator.config.ConfigSnapshot;
+import com.Hihelloy.chatmoderator.utils.ModerationResult;
+import com.Hihelloy.chatmoderator.utils.TextNormalizer;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Cheap spam and flood check that runs before the word filter and any AI work.<br><br>
+ *
+ * Three signals are combined:
+ * <ul>
+ *     <li>a per-player token bucket limiting message rate,</li>
+ *     <li>a small per-player ring of recent SimHash fingerprints, so near-identical lines
+ *     ("buy now!!", "buy now!!!") from the same player are caught, and</li>
+ *     <li>a shared count-min sketch of exact normalized messages, so the same line sent by
+ *     many accounts in a short window is caught.</li>
+ * </ul>
+ * Messages shorter than {@code spam.flood.min-length} ("gg", "ok", "lol") only count
+ * towards the rate limit; repeating them is normal chat, not spam.<br><br>
+ *
+ * Per-player state is a fixed handful of primitives and is only ever locked by the
+ * player's own chat thread. The shared sketch is an {@link AtomicLongArray} and is never
+ * locked, so the detector scales across Folia's region threads.
+ */
+public class SpamDetector {
+
+    private static final int HISTORY = 8;
+    private static final int SKETCH_DEPTH = 4;
+    private static final int SKETCH_WIDTH = 4096;
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private static final ModerationResult RATE_LIMITED =
+            ModerationResult.block("Spam: sending messages too quickly", ModerationResult.ViolationType.SPAM);
+    private static final ModerationResult REPEATED =
+            ModerationResult.block("Spam: repeated message", ModerationResult.ViolationType.SPAM);
+    private static final ModerationResult FLOOD =
+            ModerationResult.block("Spam: same message from many players", ModerationResult.ViolationType.SPAM);
+
+    private static final ThreadLocal<int[]> SIMHASH_VECTOR = ThreadLocal.withInitial(() -> new int[64]);
+
+    private final ConfigManager configManager;
+    private final Map<UUID, PlayerState> players = new ConcurrentHashMap<>();
+    private final AtomicLongArray sketch = new AtomicLongArray(SKETCH_DEPTH * SKETCH_WIDTH);
+    private volatile long sketchWindowStart = System.currentTimeMillis();
+
+    private final LongAdder blocked = new LongAdder();
+
+    public SpamDetector(ConfigManager configManager) {
+        this.configManager = configManager;
+    }
+
+    /**
+     * Records a message and decides whether it is spam.
+     *
+     * @return A {@code SPAM} block result, or null if the message may continue down the pipeline.
+     */
+    public ModerationResult check(UUID player, String message) {
+        ConfigSnapshot.Spam config = configManager.snapshot().spam();
+        if (!config.enabled()) return null;
+
+        long now = System.currentTimeMillis();
+        // Fingerprint the normalized text so look-alike and spaced-out variants count as repeats
+        TextNormalizer.Normalized normalized = TextNormalizer.normalize(message);
+        long fingerprint = simHash(normalized);
+        PlayerState state = players.computeIfAbsent(player, uuid -> new PlayerState(config.burst()));
+
+        // Short replies repeat all the time, so only longer messages are checked for repeats
+        boolean longEnough = message.length() >= config.floodMinLength();
+        ModerationResult result;
+        synchronized (state) {
+            result = state.check(config, fingerprint, longEnough, now);
+        }
+        if (result == null && config.floodEnabled() && longEnough) {
+            result = checkFlood(config, normalized, now);
+        }
+        if (result != null) blocked.increment();
+        return result;
+    }
+
+    private ModerationResult checkFlood(ConfigSnapshot.Spam config, CharSequence message, long now) {
+        if (now - sketchWindowStart > config.floodWindowSeconds() * 1000L) {
+            // Racing resets may each clear the sketch; that only loses a few counts
+            sketchWindowStart = now;
+            for (int i = 0; i < sketch.length(); i++) {
+                sketch.set(i, 0);
+            }
+        }
+
+        long hash = VerdictCache.key(message);
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < SKETCH_DEPTH; row++) {
+            int column = (int) (mix(hash + row * 0x9e3779b97f4a7c15L) & (SKETCH_WIDTH - 1));
+            estimate = Math.min(estimate, sketch.incrementAndGet(row * SKETCH_WIDTH + column));
+        }
+        return estimate > config.floodMaxRepeats() ? FLOOD : null;
+    }
+
+    /**
+     * Frees a player's state, e.g. when they quit.
+     */
+    public void forget(UUID player) {
+        players.remove(player);
+    }
+
+    public long getBlockedCount() {
+        return blocked.sum();
+    }
+
+    /**
+     * 64-bit SimHash over character trigrams of the lower-cased letters and digits.
+     * Near-identical messages end up a few bits apart.
+     */
+    static long simHash(CharSequence message) {
+        int[] vector = SIMHASH_VECTOR.get();
+        Arrays.fill(vector, 0);
+
+        char a = 0;
+        char b = 0;
+        int seen = 0;
+        long whole = FNV_OFFSET;
+        for (int i = 0; i < message.length(); i++) {
+            char c = message.charAt(i);
+            if (!Character.isLetterOrDigit(c)) continue;
+            c = Character.toLowerCase(c);
+            whole = (whole ^ c) * FNV_PRIME;
+            if (++seen >= 3) {
+                long shingle = mix(((long) a << 32) | ((long) b << 16) | c);
+                for (int bit = 0; bit < 64; bit++) {
+                    vector[bit] += ((shingle >>> bit) & 1L) != 0 ? 1 : -1;
+                }
+            }
+            a = b;
+            b = c;
+        }
+        // Too short for trigrams, fall back to an exact hash
+        if (seen < 3) return whole;
+
+        long hash = 0;
+        for (int bit = 0; bit < 64; bit++) {
+            if (vector[bit] > 0) hash |= 1L << bit;
+        }
+        return hash;
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 33)) * 0xff51afd7ed558ccdL;
+        z = (z ^ (z >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return z ^ (z >>> 33);
+    }
+
+    private static final class PlayerState {
+        private double tokens;
+        private long lastRefill;
+        private final long[] fingerprints = new long[HISTORY];
+        private final long[] times = new long[HISTORY];
+        private int next;
+
+        private PlayerState(int burst) {
+            this.tokens = burst;
+            this.lastRefill = System.currentTimeMillis();
+        }
+
+        private ModerationResult check(ConfigSnapshot.Spam config, long fingerprint, boolean checkRepeats, long now) {
+            tokens = Math.min(config.burst(), tokens + (now - lastRefill) / 1000.0 * config.messagesPerSecond());
+            lastRefill = now;
+            if (tokens < 1) return RATE_LIMITED;
+            tokens -= 1;
+            if (!checkRepeats) return null;
+
+            long windowStart = now - config.duplicateWindowSeconds() * 1000L;
+            int similar = 0;
+            for (int i = 0; i < HISTORY; i++) {
+                if (times[i] >= windowStart && times[i] != 0
+                        && Long.bitCount(fingerprints[i] ^ fingerprint) <= config.maxDistance()) {
+                    similar++;
+                }
+            }
+
+            fingerprints[next] = fingerprint;
+            times[next] = now;
+            next = (next + 1) % HISTORY;
+
+            return similar >= config.maxSimilar() ? REPEATED : null;
+        }
+    }
+}
@@ -0,0 +1,392 @@
+package com.Hihelloy.chatmoderator.services;
+
+import com.Hihelloy.chatmoderator.ChatModeratorPlugin;
+import com.Hihelloy.chatmoderator.config.ConfigManager;
+import com.Hihelloy.chatmoderator.config.ConfigSnapshot;
+import com.Hihelloy.chatmoderator.utils.AtomicFiles;
+import com.Hihelloy.chatmoderator.utils.SchedulerUtil;
+import org.bukkit.Bukkit;
+import org.bukkit.Statistic;
+import org.bukkit.entity.Player;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Per-player reputation, used to decide how deeply each message is checked.<br><br>
+ *
+ * Players earn trust points for clean messages and for time played, and lose a large
+ * amount for each violation. Points halve every {@code trust.half-life-days}, so both
+ * trust and past violations fade when a player stops earning them. Players above
+ * {@code trust.sampled-above} only have a share of their messages sent to the AI provider,
+ * and players above {@code trust.local-only-above} are checked by the local tiers alone.
+ * A player with a violation in the last {@code trust.full-checks-after-violation-hours} is
+ * fully checked whatever their score. Everyone still goes through the word filter and local
+ * rules.<br><br>
+ *
+ * Scores are kept in an open-addressing table of primitive arrays keyed by UUID, a few
+ * dozen bytes per player, and decay is applied lazily when a score is read or changed.
+ * The table is saved to {@code trust.dat} every few minutes and on shutdown. A player seen
+ * for the first time is seeded from their play time statistic, capped at half of
+ * {@code trust.sampled-above}: regulars get a head start, but lighter checks are earned
+ * by behaviour seen here.
+ */
+public class TrustStore {
+
+    /**
+     * How deeply a player's messages are checked.
+     */
+    public enum Tier {
+        /** Every message that the local tiers can't decide is sent to the AI. */
+        FULL,
+        /** Only {@code trust.sample-rate} of those messages are sent to the AI. */
+        SAMPLED,
+        /** The local tiers decide alone. */
+        LOCAL_ONLY
+    }
+
+    private static final String FILE_NAME = "trust.dat";
+    private static final int MAGIC = 0x54525354;  // "TRST"
+    // Version 2 added the time of the last violation
+    private static final int VERSION = 2;
+    private static final long SAVE_INTERVAL_TICKS = 20L * 60 * 5;
+    // A player earns message points at most this often, so flooding doesn't buy trust
+    private static final long MESSAGE_CREDIT_MILLIS = TimeUnit.SECONDS.toMillis(10);
+    // Scores this close to zero are dropped on save
+    private static final double FORGET_BELOW = 0.01;
+
+    private final Logger logger;
+    private final Path path;
+    private final Supplier<ConfigSnapshot> config;
+    private final Map<UUID, Long> sessions = new ConcurrentHashMap<>();
+
+    private final LongAdder fullChecks = new LongAdder();
+    private final LongAdder sampledChecks = new LongAdder();
+    private final LongAdder localChecks = new LongAdder();
+
+    // Open-addressing table, guarded by this. A zero UUID marks an empty slot
+    private long[] mostBits = new long[64];
+    private long[] leastBits = new long[64];
+    private double[] points = new double[64];
+    private long[] updatedAt = new long[64];
+    private long[] creditedAt = new long[64];
+    private long[] violatedAt = new long[64];
+    private int size;
+
+    private Object saveTask;
+
+    public TrustStore(ChatModeratorPlugin plugin, ConfigManager configManager) {
+        this(plugin.getLogger(), new File(plugin.getDataFolder(), FILE_NAME).toPath(), configManager::snapshot);
+    }
+
+    /**
+     * A store saving to the given file, without a running plugin. Used by the benchmarks.
+     */
+    TrustStore(Logger logger, Path path, Supplier<ConfigSnapshot> config) {
+        this.logger = logger;
+        this.path = path;
+        this.config = config;
+    }
+
+    /**
+     * Reads {@code trust.dat}, starts sessions for players already online and starts the save timer.
+     */
+    public void load() {
+        if (Files.exists(path)) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+                int version = in.readInt() == MAGIC ? in.readInt() : -1;
+                if (version != 1 && version != VERSION) {
+                    throw new IOException("Unknown file format");
+                }
+                int count = in.readInt();
+                synchronized (this) {
+                    for (int i = 0; i < count; i++) {
+                        int slot = slotFor(in.readLong(), in.readLong());
+                        points[slot] = in.readDouble();
+                        updatedAt[slot] = in.readLong();
+                        if (version >= 2) violatedAt[slot] = in.readLong();
+                    }
+                }
+            } catch (IOException | RuntimeException e) {
+                logger.log(Level.WARNING, "Failed to read " + FILE_NAME + ", trust scores start over", e);
+            }
+        }
+        for (Player player : Bukkit.getOnlinePlayers()) {
+            playerJoined(player);
+        }
+        saveTask = SchedulerUtil.runAsyncTimer(this::save, SAVE_INTERVAL_TICKS, SAVE_INTERVAL_TICKS);
+    }
+
+    /**
+     * Starts counting play time. A player seen for the first time is seeded from their play
+     * time statistic, up to half of {@code trust.sampled-above}, so everyone starts out fully
+     * checked. Must be called on the player's thread.
+     */
+    public void playerJoined(Player player) {
+        UUID uuid = player.getUniqueId();
+        long now = System.currentTimeMillis();
+        sessions.put(uuid, now);
+        if (contains(uuid)) return;
+
+        ConfigSnapshot.Trust trust = config.get().trust();
+        double hours = player.getStatistic(Statistic.PLAY_ONE_MINUTE) / (20.0 * 60 * 60);
+        adjust(uuid, Math.min(hours * trust.pointsPerHour(), trust.sampledAbove() / 2), now);
+    }
+
+    public void playerQuit(Player player) {
+        Long since = sessions.remove(player.getUniqueId());
+        if (since != null) creditPlayTime(player.getUniqueId(), since, System.currentTimeMillis());
+    }
+
+    private void creditPlayTime(UUID uuid, long since, long now) {
+        double hours = (now - since) / (double) TimeUnit.HOURS.toMillis(1);
+        adjust(uuid, hours * config.get().trust().pointsPerHour(), now);
+    }
+
+    /**
+     * Credits a message that got past the filters.
+     */
+    public void messageAccepted(UUID uuid) {
+        long now = System.currentTimeMillis();
+        double earned = config.get().trust().pointsPerMessage();
+        synchronized (this) {
+            int slot = slotFor(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+            if (now - creditedAt[slot] < MESSAGE_CREDIT_MILLIS) return;
+            creditedAt[slot] = now;
+            points[slot] = decayed(slot, now) + earned;
+            updatedAt[slot] = now;
+        }
+    }
+
+    /**
+     * Takes the violation penalty off the player's points and puts them back under full
+     * checks for {@code trust.full-checks-after-violation-hours}, even if they still have
+     * enough points for a lighter tier.
+     */
+    public void recordViolation(UUID uuid) {
+        long now = System.currentTimeMillis();
+        double penalty = config.get().trust().violationPenalty();
+        synchronized (this) {
+            int slot = slotFor(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+            points[slot] = decayed(slot, now) - penalty;
+            updatedAt[slot] = now;
+            violatedAt[slot] = now;
+        }
+    }
+
+    private synchronized void adjust(UUID uuid, double delta, long now) {
+        int slot = slotFor(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+        points[slot] = decayed(slot, now) + delta;
+        updatedAt[slot] = now;
+    }
+
+    /**
+     * @return The player's current points, or 0 for players never seen.
+     */
+    public synchronized double getScore(UUID uuid) {
+        int slot = find(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+        return slot < 0 ? 0 : decayed(slot, System.currentTimeMillis());
+    }
+
+    public Tier tierOf(UUID uuid) {
+        ConfigSnapshot.Trust trust = config.get().trust();
+        if (!trust.enabled()) return Tier.FULL;
+        double score;
+        synchronized (this) {
+            int slot = find(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+            if (slot < 0) return Tier.FULL;
+            long now = System.currentTimeMillis();
+            if (now - violatedAt[slot] < trust.fullAfterViolationMillis()) return Tier.FULL;
+            score = decayed(slot, now);
+        }
+        if (score >= trust.localOnlyAbove()) return Tier.LOCAL_ONLY;
+        if (score >= trust.sampledAbove()) return Tier.SAMPLED;
+        return Tier.FULL;
+    }
+
+    /**
+     * Decides whether this message of a player in the given tier goes to the AI provider.
+     */
+    public boolean shouldAskProvider(Tier tier) {
+        switch (tier) {
+            case FULL:
+                fullChecks.increment();
+                return true;
+            case SAMPLED:
+                if (ThreadLocalRandom.current().nextDouble() < config.get().trust().sampleRate()) {
+                    sampledChecks.increment();
+                    return true;
+                }
+                localChecks.increment();
+                return false;
+            default:
+                localChecks.increment();
+                return false;
+        }
+    }
+
+    // Caller holds this
+    private double decayed(int slot, long now) {
+        double value = points[slot];
+        long elapsed = now - updatedAt[slot];
+        if (value == 0 || elapsed <= 0) return value;
+        double halfLife = TimeUnit.DAYS.toMillis(1) * config.get().trust().halfLifeDays();
+        return value * Math.pow(0.5, elapsed / halfLife);
+    }
+
+    private synchronized boolean contains(UUID uuid) {
+        return find(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits()) >= 0;
+    }
+
+    // Caller holds this
+    private int find(long most, long least) {
+        int mask = mostBits.length - 1;
+        for (int slot = hash(most, least) & mask; ; slot = (slot + 1) & mask) {
+            if (mostBits[slot] == most && leastBits[slot] == least) return slot;
+            if (mostBits[slot] == 0 && leastBits[slot] == 0) return -1;
+        }
+    }
+
+    // Caller holds this. Returns the player's slot, adding an empty entry if needed
+    private int slotFor(long most, long least) {
+        int slot = find(most, least);
+        if (slot >= 0) return slot;
+        if ((size + 1) * 2 > mostBits.length) resize(mostBits.length * 2, false, 0L);
+
+        int mask = mostBits.length - 1;
+        slot = hash(most, least) & mask;
+        while (mostBits[slot] != 0 || leastBits[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        mostBits[slot] = most;
+        leastBits[slot] = least;
+        size++;
+        return slot;
+    }
+
+    /**
+     * Rehashes into a table of the given capacity. With {@code prune}, entries whose score
+     * has faded to nothing by {@code now} are dropped. Caller holds this.
+     */
+    private void resize(int capacity, boolean prune, long now) {
+        long[] oldMost = mostBits;
+        long[] oldLeast = leastBits;
+        double[] oldPoints = points;
+        long[] oldUpdated = updatedAt;
+        long[] oldCredited = creditedAt;
+        long[] oldViolated = violatedAt;
+
+        mostBits = new long[capacity];
+        leastBits = new long[capacity];
+        points = new double[capacity];
+        updatedAt = new long[capacity];
+        creditedAt = new long[capacity];
+        violatedAt = new long[capacity];
+        size = 0;
+
+        int mask = capacity - 1;
+        for (int i = 0; i < oldMost.length; i++) {
+            if (oldMost[i] == 0 && oldLeast[i] == 0) continue;
+            if (prune) {
+                double value = oldPoints[i] * Math.pow(0.5, Math.max(0, now - oldUpdated[i])
+                        / (TimeUnit.DAYS.toMillis(1) * config.get().trust().halfLifeDays()));
+                if (Math.abs(value) < FORGET_BELOW) continue;
+            }
+
+            int slot = hash(oldMost[i], oldLeast[i]) & mask;
+            while (mostBits[slot] != 0 || leastBits[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            mostBits[slot] = oldMost[i];
+            leastBits[slot] = oldLeast[i];
+            points[slot] = oldPoints[i];
+            updatedAt[slot] = oldUpdated[i];
+            creditedAt[slot] = oldCredited[i];
+            violatedAt[slot] = oldViolated[i];
+            size++;
+        }
+    }
+
+    private static int hash(long most, long least) {
+        long h = (most ^ least) * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    /**
+     * Credits play time so far, drops faded scores and writes {@code trust.dat}.
+     */
+    public void save() {
+        long now = System.currentTimeMillis();
+        for (Map.Entry<UUID, Long> session : sessions.entrySet()) {
+            if (sessions.replace(session.getKey(), session.getValue(), now)) {
+                creditPlayTime(session.getKey(), session.getValue(), now);
+            }
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            synchronized (this) {
+                int capacity = 64;
+                while (capacity < size * 2) capacity *= 2;
+                resize(capacity, true, now);
+
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(size);
+                for (int i = 0; i < mostBits.length; i++) {
+                    if (mostBits[i] == 0 && leastBits[i] == 0) continue;
+                    out.writeLong(mostBits[i]);
+                    out.writeLong(leastBits[i]);
+                    out.writeDouble(points[i]);
+                    out.writeLong(updatedAt[i]);
+                    out.writeLong(violatedAt[i]);
+                }
+            }
+            AtomicFiles.write(path, bytes.toByteArray());
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Failed to write " + FILE_NAME, e);
+        }
+    }
+
+    /**
+     * Stops the save timer and saves, crediting the play time of everyone still online.
+     */
+    public void shutdown() {
+        SchedulerUtil.cancelTask(saveTask);
+        save();
+    }
+
+    /**
+     * @return The number of players with a score.
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    public long getFullCheckCount() {
+        return fullChecks.sum();
+    }
+
+    public long getSampledCheckCount() {
+        return sampledChecks.sum();
+    }
+
+    public long getLocalOnlyCheckCount() {
+        return localChecks.sum();
+    }
+}
@@ -0,0 +1,145 @@
+package com.Hihelloy.chatmoderator.services;
+
+import com.Hihelloy.chatmoderator.utils.ModerationResult;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded LRU cache of AI verdicts, keyed on a hash of the normalized message.<br><br>
+ *
+ * Chat is highly repetitive, so most lines have been classified before. Messages are
+ * normalized (lower-cased, surrounding whitespace trimmed and inner whitespace runs
+ * collapsed) and hashed with 64-bit FNV-1a without allocating, and the verdict is
+ * reused until its TTL runs out. Safe and blocked verdicts have separate TTLs.
+ */
+public class VerdictCache {
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final Map<Long, Entry> entries = new LinkedHashMap<>(256, 0.75f, true);
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    private volatile int maxSize;
+    private volatile long safeTtlMillis;
+    private volatile long blockedTtlMillis;
+
+    public VerdictCache(int maxSize, long safeTtlSeconds, long blockedTtlSeconds) {
+        configure(maxSize, safeTtlSeconds, blockedTtlSeconds);
+    }
+
+    /**
+     * Updates the limits. Entries already cached keep their original expiry.
+     */
+    public void configure(int maxSize, long safeTtlSeconds, long blockedTtlSeconds) {
+        this.maxSize = Math.max(0, maxSize);
+        this.safeTtlMillis = Math.max(0, safeTtlSeconds) * 1000L;
+        this.blockedTtlMillis = Math.max(0, blockedTtlSeconds) * 1000L;
+    }
+
+    /**
+     * Hashes a message the way the cache keys it.
+     *
+     * @param message The raw chat message.
+     * @return The 64-bit key for the normalized message.
+     */
+    public static long key(CharSequence message) {
+        long hash = FNV_OFFSET;
+        boolean pendingSpace = false;
+        boolean started = false;
+        for (int i = 0; i < message.length(); i++) {
+            char c = message.charAt(i);
+            if (Character.isWhitespace(c)) {
+                pendingSpace = started;
+                continue;
+            }
+            if (pendingSpace) {
+                hash = (hash ^ ' ') * FNV_PRIME;
+                pendingSpace = false;
+            }
+            c = Character.toLowerCase(c);
+            hash = (hash ^ (c & 0xff)) * FNV_PRIME;
+            hash = (hash ^ (c >>> 8)) * FNV_PRIME;
+            started = true;
+        }
+        return hash;
+    }
+
+    /**
+     * @param key A key from {@link #key(CharSequence)}.
+     * @return The cached verdict, or null if absent or expired.
+     */
+    public ModerationResult get(long key) {
+        long now = System.currentTimeMillis();
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            if (entry != null) {
+                if (entry.expiresAt > now) {
+                    hits.increment();
+                    return entry.result;
+                }
+                entries.remove(key);
+            }
+        }
+        misses.increment();
+        return null;
+    }
+
+    public void put(long key, ModerationResult result) {
+        long ttl = result.isBlocked() ? blockedTtlMillis : safeTtlMillis;
+        if (ttl <= 0 || maxSize == 0) return;
+
+        synchronized (entries) {
+            entries.put(key, new Entry(result, System.currentTimeMillis() + ttl));
+            Iterator<Entry> eldest = entries.values().iterator();
+            while (entries.size() > maxSize && eldest.hasNext()) {
+                eldest.next();
+                eldest.remove();
+                evictions.increment();
+            }
+        }
+    }
+
+    /**
+     * Drops every cached verdict, e.g. after a config reload or model change.
+     */
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    private static final class Entry {
+        private final ModerationResult result;
+        private final long expiresAt;
+
+        private Entry(ModerationResult result, long expiresAt) {
+            this.result = result;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.Hihelloy.chatmoderator.utils;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Writes files through a temp file and an atomic rename, so a crash or a full disk
+ * mid-write leaves the previous version intact instead of a truncated file.
+ */
+public final class AtomicFiles {
+
+    private AtomicFiles() {
+    }
+
+    public static void write(Path target, String content) throws IOException {
+        Path temp = tempFor(target);
+        Files.writeString(temp, content, StandardCharsets.UTF_8);
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public static void write(Path target, byte[] content) throws IOException {
+        Path temp = tempFor(target);
+        Files.write(temp, content);
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * @param header Written first, as-is (e.g. comment lines), or null for none.
+     */
+    public static void writeLines(Path target, String header, Iterable<String> lines) throws IOException {
+        Path temp = tempFor(target);
+        try (BufferedWriter writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            if (header != null) writer.write(header);
+            for (String line : lines) {
+                writer.write(line);
+                writer.newLine();
+            }
+        }
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static Path tempFor(Path target) throws IOException {
+        Files.createDirectories(target.toAbsolutePath().getParent());
+        return target.resolveSibling(target.getFileName() + ".tmp");
+    }
+}
@@ -0,0 +1,79 @@
+package com.Hihelloy.chatmoderator.utils;
+
+import org.bukkit.ChatColor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A config message with {@code {placeholder}} slots, parsed once so rendering is just
+ * string concatenation.<br><br>
+ *
+ * Color codes ({@code &c}) are translated in the template text only. Values filled into
+ * placeholders are inserted as-is, so a player can't color a notification by typing
+ * {@code &} codes into chat.
+ */
+public final class MessageTemplate {
+
+    private final String[] literals;
+    private final int[] slots;
+    private final int estimatedLength;
+
+    private MessageTemplate(String[] literals, int[] slots) {
+        this.literals = literals;
+        this.slots = slots;
+        int length = 0;
+        for (String literal : literals) length += literal.length();
+        this.estimatedLength = length + slots.length * 32;
+    }
+
+    /**
+     * @param raw The template text, with {@code &} color codes.
+     * @param placeholders The placeholder names, in the order their values are passed to
+     *                     {@link #render(String...)}. Unknown {@code {names}} are kept as text.
+     */
+    public static MessageTemplate compile(String raw, String... placeholders) {
+        List<String> literals = new ArrayList<>();
+        List<Integer> slots = new ArrayList<>();
+        StringBuilder literal = new StringBuilder();
+
+        int i = 0;
+        while (i < raw.length()) {
+            char c = raw.charAt(i);
+            int close = c == '{' ? raw.indexOf('}', i) : -1;
+            int slot = close > 0 ? indexOf(placeholders, raw.substring(i + 1, close)) : -1;
+            if (slot < 0) {
+                literal.append(c);
+                i++;
+                continue;
+            }
+            literals.add(ChatColor.translateAlternateColorCodes('&', literal.toString()));
+            slots.add(slot);
+            literal.setLength(0);
+            i = close + 1;
+        }
+        literals.add(ChatColor.translateAlternateColorCodes('&', literal.toString()));
+
+        int[] slotArray = new int[slots.size()];
+        for (int k = 0; k < slotArray.length; k++) slotArray[k] = slots.get(k);
+        return new MessageTemplate(literals.toArray(new String[0]), slotArray);
+    }
+
+    private static int indexOf(String[] placeholders, String name) {
+        for (int i = 0; i < placeholders.length; i++) {
+            if (placeholders[i].equals(name)) return i;
+        }
+        return -1;
+    }
+
+    /**
+     * @param values One value per placeholder, in the order given to {@link #compile}.
+     */
+    public String render(String... values) {
+        StringBuilder out = new StringBuilder(estimatedLength);
+        for (int i = 0; i < slots.length; i++) {
+            out.append(literals[i]).append(values[slots[i]]);
+        }
+        return out.append(literals[slots.length]).toString();
+    }
+}
@@ -0,0 +1,96 @@
+package com.Hihelloy.chatmoderator.utils;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * The moderation categories AI providers score, named as in OpenAI's moderation API and
+ * in {@code moderation.thresholds}.<br><br>
+ *
+ * Scores and thresholds are plain {@code double[]} arrays indexed by {@link #ordinal()},
+ * so checking a verdict is a loop over two arrays.
+ */
+public enum ModerationCategory {
+    HARASSMENT("harassment", ModerationResult.ViolationType.HARASSMENT),
+    HARASSMENT_THREATENING("harassment/threatening", ModerationResult.ViolationType.HARASSMENT),
+    HATE("hate", ModerationResult.ViolationType.HATE_SPEECH),
+    HATE_THREATENING("hate/threatening", ModerationResult.ViolationType.HATE_SPEECH),
+    ILLICIT("illicit", ModerationResult.ViolationType.ILLICIT),
+    ILLICIT_VIOLENT("illicit/violent", ModerationResult.ViolationType.VIOLENCE),
+    SELF_HARM("self-harm", ModerationResult.ViolationType.SELF_HARM),
+    SELF_HARM_INTENT("self-harm/intent", ModerationResult.ViolationType.SELF_HARM),
+    SELF_HARM_INSTRUCTIONS("self-harm/instructions", ModerationResult.ViolationType.SELF_HARM),
+    SEXUAL("sexual", ModerationResult.ViolationType.SEXUAL),
+    SEXUAL_MINORS("sexual/minors", ModerationResult.ViolationType.SEXUAL),
+    VIOLENCE("violence", ModerationResult.ViolationType.VIOLENCE),
+    VIOLENCE_GRAPHIC("violence/graphic", ModerationResult.ViolationType.VIOLENCE);
+
+    public static final int COUNT = values().length;
+
+    /** Used for categories with no configured threshold, directly or through their parent. */
+    public static final double DEFAULT_THRESHOLD = 0.8;
+
+    private static final ModerationCategory[] VALUES = values();
+    private static final Map<String, ModerationCategory> BY_NAME = new HashMap<>();
+
+    static {
+        for (ModerationCategory category : VALUES) {
+            BY_NAME.put(category.apiName, category);
+        }
+    }
+
+    private final String apiName;
+    private final ModerationResult.ViolationType violationType;
+
+    ModerationCategory(String apiName, ModerationResult.ViolationType violationType) {
+        this.apiName = apiName;
+        this.violationType = violationType;
+    }
+
+    public String getApiName() {
+        return apiName;
+    }
+
+    public ModerationResult.ViolationType getViolationType() {
+        return violationType;
+    }
+
+    /**
+     * @param index An index into a score array.
+     */
+    public static ModerationCategory of(int index) {
+        return VALUES[index];
+    }
+
+    /**
+     * @param name A category name such as {@code hate/threatening}, case-insensitive.
+     * @return The category, or null if it isn't known.
+     */
+    public static ModerationCategory byName(String name) {
+        return BY_NAME.get(name.toLowerCase(Locale.ROOT));
+    }
+
+    /**
+     * Flattens {@code moderation.thresholds} into an array indexed by category. A
+     * subcategory without its own threshold uses its parent's ({@code hate/threatening}
+     * falls back to {@code hate}), otherwise {@link #DEFAULT_THRESHOLD}.
+     */
+    public static double[] compileThresholds(Map<String, Double> configured) {
+        double[] thresholds = new double[COUNT];
+        Arrays.fill(thresholds, Double.NaN);
+        for (Map.Entry<String, Double> entry : configured.entrySet()) {
+            ModerationCategory category = byName(entry.getKey());
+            if (category != null) thresholds[category.ordinal()] = entry.getValue();
+        }
+        for (ModerationCategory category : VALUES) {
+            if (!Double.isNaN(thresholds[category.ordinal()])) continue;
+            int slash = category.apiName.indexOf('/');
+            ModerationCategory parent = slash > 0 ? byName(category.apiName.substring(0, slash)) : null;
+            Double parentThreshold = parent != null ? configured.get(parent.apiName) : null;
+            thresholds[category.ordinal()] = parentThreshold != null ? parentThreshold : DEFAULT_THRESHOLD;
+        }
+        return thresholds;
+    }
+}
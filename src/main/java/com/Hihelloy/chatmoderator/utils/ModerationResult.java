@@ -5,6 +5,8 @@ public class ModerationResult {
     private final boolean blocked;
     private final String reason;
     private final ViolationType violationType;
+    // Per-category AI scores indexed by ModerationCategory, or null for non-AI results
+    private final double[] scores;
 
     // Enum to define the different violation types
     public enum ViolationType {
@@ -16,13 +18,19 @@ public class ModerationResult {
         SELF_HARM,
         SPAM,
         HARASSMENT,
+        ILLICIT,
         ERROR
     }
 
     private ModerationResult(boolean blocked, String reason, ViolationType violationType) {
+        this(blocked, reason, violationType, null);
+    }
+
+    private ModerationResult(boolean blocked, String reason, ViolationType violationType, double[] scores) {
         this.blocked = blocked;
         this.reason = reason;
         this.violationType = violationType;
+        this.scores = scores;
     }
 
     // -------------------------------
@@ -45,6 +53,31 @@ public class ModerationResult {
         return new ModerationResult(true, reason, ViolationType.ERROR);
     }
 
+    /**
+     * Turns per-category scores into a verdict. The message is blocked for the category
+     * that exceeds its threshold by the widest margin.
+     *
+     * @param scores Scores indexed by {@link ModerationCategory#ordinal()}. Kept, not copied.
+     * @param thresholds Thresholds indexed the same way, see {@link ModerationCategory#compileThresholds}.
+     */
+    public static ModerationResult fromScores(double[] scores, double[] thresholds) {
+        int worst = -1;
+        double worstMargin = 0;
+        for (int i = 0; i < scores.length; i++) {
+            double margin = scores[i] - thresholds[i];
+            if (margin >= 0 && (worst == -1 || margin > worstMargin)) {
+                worst = i;
+                worstMargin = margin;
+            }
+        }
+        if (worst == -1) {
+            return new ModerationResult(false, "Safe", ViolationType.NONE, scores);
+        }
+        ModerationCategory category = ModerationCategory.of(worst);
+        return new ModerationResult(true, String.format("AI flagged: %s (%.2f)", category.getApiName(), scores[worst]),
+                category.getViolationType(), scores);
+    }
+
     // -------------------------------
     // Getters / helpers
     // -------------------------------
@@ -65,6 +98,20 @@ public class ModerationResult {
         return violationType;
     }
 
+    /**
+     * @return Whether this verdict came with per-category AI scores.
+     */
+    public boolean hasScores() {
+        return scores != null;
+    }
+
+    /**
+     * @return The AI score for a category, or 0 if there are no scores.
+     */
+    public double getScore(ModerationCategory category) {
+        return scores != null ? scores[category.ordinal()] : 0;
+    }
+
     @Override
     public String toString() {
         return "ModerationResult{" +
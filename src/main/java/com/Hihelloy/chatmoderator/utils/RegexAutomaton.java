@@ -0,0 +1,728 @@
+package com.Hihelloy.chatmoderator.utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Combined, linear-time matcher for a set of regular expressions.<br><br>
+ *
+ * Every pattern is compiled into one Thompson NFA, which is turned into a DFA lazily while
+ * scanning: each set of live NFA states seen so far becomes a cached DFA state, and its
+ * transitions for ASCII characters are remembered. Once the cache is warm a character costs
+ * one array lookup however many rules there are, and there is no backtracking (unlike
+ * {@link java.util.regex.Pattern}). A transition not cached yet, or on a non-ASCII character,
+ * is computed from the NFA in O(states). The cache holds at most {@value #MAX_CACHED_STATES}
+ * DFA states and starts over when full, so memory stays bounded even for patterns whose full
+ * DFA would be huge. Matching is case-insensitive and unanchored, i.e. it answers "does the
+ * text contain a match".<br><br>
+ *
+ * Supported syntax: literals, {@code .}, {@code [...]} and {@code [^...]} classes with
+ * ranges, the escapes {@code \d \w \s \D \W \S} and escaped metacharacters, grouping with
+ * {@code (...)} (and {@code (?:...)}), alternation {@code |}, and the quantifiers
+ * {@code * + ?}, {@code {n}}, {@code {n,}} and {@code {n,m}}. Anchors, backreferences and
+ * lookaround are rejected because they can't be expressed as a plain automaton.
+ */
+public final class RegexAutomaton {
+
+    private static final int EPSILON = 0;
+    private static final int SPLIT = 1;
+    private static final int CHAR = 2;
+    private static final int ANY = 3;
+    private static final int CLASS = 4;
+    private static final int MATCH = 5;
+
+    // Expanded repetitions are capped to keep the automaton small
+    private static final int MAX_REPEAT = 64;
+    // DFA states kept before the cache is dropped and rebuilt
+    private static final int MAX_CACHED_STATES = 1024;
+    // Characters below this get a transition table in each DFA state
+    private static final int ASCII = 128;
+
+    private static final RegexAutomaton EMPTY = new Builder().build();
+
+    private final int[] type;
+    private final int[] out1;
+    private final int[] out2;
+    // Character for CHAR, class index for CLASS, pattern tag for MATCH
+    private final int[] arg;
+    private final CharClass[] classes;
+    private final int start;
+
+    private final ThreadLocal<int[][]> scratch;
+    private volatile DfaCache cache;
+
+    private RegexAutomaton(int[] type, int[] out1, int[] out2, int[] arg, CharClass[] classes, int start) {
+        this.type = type;
+        this.out1 = out1;
+        this.out2 = out2;
+        this.arg = arg;
+        this.classes = classes;
+        this.start = start;
+        int states = type.length;
+        // state list, per-state generation marks, DFS stack, current generation
+        this.scratch = ThreadLocal.withInitial(() -> new int[][]{
+                new int[states], new int[states], new int[states * 2 + 2], new int[1]});
+        if (start >= 0) this.cache = newCache();
+    }
+
+    public static RegexAutomaton empty() {
+        return EMPTY;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * @return Whether any pattern was compiled into this automaton.
+     */
+    public boolean isEmpty() {
+        return start < 0;
+    }
+
+    /**
+     * Scans the text once and returns the tag of the first pattern to match.
+     *
+     * @param text The text to scan.
+     * @return The tag passed to {@link Builder#add(String, int)}, or -1 if nothing matched.
+     */
+    public int find(CharSequence text) {
+        if (start < 0) return -1;
+
+        DfaState state = cache.initial;
+        int length = text.length();
+        for (int i = 0; i < length; i++) {
+            char c = Character.toLowerCase(text.charAt(i));
+            DfaState next = c < ASCII ? state.ascii[c] : null;
+            if (next == null) next = step(state, c);
+            if (next.tag >= 0) return next.tag;
+            state = next;
+        }
+        return -1;
+    }
+
+    /**
+     * @return The number of DFA states cached so far, for tests.
+     */
+    int cachedStates() {
+        DfaCache current = cache;
+        return current != null ? current.states.size() : 0;
+    }
+
+    /**
+     * Follows a transition that isn't cached yet through the NFA, and caches it.
+     */
+    private DfaState step(DfaState from, char c) {
+        int[][] work = scratch.get();
+        int[] list = work[0];
+        int[] marks = work[1];
+        int[] stack = work[2];
+        int generation = nextGeneration(marks, work[3][0]);
+        work[3][0] = generation;
+
+        int size = 0;
+        for (int state : from.states) {
+            if (accepts(state, c)) {
+                size = addState(out1[state], list, size, marks, generation, stack);
+            }
+        }
+        // Unanchored search: a match may begin at the next character too
+        size = addState(start, list, size, marks, generation, stack);
+
+        DfaState next = intern(Arrays.copyOf(list, size));
+        // A racing thread may store the same state; DfaState's fields are final, so that is safe
+        if (c < ASCII) from.ascii[c] = next;
+        return next;
+    }
+
+    private DfaState intern(int[] states) {
+        Arrays.sort(states);
+        DfaCache current = cache;
+        if (current.states.size() >= MAX_CACHED_STATES) {
+            // Scans still walking the old states finish on them; new ones start over
+            current = newCache();
+            cache = current;
+        }
+        StateSet key = new StateSet(states);
+        DfaState state = current.states.get(key);
+        if (state != null) return state;
+        DfaState created = new DfaState(states, matchTag(states));
+        state = current.states.putIfAbsent(key, created);
+        return state != null ? state : created;
+    }
+
+    private DfaCache newCache() {
+        int[][] work = scratch.get();
+        int generation = nextGeneration(work[1], work[3][0]);
+        work[3][0] = generation;
+        int size = addState(start, work[0], 0, work[1], generation, work[2]);
+        int[] states = Arrays.copyOf(work[0], size);
+        Arrays.sort(states);
+        DfaState initial = new DfaState(states, matchTag(states));
+        DfaCache created = new DfaCache(initial);
+        created.states.put(new StateSet(states), initial);
+        return created;
+    }
+
+    // The pattern added first wins when several match at once; states are sorted, so it's the first MATCH
+    private int matchTag(int[] states) {
+        for (int state : states) {
+            if (type[state] == MATCH) return arg[state];
+        }
+        return -1;
+    }
+
+    private static int nextGeneration(int[] marks, int generation) {
+        if (generation == Integer.MAX_VALUE) {
+            Arrays.fill(marks, 0);
+            return 1;
+        }
+        return generation + 1;
+    }
+
+    private boolean accepts(int state, char c) {
+        switch (type[state]) {
+            case CHAR:
+                return arg[state] == c;
+            case ANY:
+                return c != '\n';
+            case CLASS:
+                return classes[arg[state]].contains(c);
+            default:
+                return false;
+        }
+    }
+
+    // Adds a state and everything reachable from it through epsilon/split edges
+    private int addState(int initial, int[] list, int size, int[] marks, int generation, int[] stack) {
+        int top = 0;
+        stack[top++] = initial;
+        while (top > 0) {
+            int state = stack[--top];
+            if (state < 0 || marks[state] == generation) continue;
+            marks[state] = generation;
+            switch (type[state]) {
+                case EPSILON:
+                    stack[top++] = out1[state];
+                    break;
+                case SPLIT:
+                    stack[top++] = out2[state];
+                    stack[top++] = out1[state];
+                    break;
+                default:
+                    list[size++] = state;
+                    break;
+            }
+        }
+        return size;
+    }
+
+    /**
+     * A set of live NFA states, with the transitions found from it so far.
+     */
+    private static final class DfaState {
+        private final int[] states;
+        // Tag of the pattern matched on reaching this state, or -1
+        private final int tag;
+        private final DfaState[] ascii = new DfaState[ASCII];
+
+        private DfaState(int[] states, int tag) {
+            this.states = states;
+            this.tag = tag;
+        }
+    }
+
+    private static final class DfaCache {
+        private final DfaState initial;
+        private final Map<StateSet, DfaState> states = new ConcurrentHashMap<>();
+
+        private DfaCache(DfaState initial) {
+            this.initial = initial;
+        }
+    }
+
+    // Sorted NFA state numbers, compared by content
+    private static final class StateSet {
+        private final int[] states;
+        private final int hash;
+
+        private StateSet(int[] states) {
+            this.states = states;
+            this.hash = Arrays.hashCode(states);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof StateSet && Arrays.equals(states, ((StateSet) other).states);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    /**
+     * Collects patterns and compiles them into a single automaton.
+     */
+    public static final class Builder {
+        private final List<Integer> type = new ArrayList<>();
+        private final List<Integer> out1 = new ArrayList<>();
+        private final List<Integer> out2 = new ArrayList<>();
+        private final List<Integer> arg = new ArrayList<>();
+        private final List<CharClass> classes = new ArrayList<>();
+        private final List<Integer> starts = new ArrayList<>();
+
+        private Builder() {
+        }
+
+        /**
+         * Compiles a pattern into the automaton.
+         *
+         * @param pattern The regular expression.
+         * @param tag The value {@link #find(CharSequence)} returns when this pattern matches.
+         * @throws IllegalArgumentException If the pattern is malformed, unsupported, or matches empty text.
+         */
+        public Builder add(String pattern, int tag) {
+            Node node = new Parser(pattern).parse();
+            if (node.matchesEmpty()) {
+                throw new IllegalArgumentException("Pattern matches empty text: " + pattern);
+            }
+            int[] fragment = compile(node);
+            int match = state(MATCH, -1, -1, tag);
+            patch(fragment[1], match);
+            starts.add(fragment[0]);
+            return this;
+        }
+
+        public RegexAutomaton build() {
+            int start = -1;
+            for (int s : starts) {
+                start = start < 0 ? s : state(SPLIT, start, s, 0);
+            }
+            int n = type.size();
+            int[] t = new int[n];
+            int[] o1 = new int[n];
+            int[] o2 = new int[n];
+            int[] a = new int[n];
+            for (int i = 0; i < n; i++) {
+                t[i] = type.get(i);
+                o1[i] = out1.get(i);
+                o2[i] = out2.get(i);
+                a[i] = arg.get(i);
+            }
+            return new RegexAutomaton(t, o1, o2, a, classes.toArray(new CharClass[0]), start);
+        }
+
+        private int state(int kind, int o1, int o2, int argument) {
+            type.add(kind);
+            out1.add(o1);
+            out2.add(o2);
+            arg.add(argument);
+            return type.size() - 1;
+        }
+
+        private void patch(int epsilon, int target) {
+            out1.set(epsilon, target);
+        }
+
+        // Returns {start, end} where end is an EPSILON state whose out1 is still open
+        private int[] compile(Node node) {
+            if (node instanceof Atom) {
+                Atom atom = (Atom) node;
+                int end = state(EPSILON, -1, -1, 0);
+                int s;
+                if (atom.any) {
+                    s = state(ANY, end, -1, 0);
+                } else if (atom.charClass != null) {
+                    classes.add(atom.charClass);
+                    s = state(CLASS, end, -1, classes.size() - 1);
+                } else {
+                    s = state(CHAR, end, -1, atom.c);
+                }
+                return new int[]{s, end};
+            }
+            if (node instanceof Concat) {
+                int[] result = null;
+                for (Node part : ((Concat) node).parts) {
+                    int[] fragment = compile(part);
+                    if (result == null) {
+                        result = fragment;
+                    } else {
+                        patch(result[1], fragment[0]);
+                        result[1] = fragment[1];
+                    }
+                }
+                if (result == null) {
+                    int e = state(EPSILON, -1, -1, 0);
+                    return new int[]{e, e};
+                }
+                return result;
+            }
+            if (node instanceof Alternation) {
+                int end = state(EPSILON, -1, -1, 0);
+                int s = -1;
+                for (Node option : ((Alternation) node).options) {
+                    int[] fragment = compile(option);
+                    patch(fragment[1], end);
+                    s = s < 0 ? fragment[0] : state(SPLIT, s, fragment[0], 0);
+                }
+                return new int[]{s, end};
+            }
+
+            Repeat repeat = (Repeat) node;
+            int entry = state(EPSILON, -1, -1, 0);
+            int tail = entry;
+            for (int i = 0; i < repeat.min; i++) {
+                int[] fragment = compile(repeat.child);
+                patch(tail, fragment[0]);
+                tail = fragment[1];
+            }
+            if (repeat.max < 0) {
+                // Kleene star on whatever follows the mandatory copies
+                int[] fragment = compile(repeat.child);
+                int end = state(EPSILON, -1, -1, 0);
+                int loop = state(SPLIT, fragment[0], end, 0);
+                patch(tail, loop);
+                patch(fragment[1], loop);
+                return new int[]{entry, end};
+            }
+            int end = state(EPSILON, -1, -1, 0);
+            for (int i = repeat.min; i < repeat.max; i++) {
+                int[] fragment = compile(repeat.child);
+                int choice = state(SPLIT, fragment[0], end, 0);
+                patch(tail, choice);
+                tail = fragment[1];
+            }
+            patch(tail, end);
+            return new int[]{entry, end};
+        }
+    }
+
+    // ---------------------------------------------------------------------
+    // Parser
+    // ---------------------------------------------------------------------
+
+    private interface Node {
+        boolean matchesEmpty();
+    }
+
+    private static final class Atom implements Node {
+        private final char c;
+        private final boolean any;
+        private final CharClass charClass;
+
+        private Atom(char c, boolean any, CharClass charClass) {
+            this.c = c;
+            this.any = any;
+            this.charClass = charClass;
+        }
+
+        @Override
+        public boolean matchesEmpty() {
+            return false;
+        }
+    }
+
+    private static final class Concat implements Node {
+        private final List<Node> parts;
+
+        private Concat(List<Node> parts) {
+            this.parts = parts;
+        }
+
+        @Override
+        public boolean matchesEmpty() {
+            for (Node part : parts) {
+                if (!part.matchesEmpty()) return false;
+            }
+            return true;
+        }
+    }
+
+    private static final class Alternation implements Node {
+        private final List<Node> options;
+
+        private Alternation(List<Node> options) {
+            this.options = options;
+        }
+
+        @Override
+        public boolean matchesEmpty() {
+            for (Node option : options) {
+                if (option.matchesEmpty()) return true;
+            }
+            return false;
+        }
+    }
+
+    private static final class Repeat implements Node {
+        private final Node child;
+        private final int min;
+        // -1 means unbounded
+        private final int max;
+
+        private Repeat(Node child, int min, int max) {
+            this.child = child;
+            this.min = min;
+            this.max = max;
+        }
+
+        @Override
+        public boolean matchesEmpty() {
+            return min == 0 || child.matchesEmpty();
+        }
+    }
+
+    private static final class Parser {
+        private final String pattern;
+        private int pos;
+
+        private Parser(String pattern) {
+            this.pattern = pattern;
+        }
+
+        private Node parse() {
+            Node node = parseAlternation();
+            if (pos < pattern.length()) throw error("Unexpected '" + pattern.charAt(pos) + "'");
+            return node;
+        }
+
+        private Node parseAlternation() {
+            List<Node> options = new ArrayList<>();
+            options.add(parseConcat());
+            while (pos < pattern.length() && pattern.charAt(pos) == '|') {
+                pos++;
+                options.add(parseConcat());
+            }
+            return options.size() == 1 ? options.get(0) : new Alternation(options);
+        }
+
+        private Node parseConcat() {
+            List<Node> parts = new ArrayList<>();
+            while (pos < pattern.length()) {
+                char c = pattern.charAt(pos);
+                if (c == '|' || c == ')') break;
+                parts.add(parseQuantified());
+            }
+            return parts.size() == 1 ? parts.get(0) : new Concat(parts);
+        }
+
+        private Node parseQuantified() {
+            Node node = parseAtom();
+            while (pos < pattern.length()) {
+                char c = pattern.charAt(pos);
+                if (c == '*') {
+                    pos++;
+                    node = new Repeat(node, 0, -1);
+                } else if (c == '+') {
+                    pos++;
+                    node = new Repeat(node, 1, -1);
+                } else if (c == '?') {
+                    pos++;
+                    node = new Repeat(node, 0, 1);
+                } else if (c == '{' && isBoundedRepeat()) {
+                    node = parseBoundedRepeat(node);
+                } else {
+                    break;
+                }
+            }
+            return node;
+        }
+
+        private boolean isBoundedRepeat() {
+            int end = pattern.indexOf('}', pos);
+            return end > pos + 1 && pattern.substring(pos + 1, end).matches("\\d+(,\\d*)?");
+        }
+
+        private Node parseBoundedRepeat(Node node) {
+            int end = pattern.indexOf('}', pos);
+            String[] bounds = pattern.substring(pos + 1, end).split(",", -1);
+            pos = end + 1;
+            int min = Integer.parseInt(bounds[0]);
+            int max = bounds.length == 1 ? min : (bounds[1].isEmpty() ? -1 : Integer.parseInt(bounds[1]));
+            if (min > MAX_REPEAT || max > MAX_REPEAT || (max >= 0 && max < min)) {
+                throw error("Invalid repetition {" + min + "," + max + "}");
+            }
+            return new Repeat(node, min, max);
+        }
+
+        private Node parseAtom() {
+            char c = pattern.charAt(pos++);
+            switch (c) {
+                case '(':
+                    if (pattern.startsWith("?:", pos)) {
+                        pos += 2;
+                    } else if (pos < pattern.length() && pattern.charAt(pos) == '?') {
+                        throw error("Lookaround and inline flags are not supported");
+                    }
+                    Node inner = parseAlternation();
+                    if (pos >= pattern.length() || pattern.charAt(pos) != ')') throw error("Missing ')'");
+                    pos++;
+                    return inner;
+                case '.':
+                    return new Atom((char) 0, true, null);
+                case '[':
+                    return new Atom((char) 0, false, parseClass());
+                case '\\':
+                    return parseEscape();
+                case '^':
+                case '$':
+                    throw error("Anchors are not supported");
+                case '*':
+                case '+':
+                case '?':
+                    throw error("Nothing to repeat");
+                default:
+                    return new Atom(Character.toLowerCase(c), false, null);
+            }
+        }
+
+        private Node parseEscape() {
+            if (pos >= pattern.length()) throw error("Trailing backslash");
+            char c = pattern.charAt(pos++);
+            CharClass shorthand = CharClass.shorthand(c);
+            if (shorthand != null) return new Atom((char) 0, false, shorthand);
+            if (Character.isLetterOrDigit(c)) throw error("Unsupported escape \\" + c);
+            return new Atom(Character.toLowerCase(c), false, null);
+        }
+
+        private CharClass parseClass() {
+            boolean negated = false;
+            if (pos < pattern.length() && pattern.charAt(pos) == '^') {
+                negated = true;
+                pos++;
+            }
+            CharClass.Builder builder = new CharClass.Builder();
+            boolean first = true;
+            while (true) {
+                if (pos >= pattern.length()) throw error("Missing ']'");
+                char c = pattern.charAt(pos++);
+                if (c == ']' && !first) break;
+                first = false;
+
+                if (c == '\\') {
+                    if (pos >= pattern.length()) throw error("Trailing backslash");
+                    char e = pattern.charAt(pos++);
+                    CharClass shorthand = CharClass.shorthand(e);
+                    if (shorthand != null) {
+                        builder.addAll(shorthand);
+                        continue;
+                    }
+                    c = e;
+                }
+                if (pos + 1 < pattern.length() && pattern.charAt(pos) == '-' && pattern.charAt(pos + 1) != ']') {
+                    pos++;
+                    char hi = pattern.charAt(pos++);
+                    if (hi == '\\') {
+                        if (pos >= pattern.length()) throw error("Trailing backslash");
+                        hi = pattern.charAt(pos++);
+                    }
+                    if (hi < c) throw error("Invalid range " + c + "-" + hi);
+                    builder.add(c, hi);
+                } else {
+                    builder.add(c, c);
+                }
+            }
+            return builder.build(negated);
+        }
+
+        private IllegalArgumentException error(String message) {
+            return new IllegalArgumentException(message + " in pattern '" + pattern + "' at " + pos);
+        }
+    }
+
+    /**
+     * Sorted, non-overlapping set of character ranges.
+     */
+    private static final class CharClass {
+        private final char[] ranges;
+        private final boolean negated;
+
+        private CharClass(char[] ranges, boolean negated) {
+            this.ranges = ranges;
+            this.negated = negated;
+        }
+
+        static CharClass shorthand(char c) {
+            switch (c) {
+                case 'd': return new Builder().add('0', '9').build(false);
+                case 'D': return new Builder().add('0', '9').build(true);
+                case 'w': return word(false);
+                case 'W': return word(true);
+                case 's': return space(false);
+                case 'S': return space(true);
+                default: return null;
+            }
+        }
+
+        private static CharClass word(boolean negated) {
+            return new Builder().add('a', 'z').add('A', 'Z').add('0', '9').add('_', '_').build(negated);
+        }
+
+        private static CharClass space(boolean negated) {
+            return new Builder().add(' ', ' ').add('\t', '\r').build(negated);
+        }
+
+        // The input is already lower-cased, so also try the upper-case form for classes like [A-Z]
+        boolean contains(char c) {
+            boolean found = inRanges(c) || inRanges(Character.toUpperCase(c));
+            return found != negated;
+        }
+
+        private boolean inRanges(char c) {
+            for (int i = 0; i < ranges.length; i += 2) {
+                if (c >= ranges[i] && c <= ranges[i + 1]) return true;
+            }
+            return false;
+        }
+
+        static final class Builder {
+            private final List<char[]> ranges = new ArrayList<>();
+
+            Builder add(char lo, char hi) {
+                ranges.add(new char[]{lo, hi});
+                return this;
+            }
+
+            void addAll(CharClass other) {
+                if (other.negated) {
+                    // Expand the complement so it can be merged with the other ranges
+                    char next = 0;
+                    for (int i = 0; i < other.ranges.length; i += 2) {
+                        if (other.ranges[i] > next) add(next, (char) (other.ranges[i] - 1));
+                        next = (char) (other.ranges[i + 1] + 1);
+                        if (other.ranges[i + 1] == Character.MAX_VALUE) return;
+                    }
+                    add(next, Character.MAX_VALUE);
+                    return;
+                }
+                for (int i = 0; i < other.ranges.length; i += 2) {
+                    add(other.ranges[i], other.ranges[i + 1]);
+                }
+            }
+
+            CharClass build(boolean negated) {
+                ranges.sort((a, b) -> Character.compare(a[0], b[0]));
+                List<char[]> merged = new ArrayList<>();
+                for (char[] range : ranges) {
+                    char[] last = merged.isEmpty() ? null : merged.get(merged.size() - 1);
+                    if (last != null && range[0] <= last[1] + 1) {
+                        last[1] = (char) Math.max(last[1], range[1]);
+                    } else {
+                        merged.add(new char[]{range[0], range[1]});
+                    }
+                }
+                char[] flat = new char[merged.size() * 2];
+                for (int i = 0; i < merged.size(); i++) {
+                    flat[i * 2] = merged.get(i)[0];
+                    flat[i * 2 + 1] = merged.get(i)[1];
+                }
+                return new CharClass(flat, negated);
+            }
+        }
+    }
+}
@@ -12,8 +12,10 @@ import org.bukkit.entity.Entity;
 import org.bukkit.entity.Player;
 import org.bukkit.plugin.Plugin;
 import org.jetbrains.annotations.NotNull;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
 import java.util.logging.Level;
 
@@ -29,6 +31,13 @@ public class SchedulerUtil {
 
     private static AtomicBoolean SHUTTING_DOWN = new AtomicBoolean(false);
 
+    // Coalesced main-thread work, drained by a single repeating task
+    private static final ConcurrentLinkedQueue<Runnable> DISPATCH_QUEUE = new ConcurrentLinkedQueue<>();
+    private static final AtomicInteger DISPATCH_DEPTH = new AtomicInteger();
+    private static final LatencyHistogram DISPATCH_DRAIN_TIME = new LatencyHistogram();
+    private static volatile long dispatchBudgetNanos = TimeUnit.MILLISECONDS.toNanos(2);
+    private static volatile Object dispatchTask;
+
     public SchedulerUtil(Plugin plugin) {
 
     }
@@ -58,6 +67,96 @@ public class SchedulerUtil {
         }
     }
 
+    /**
+     * Queues a task for the coalesced dispatcher. On Spigot, this is the main thread. On Folia,
+     * this is the global region thread.<br><br>
+     *
+     * Unlike {@link #runGlobal(Runnable)}, this doesn't schedule a task per call: one repeating
+     * task drains everything queued once per tick, within the budget set by
+     * {@link #startDispatcher(long)}, and leaves the rest for the next tick. Use it for work
+     * that can come in bursts, like reacting to moderation verdicts.
+     *
+     * @param runnable The task to run.
+     */
+    public static void dispatch(@NotNull Runnable runnable) {
+        if (SHUTTING_DOWN.get()) {
+            // The scheduler refuses tasks from a disabling plugin, so run it here
+            runCatch(runnable, "Error in dispatched task on shutdown");
+            return;
+        }
+        if (dispatchTask == null) {
+            runGlobal(runnable);
+            return;
+        }
+        DISPATCH_DEPTH.incrementAndGet();
+        DISPATCH_QUEUE.add(runnable);
+    }
+
+    /**
+     * Queues a task that acts on an entity. On Folia, this goes through
+     * {@link #ensureEntity(Entity, Runnable)} so it runs on the entity's region. On Spigot, it
+     * joins the coalesced main-thread queue of {@link #dispatch(Runnable)}.
+     *
+     * @param entity The entity the task acts on.
+     * @param runnable The task to run.
+     */
+    public static void dispatch(@NotNull Entity entity, @NotNull Runnable runnable) {
+        if (isFolia()) {
+            ensureEntity(entity, runnable);
+            return;
+        }
+        dispatch(() -> {
+            if (entity instanceof Player && !((Player) entity).isOnline()) return;
+            runnable.run();
+        });
+    }
+
+    /**
+     * Starts the repeating task behind {@link #dispatch(Runnable)}. Until it is started,
+     * dispatched tasks are scheduled one by one.
+     *
+     * @param budgetMillis How long each tick may spend running dispatched tasks.
+     */
+    public static void startDispatcher(long budgetMillis) {
+        setDispatchBudget(budgetMillis);
+        if (dispatchTask == null) {
+            dispatchTask = runGlobalTimer(SchedulerUtil::drainDispatchQueue, 1L, 1L);
+        }
+    }
+
+    public static void setDispatchBudget(long budgetMillis) {
+        dispatchBudgetNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, budgetMillis));
+    }
+
+    private static void drainDispatchQueue() {
+        if (DISPATCH_QUEUE.isEmpty()) return;
+        long start = System.nanoTime();
+        long deadline = start + dispatchBudgetNanos;
+        Runnable next;
+        // Always run at least one task so a slow one can't stall the queue
+        do {
+            next = DISPATCH_QUEUE.poll();
+            if (next == null) break;
+            DISPATCH_DEPTH.decrementAndGet();
+            runCatch(next, "Error in dispatched task");
+        } while (System.nanoTime() < deadline);
+        DISPATCH_DRAIN_TIME.recordSince(start);
+    }
+
+    /**
+     * @return Tasks waiting for the dispatcher.
+     */
+    public static int getDispatchQueueDepth() {
+        return DISPATCH_DEPTH.get();
+    }
+
+    /**
+     * @return How long each non-empty drain of the dispatch queue took.
+     */
+    public static LatencyHistogram getDispatchDrainTime() {
+        return DISPATCH_DRAIN_TIME;
+    }
+
     /**
      * Runs a task on the same thread as an entity after a delay. On Spigot, this is the main
      * thread. On Folia, this is the thread that the entity is on.
@@ -213,7 +312,7 @@ public class SchedulerUtil {
                 }
             }, delay * 50, TimeUnit.MILLISECONDS);
         } else {
-            return Bukkit.getScheduler().runTaskLater(plugin, runnable, delay);
+            return Bukkit.getScheduler().runTaskLaterAsynchronously(plugin, runnable, delay);
         }
     }
 
@@ -371,7 +470,20 @@ public class SchedulerUtil {
         }
     }
 
+    /**
+     * Runs every task still in the dispatch queue, and from now on runs dispatched and
+     * scheduled tasks straight away, on the calling thread. Call before shutting down
+     * anything those tasks use.
+     */
     public static void shutdown() {
         SHUTTING_DOWN.set(true);
+        cancelTask(dispatchTask);
+        dispatchTask = null;
+        // Nothing will drain the queue any more, so run what's left now
+        Runnable next;
+        while ((next = DISPATCH_QUEUE.poll()) != null) {
+            DISPATCH_DEPTH.decrementAndGet();
+            runCatch(next, "Error in dispatched task on shutdown");
+        }
     }
 }
\ No newline at end of file
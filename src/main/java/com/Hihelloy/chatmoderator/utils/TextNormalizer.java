@@ -0,0 +1,407 @@
+package com.Hihelloy.chatmoderator.utils;
+
+import java.text.Normalizer;
+
+/**
+ * Folds chat text into a canonical form before it reaches any matcher, so simple evasions
+ * ("K.Y.S", "n i g g a", "s3x", "ｓｅｘ", Cyrillic look-alikes, zero-width joiners) look
+ * the same as the plain word.<br><br>
+ *
+ * In order, each character is:
+ * <ol>
+ *     <li>case folded, stripped of accents and mapped from look-alike scripts, full-width
+ *     forms and small capitals to plain ASCII, using one precomputed lookup table,</li>
+ *     <li>dropped if it is invisible (zero-width and other format characters, combining marks)
+ *     or an apostrophe,</li>
+ *     <li>leet-decoded when it is a digit or symbol next to letters ({@code h3ll0}, {@code $hit}),</li>
+ *     <li>folded into a run of identical characters: doubles are kept, and three or more become
+ *     two ({@code goooon} becomes {@code goon}, {@code fuuuck} becomes {@code fuuck}),</li>
+ *     <li>turned into a single space if it is anything other than a letter or digit.</li>
+ * </ol>
+ * Finally, three or more single characters separated by spaces are joined
+ * ({@code k y s} becomes {@code kys}).<br><br>
+ *
+ * A message that had such a run of three or more is "stretched". Its {@link Normalized#squeezed()}
+ * form folds every run down to one letter, and is matched against patterns folded the same way
+ * ({@link #squeeze(String)}), so {@code fuuuck} still matches {@code fuck}. Only matches that
+ * cover a stretched letter count there: {@code Niger} or {@code but} typed plainly never match
+ * the folded forms of {@code nigger} or {@code butt}.<br><br>
+ *
+ * {@link #normalize(CharSequence)} writes into a per-thread buffer and allocates nothing once
+ * the buffer has grown to the longest message seen. The result remembers, for every output
+ * character, where it came from in the original text.
+ */
+public final class TextNormalizer {
+
+    // Marks characters that are removed entirely
+    private static final char DROP = '\u0000';
+    // Three or more spaced-out single characters are joined into one word
+    private static final int MIN_SPACED_RUN = 3;
+
+    private static final char[] FOLD = new char[0x10000];
+    private static final char[] LEET = new char[128];
+
+    private static final ThreadLocal<Normalized> BUFFER = ThreadLocal.withInitial(Normalized::new);
+
+    static {
+        // Look-alikes from other scripts and small capitals, as (from, to) pairs
+        String confusables = "аaвbеeёeкkмmнhоoрpсcтtуyхxѕsіiїiјjԁdһhԛqԝwүyһh"
+                + "αaβbγyεeιiκkνvοoρpτtυuχxωwηnμu"
+                + "ıiłlđdøoɑaɡgʀrɪiʏyʟlɴnʜhɢgʙbꜱsғfꜰf"
+                + "ᴀaᴄcᴅdᴇeᴊjᴋkᴍmᴏoᴘpᴛtᴜuᴠvᴡwᴢz";
+        char[] confusable = new char[0x10000];
+        for (int i = 0; i + 1 < confusables.length(); i += 2) {
+            confusable[confusables.charAt(i)] = confusables.charAt(i + 1);
+        }
+
+        for (int c = 0; c < 0x10000; c++) {
+            int type = Character.getType(c);
+            if (type == Character.FORMAT || type == Character.NON_SPACING_MARK || type == Character.ENCLOSING_MARK
+                    || c == '\'' || c == '’' || c == 'ʼ') {
+                FOLD[c] = DROP;
+                continue;
+            }
+            if (Character.isSurrogate((char) c)) {
+                FOLD[c] = ' ';
+                continue;
+            }
+
+            char folded = (char) Character.toLowerCase(Character.toUpperCase(c));
+            if (folded >= 0x00C0 && folded < 0x2000 || folded >= 0x1E00 && folded < 0x1F00) {
+                // Strip accents: take the base letter of the canonical decomposition
+                String decomposed = Normalizer.normalize(String.valueOf(folded), Normalizer.Form.NFD);
+                if (decomposed.length() > 1 && Character.isLetter(decomposed.charAt(0))) {
+                    folded = Character.toLowerCase(decomposed.charAt(0));
+                }
+            }
+            if (confusable[folded] != 0) folded = confusable[folded];
+            FOLD[c] = folded;
+        }
+
+        // Full-width ASCII
+        for (int c = 0xFF01; c <= 0xFF5E; c++) {
+            FOLD[c] = FOLD[c - 0xFEE0];
+        }
+        // Circled and parenthesized letters
+        for (int i = 0; i < 26; i++) {
+            FOLD[0x24B6 + i] = (char) ('a' + i);
+            FOLD[0x24D0 + i] = (char) ('a' + i);
+            FOLD[0x249C + i] = (char) ('a' + i);
+        }
+
+        LEET['0'] = 'o';
+        LEET['1'] = 'i';
+        LEET['3'] = 'e';
+        LEET['4'] = 'a';
+        LEET['5'] = 's';
+        LEET['7'] = 't';
+        LEET['8'] = 'b';
+        LEET['9'] = 'g';
+        LEET['@'] = 'a';
+        LEET['$'] = 's';
+        LEET['!'] = 'i';
+        LEET['|'] = 'l';
+    }
+
+    private TextNormalizer() {
+    }
+
+    /**
+     * Normalizes text into this thread's reusable buffer.
+     *
+     * @param text The text to normalize.
+     * @return The normalized text. It is only valid until this thread calls {@code normalize} again,
+     * so don't hand it to other threads or keep it around; use {@link Normalized#toString()} for a copy.
+     */
+    public static Normalized normalize(CharSequence text) {
+        Normalized out = BUFFER.get();
+        out.reset(text);
+        char[] chars = out.chars;
+        int[] offsets = out.offsets;
+        int[] ends = out.ends;
+        boolean[] stretched = out.stretchedAt;
+        int n = 0;
+        int run = 0;
+
+        int length = text.length();
+        int i = 0;
+        while (i < length) {
+            int start = i;
+            char raw = text.charAt(i++);
+            char c;
+            if (Character.isHighSurrogate(raw) && i < length && Character.isLowSurrogate(text.charAt(i))) {
+                c = foldSupplementary(Character.toCodePoint(raw, text.charAt(i++)));
+            } else {
+                c = FOLD[raw];
+            }
+            if (c == DROP) continue;
+
+            if (c < 128 && LEET[c] != 0) {
+                boolean letterBefore = n > 0 && isLetter(chars[n - 1]);
+                boolean letterAfter = i < length && isLetter(FOLD[text.charAt(i)]);
+                // Digits count as letters next to any letter; symbols only in front of one
+                if (Character.isDigit(c) ? letterBefore || letterAfter : letterAfter) {
+                    c = LEET[c];
+                }
+            }
+
+            if (!Character.isLetterOrDigit(c)) {
+                if (n == 0 || chars[n - 1] == ' ') continue;
+                c = ' ';
+                run = 0;
+            } else if (n > 0 && chars[n - 1] == c) {
+                // Keep a double, fold a longer run down to two
+                if (++run > 2) {
+                    stretched[n - 2] = true;
+                    stretched[n - 1] = true;
+                    ends[n - 1] = start;
+                    continue;
+                }
+            } else {
+                run = 1;
+            }
+            chars[n] = c;
+            offsets[n] = start;
+            ends[n] = start;
+            stretched[n] = false;
+            n++;
+        }
+        if (n > 0 && chars[n - 1] == ' ') n--;
+
+        out.length = joinSpacedRuns(chars, offsets, ends, stretched, n);
+        for (int k = 0; k < out.length; k++) {
+            if (stretched[k]) {
+                out.stretched = true;
+                break;
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Normalizes text into a new string. Meant for patterns and other one-off uses, not the chat path.
+     */
+    public static String normalizeToString(CharSequence text) {
+        return normalize(text).toString();
+    }
+
+    /**
+     * Folds every run of identical letters in normalized text down to one, the form patterns
+     * take when they are matched against {@link Normalized#squeezed()}.
+     *
+     * @param normalized Text that has already been through {@link #normalize(CharSequence)}.
+     */
+    public static String squeeze(String normalized) {
+        StringBuilder out = new StringBuilder(normalized.length());
+        for (int i = 0; i < normalized.length(); i++) {
+            char c = normalized.charAt(i);
+            if (i > 0 && c == normalized.charAt(i - 1) && c != ' ') continue;
+            out.append(c);
+        }
+        return out.toString();
+    }
+
+    /**
+     * Joins runs of spaced-out single characters in place, folding repeats across the
+     * removed spaces the same way as within words. Tokens are separated by exactly one space at this point.
+     *
+     * @return The new length.
+     */
+    private static int joinSpacedRuns(char[] chars, int[] offsets, int[] ends, boolean[] stretched, int n) {
+        int write = 0;
+        int read = 0;
+        while (read < n) {
+            int singles = 0;
+            while (read + 2 * singles < n && (read + 2 * singles + 1 >= n || chars[read + 2 * singles + 1] == ' ')) {
+                singles++;
+            }
+
+            if (write > 0) {
+                offsets[write] = offsets[read - 1];
+                ends[write] = offsets[read - 1];
+                stretched[write] = false;
+                chars[write++] = ' ';
+            }
+            if (singles >= MIN_SPACED_RUN) {
+                int run = 0;
+                for (int k = 0; k < singles; k++) {
+                    int at = read + 2 * k;
+                    if (k > 0 && chars[write - 1] == chars[at]) {
+                        if (++run > 2) {
+                            stretched[write - 2] = true;
+                            stretched[write - 1] = true;
+                            ends[write - 1] = ends[at];
+                            continue;
+                        }
+                    } else {
+                        run = 1;
+                    }
+                    offsets[write] = offsets[at];
+                    ends[write] = ends[at];
+                    stretched[write] = stretched[at];
+                    chars[write++] = chars[at];
+                }
+                read += 2 * singles;
+            } else {
+                while (read < n && chars[read] != ' ') {
+                    offsets[write] = offsets[read];
+                    ends[write] = ends[read];
+                    stretched[write] = stretched[read];
+                    chars[write++] = chars[read++];
+                }
+                read++;
+            }
+        }
+        return write;
+    }
+
+    /**
+     * Folds mathematical alphanumerics and enclosed letters outside the BMP. Anything else
+     * (mostly emoji) is a separator.
+     */
+    private static char foldSupplementary(int codePoint) {
+        if (codePoint >= 0x1D400 && codePoint <= 0x1D6A3) {
+            int letter = (codePoint - 0x1D400) % 52;
+            return (char) ('a' + (letter % 26));
+        }
+        if (codePoint >= 0x1D7CE && codePoint <= 0x1D7FF) {
+            return (char) ('0' + (codePoint - 0x1D7CE) % 10);
+        }
+        if (codePoint >= 0x1F130 && codePoint <= 0x1F189) {
+            return (char) ('a' + (codePoint - 0x1F130) % 26);
+        }
+        if (codePoint >= 0x1F1E6 && codePoint <= 0x1F1FF) {
+            return (char) ('a' + (codePoint - 0x1F1E6));
+        }
+        return ' ';
+    }
+
+    private static boolean isLetter(char c) {
+        return c >= 'a' && c <= 'z' || c > 127 && Character.isLetter(c);
+    }
+
+    /**
+     * Normalized text backed by a reusable per-thread buffer, with a map from every
+     * character back to its position in the original text.
+     */
+    public static final class Normalized implements CharSequence {
+        private char[] chars = new char[256];
+        private int[] offsets = new int[256];
+        // Last original character folded into each character, for runs
+        private int[] ends = new int[256];
+        private boolean[] stretchedAt = new boolean[256];
+        private int length;
+        private CharSequence source;
+        private boolean stretched;
+        private Normalized squeezed;
+        private boolean squeezedCurrent;
+
+        private Normalized() {
+        }
+
+        private void reset(CharSequence text) {
+            ensureCapacity(text.length());
+            source = text;
+            length = 0;
+            stretched = false;
+            squeezedCurrent = false;
+        }
+
+        private void ensureCapacity(int needed) {
+            if (chars.length < needed) {
+                int capacity = Integer.highestOneBit(needed) << 1;
+                chars = new char[capacity];
+                offsets = new int[capacity];
+                ends = new int[capacity];
+                stretchedAt = new boolean[capacity];
+            }
+        }
+
+        /**
+         * @return Whether the original text had a run of three or more identical letters.
+         */
+        public boolean isStretched() {
+            return stretched;
+        }
+
+        /**
+         * @return Whether the character at {@code index} came from a run of three or more.
+         */
+        public boolean isStretchedAt(int index) {
+            return stretchedAt[index];
+        }
+
+        /**
+         * The same text with every run of identical letters folded to one, so stretched
+         * spellings can be matched against patterns folded with {@link TextNormalizer#squeeze(String)}.
+         * Characters keep their map back to the original text and their stretched mark.
+         *
+         * @return The folded text, or null if this text isn't {@link #isStretched() stretched}.
+         * Shares this text's buffer, so it is only valid as long as this text is.
+         */
+        public Normalized squeezed() {
+            if (!stretched) return null;
+            if (squeezedCurrent) return squeezed;
+            if (squeezed == null) squeezed = new Normalized();
+            Normalized out = squeezed;
+            out.ensureCapacity(length);
+            out.source = source;
+            out.stretched = true;
+            int n = 0;
+            for (int i = 0; i < length; i++) {
+                char c = chars[i];
+                if (n > 0 && out.chars[n - 1] == c && c != ' ') {
+                    out.ends[n - 1] = ends[i];
+                    out.stretchedAt[n - 1] |= stretchedAt[i];
+                    continue;
+                }
+                out.chars[n] = c;
+                out.offsets[n] = offsets[i];
+                out.ends[n] = ends[i];
+                out.stretchedAt[n] = stretchedAt[i];
+                n++;
+            }
+            out.length = n;
+            squeezedCurrent = true;
+            return out;
+        }
+
+        @Override
+        public int length() {
+            return length;
+        }
+
+        @Override
+        public char charAt(int index) {
+            if (index >= length) throw new IndexOutOfBoundsException(index);
+            return chars[index];
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return new String(chars, start, end - start);
+        }
+
+        /**
+         * @return The index in the original text that produced the character at {@code index}.
+         */
+        public int sourceIndex(int index) {
+            return offsets[index];
+        }
+
+        /**
+         * @return The original text that produced the normalized range {@code [start, end)}.
+         */
+        public String sourceText(int start, int end) {
+            if (start >= end) return "";
+            int last = ends[end - 1];
+            return source.subSequence(offsets[start], last + Character.charCount(Character.codePointAt(source, last)))
+                    .toString();
+        }
+
+        @Override
+        public String toString() {
+            return new String(chars, 0, length);
+        }
+    }
+}
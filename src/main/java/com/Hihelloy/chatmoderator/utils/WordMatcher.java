@@ -0,0 +1,380 @@
+package com.Hihelloy.chatmoderator.utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Immutable Aho-Corasick automaton over a set of blocked words.<br><br>
+ *
+ * The automaton is compiled once (on config load or when the word list changes)
+ * and can then be shared between any number of chat threads. Scanning a message
+ * walks its characters exactly once and allocates nothing; a hit is reported as
+ * a packed {@code long} that can be decoded with {@link #offset(long)} and
+ * {@link #word(long)}.<br><br>
+ *
+ * Words added through {@link #compile(Collection)} only report whole-word hits,
+ * matching the old {@code split("\\W+")} behaviour: a match must be surrounded by
+ * non-word characters (anything other than {@code [A-Za-z0-9_]}) or the ends of the
+ * message. The {@link Builder} can also add plain substring patterns and attach an
+ * integer tag to each pattern, so several rule sets can share one scan.<br><br>
+ *
+ * Patterns are folded with {@link TextNormalizer} when they are added, so the text to scan
+ * should be the {@link TextNormalizer#normalize(CharSequence)} form of the message. Scanning a
+ * {@link TextNormalizer.Normalized} also checks its {@link TextNormalizer.Normalized#squeezed()
+ * squeezed} form, when it has one, against a second automaton of squeezed patterns; use
+ * {@link #sourceText(TextNormalizer.Normalized, long)} to get what the player typed for a hit.
+ */
+public final class WordMatcher {
+
+    /** Returned by {@link #find(CharSequence)} when no blocked word is present. */
+    public static final long NO_MATCH = -1L;
+
+    private static final WordMatcher EMPTY = compile(List.of());
+    // Set on hits found in the squeezed form of a message
+    private static final long SQUEEZED = 1L << 62;
+
+    private final String[] words;
+    private final boolean[] wholeWord;
+    private final int[] tags;
+
+    // Transitions are stored CSR-style: the edges of state s live in
+    // [edgeStart[s], edgeStart[s + 1]) sorted by character.
+    private final int[] edgeStart;
+    private final char[] edgeChar;
+    private final int[] edgeTarget;
+
+    private final int[] fail;
+    // Index of the word ending in this state, or -1
+    private final int[] output;
+    // Nearest state on the failure chain that has an output, or -1
+    private final int[] outputLink;
+    // Patterns with every run of letters folded to one, for stretched messages; null on that automaton itself
+    private final WordMatcher squeezed;
+
+    private WordMatcher(String[] words, boolean[] wholeWord, int[] tags, int[] edgeStart, char[] edgeChar,
+                        int[] edgeTarget, int[] fail, int[] output, int[] outputLink, WordMatcher squeezed) {
+        this.words = words;
+        this.wholeWord = wholeWord;
+        this.tags = tags;
+        this.edgeStart = edgeStart;
+        this.edgeChar = edgeChar;
+        this.edgeTarget = edgeTarget;
+        this.fail = fail;
+        this.output = output;
+        this.outputLink = outputLink;
+        this.squeezed = squeezed;
+    }
+
+    /**
+     * @return A matcher that never matches anything.
+     */
+    public static WordMatcher empty() {
+        return EMPTY;
+    }
+
+    /**
+     * Compiles a list of whole words into a matcher. Words are normalized with {@link TextNormalizer},
+     * and blank entries and duplicates are ignored.
+     *
+     * @param rawWords The words to block.
+     * @return The compiled matcher.
+     */
+    public static WordMatcher compile(Collection<String> rawWords) {
+        Builder builder = builder();
+        for (String word : rawWords) {
+            builder.add(word, true, 0);
+        }
+        return builder.build();
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Collects patterns for a matcher. The first pattern added wins when the same text
+     * is added twice.
+     */
+    public static final class Builder {
+        private final Set<String> seen = new HashSet<>();
+        private final List<String> words = new ArrayList<>();
+        private final List<Boolean> wholeWord = new ArrayList<>();
+        private final List<Integer> tags = new ArrayList<>();
+
+        private Builder() {
+        }
+
+        /**
+         * @param pattern The text to look for, normalized with {@link TextNormalizer}; blank patterns are ignored.
+         * @param wholeWord Whether the pattern must be surrounded by non-word characters.
+         * @param tag A value reported by {@link #tag(long)} when this pattern matches.
+         */
+        public Builder add(String pattern, boolean wholeWord, int tag) {
+            if (pattern == null) return this;
+            String normalized = TextNormalizer.normalizeToString(pattern);
+            if (normalized.isEmpty() || !seen.add(normalized)) return this;
+            words.add(normalized);
+            this.wholeWord.add(wholeWord);
+            tags.add(tag);
+            return this;
+        }
+
+        public WordMatcher build() {
+            boolean[] whole = new boolean[wholeWord.size()];
+            int[] tagArray = new int[tags.size()];
+            for (int i = 0; i < whole.length; i++) {
+                whole[i] = wholeWord.get(i);
+                tagArray[i] = tags.get(i);
+            }
+
+            // The same patterns squeezed; the first one wins when two squeeze to the same text
+            Set<String> squeezedSeen = new HashSet<>();
+            List<String> squeezedWords = new ArrayList<>();
+            List<Integer> squeezedIndex = new ArrayList<>();
+            for (int i = 0; i < words.size(); i++) {
+                String squeezed = TextNormalizer.squeeze(words.get(i));
+                if (!squeezedSeen.add(squeezed)) continue;
+                squeezedWords.add(squeezed);
+                squeezedIndex.add(i);
+            }
+            boolean[] squeezedWhole = new boolean[squeezedWords.size()];
+            int[] squeezedTags = new int[squeezedWords.size()];
+            for (int i = 0; i < squeezedWhole.length; i++) {
+                squeezedWhole[i] = whole[squeezedIndex.get(i)];
+                squeezedTags[i] = tagArray[squeezedIndex.get(i)];
+            }
+            WordMatcher squeezed = WordMatcher.build(squeezedWords.toArray(new String[0]), squeezedWhole,
+                    squeezedTags, null);
+            return WordMatcher.build(words.toArray(new String[0]), whole, tagArray, squeezed);
+        }
+    }
+
+    private static WordMatcher build(String[] words, boolean[] wholeWord, int[] tags, WordMatcher squeezed) {
+        // Build a plain trie first, then flatten it
+        List<Map<Character, Integer>> children = new ArrayList<>();
+        List<Integer> terminal = new ArrayList<>();
+        children.add(new HashMap<>());
+        terminal.add(-1);
+
+        for (int w = 0; w < words.length; w++) {
+            int state = 0;
+            String word = words[w];
+            for (int i = 0; i < word.length(); i++) {
+                char c = word.charAt(i);
+                Integer next = children.get(state).get(c);
+                if (next == null) {
+                    next = children.size();
+                    children.add(new HashMap<>());
+                    terminal.add(-1);
+                    children.get(state).put(c, next);
+                }
+                state = next;
+            }
+            if (terminal.get(state) == -1) terminal.set(state, w);
+        }
+
+        int states = children.size();
+        int[] edgeStart = new int[states + 1];
+        for (int s = 0; s < states; s++) {
+            edgeStart[s + 1] = edgeStart[s] + children.get(s).size();
+        }
+        char[] edgeChar = new char[edgeStart[states]];
+        int[] edgeTarget = new int[edgeStart[states]];
+        for (int s = 0; s < states; s++) {
+            Character[] keys = children.get(s).keySet().toArray(new Character[0]);
+            Arrays.sort(keys);
+            int pos = edgeStart[s];
+            for (Character key : keys) {
+                edgeChar[pos] = key;
+                edgeTarget[pos] = children.get(s).get(key);
+                pos++;
+            }
+        }
+
+        int[] output = new int[states];
+        for (int s = 0; s < states; s++) output[s] = terminal.get(s);
+
+        // Breadth-first pass to compute failure and output links
+        int[] fail = new int[states];
+        int[] outputLink = new int[states];
+        Arrays.fill(outputLink, -1);
+        int[] queue = new int[states];
+        int head = 0;
+        int tail = 0;
+        for (int e = edgeStart[0]; e < edgeStart[1]; e++) {
+            int child = edgeTarget[e];
+            fail[child] = 0;
+            queue[tail++] = child;
+        }
+        while (head < tail) {
+            int state = queue[head++];
+            for (int e = edgeStart[state]; e < edgeStart[state + 1]; e++) {
+                char c = edgeChar[e];
+                int child = edgeTarget[e];
+                int f = fail[state];
+                int next;
+                while ((next = step(edgeStart, edgeChar, edgeTarget, f, c)) == -1 && f != 0) {
+                    f = fail[f];
+                }
+                fail[child] = next == -1 ? 0 : next;
+                int link = fail[child];
+                outputLink[child] = output[link] != -1 ? link : outputLink[link];
+                queue[tail++] = child;
+            }
+        }
+
+        return new WordMatcher(words, wholeWord, tags, edgeStart, edgeChar, edgeTarget, fail, output, outputLink,
+                squeezed);
+    }
+
+    private static int step(int[] edgeStart, char[] edgeChar, int[] edgeTarget, int state, char c) {
+        int lo = edgeStart[state];
+        int hi = edgeStart[state + 1] - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            char m = edgeChar[mid];
+            if (m < c) lo = mid + 1;
+            else if (m > c) hi = mid - 1;
+            else return edgeTarget[mid];
+        }
+        return -1;
+    }
+
+    /**
+     * Scans the text for the first occurrence of any pattern.
+     *
+     * @param text The text to scan.
+     * @return {@link #NO_MATCH}, or a packed hit to decode with {@link #offset(long)} and {@link #word(long)}.
+     */
+    public long find(CharSequence text) {
+        return scan(text, null);
+    }
+
+    /**
+     * Scans a normalized message for the first occurrence of any pattern. If there is none and
+     * the message is {@link TextNormalizer.Normalized#isStretched() stretched}, its squeezed form
+     * is scanned for squeezed patterns, counting only hits that cover a stretched letter.
+     *
+     * @param text The output of {@link TextNormalizer#normalize(CharSequence)}.
+     * @return {@link #NO_MATCH}, or a packed hit. Its {@link #offset(long)} refers to the squeezed
+     *         form for hits found there; {@link #sourceText(TextNormalizer.Normalized, long)} handles both.
+     */
+    public long find(TextNormalizer.Normalized text) {
+        long match = scan(text, null);
+        if (match != NO_MATCH || squeezed == null) return match;
+        TextNormalizer.Normalized folded = text.squeezed();
+        if (folded == null) return NO_MATCH;
+        match = squeezed.scan(folded, folded);
+        return match == NO_MATCH ? NO_MATCH : match | SQUEEZED;
+    }
+
+    /**
+     * @param stretched If not null, only hits covering one of its stretched characters count.
+     */
+    private long scan(CharSequence text, TextNormalizer.Normalized stretched) {
+        if (words.length == 0) return NO_MATCH;
+        int state = 0;
+        int length = text.length();
+        for (int i = 0; i < length; i++) {
+            char c = Character.toLowerCase(text.charAt(i));
+            int next;
+            while ((next = step(edgeStart, edgeChar, edgeTarget, state, c)) == -1 && state != 0) {
+                state = fail[state];
+            }
+            state = next == -1 ? 0 : next;
+
+            int candidate = output[state] != -1 ? state : outputLink[state];
+            if (candidate == -1) continue;
+
+            boolean endsWord = i + 1 >= length || !isWordChar(text.charAt(i + 1));
+            while (candidate != -1) {
+                int wordIndex = output[candidate];
+                int start = i + 1 - words[wordIndex].length();
+                boolean bounded = !wholeWord[wordIndex]
+                        || (endsWord && (start == 0 || !isWordChar(text.charAt(start - 1))));
+                if (bounded && (stretched == null || coversStretched(stretched, start, i + 1))) {
+                    return ((long) wordIndex << 32) | start;
+                }
+                candidate = outputLink[candidate];
+            }
+        }
+        return NO_MATCH;
+    }
+
+    private static boolean coversStretched(TextNormalizer.Normalized text, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (text.isStretchedAt(i)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * @param text The text to scan.
+     * @return Whether the text contains any blocked word.
+     */
+    public boolean matches(CharSequence text) {
+        return find(text) != NO_MATCH;
+    }
+
+    /**
+     * @param text The output of {@link TextNormalizer#normalize(CharSequence)}.
+     * @return Whether the message contains any blocked word, stretched spellings included.
+     */
+    public boolean matches(TextNormalizer.Normalized text) {
+        return find(text) != NO_MATCH;
+    }
+
+    /**
+     * @param text The message passed to {@link #find(TextNormalizer.Normalized)}.
+     * @param match A hit returned for it.
+     * @return The part of the original message that matched, as the player typed it.
+     */
+    public String sourceText(TextNormalizer.Normalized text, long match) {
+        TextNormalizer.Normalized scanned = (match & SQUEEZED) != 0 ? text.squeezed() : text;
+        int start = offset(match);
+        return scanned.sourceText(start, start + word(match).length());
+    }
+
+    /**
+     * @param match A value returned by {@link #find(CharSequence)}.
+     * @return The character offset of the match in the scanned text.
+     */
+    public static int offset(long match) {
+        return (int) match;
+    }
+
+    /**
+     * @param match A value returned by {@link #find(CharSequence)}.
+     * @return The blocked word that matched.
+     */
+    public String word(long match) {
+        if ((match & SQUEEZED) != 0) return squeezed.words[(int) ((match & ~SQUEEZED) >>> 32)];
+        return words[(int) (match >>> 32)];
+    }
+
+    /**
+     * @param match A value returned by {@link #find(CharSequence)}.
+     * @return The tag the matching pattern was added with.
+     */
+    public int tag(long match) {
+        if ((match & SQUEEZED) != 0) return squeezed.tags[(int) ((match & ~SQUEEZED) >>> 32)];
+        return tags[(int) (match >>> 32)];
+    }
+
+    /**
+     * @return The number of distinct words compiled into this matcher.
+     */
+    public int size() {
+        return words.length;
+    }
+
+    private static boolean isWordChar(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_';
+    }
+}
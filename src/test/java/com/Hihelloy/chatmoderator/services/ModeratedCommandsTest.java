@@ -0,0 +1,77 @@
+package com.Hihelloy.chatmoderator.services;
+
+import org.bukkit.command.Command;
+import org.bukkit.command.CommandSender;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class ModeratedCommandsTest {
+
+    private static final Map<String, Integer> LABELS = Map.of("msg", 1, "me", 0, "mail", 2);
+
+    private static String text(Map<String, Integer> labels, String commandLine) {
+        int start = ModeratedCommands.textStart(labels, commandLine);
+        return start < 0 ? null : commandLine.substring(start);
+    }
+
+    private static Command command(String name, String... aliases) {
+        return new Command(name, "", "/" + name, List.of(aliases)) {
+            @Override
+            public boolean execute(CommandSender sender, String commandLabel, String[] args) {
+                return true;
+            }
+        };
+    }
+
+    @Test
+    void skipsTheConfiguredArguments() {
+        assertEquals("hello there", text(LABELS, "/msg Steve hello there"));
+        assertEquals("waves", text(LABELS, "/me waves"));
+        assertEquals("see you", text(LABELS, "/mail send Steve see you"));
+        assertEquals("hi", text(LABELS, "/MSG   Steve   hi"));
+    }
+
+    @Test
+    void matchesNamespacedLabels() {
+        assertEquals("hi", text(LABELS, "/essentials:msg Steve hi"));
+        assertEquals("waves", text(LABELS, "/minecraft:me waves"));
+    }
+
+    @Test
+    void ignoresOtherCommands() {
+        assertNull(text(LABELS, "/gamemode creative"));
+        assertNull(text(LABELS, "/message Steve hi"));
+        assertNull(text(LABELS, "/essentials:"));
+    }
+
+    @Test
+    void findsNoTextWhenItIsMissing() {
+        assertEquals("", text(LABELS, "/msg"));
+        assertEquals("", text(LABELS, "/msg Steve"));
+        assertEquals("", text(LABELS, "/msg Steve "));
+        assertEquals("", text(LABELS, "/mail send"));
+    }
+
+    @Test
+    void addsAliasesOfConfiguredCommands() {
+        Map<String, Command> registered = Map.of(
+                "msg", command("tell", "msg", "Whisper", "me"),
+                "me", command("me", "emote"));
+        Map<String, Integer> labels = ModeratedCommands.compile(LABELS, registered::get);
+        assertEquals("hi", text(labels, "/tell Steve hi"));
+        assertEquals("hi", text(labels, "/whisper Steve hi"));
+        assertEquals("waves", text(labels, "/essentials:emote waves"));
+        // A configured label keeps its own count when another command lists it as an alias
+        assertEquals("waves", text(labels, "/me waves"));
+    }
+
+    @Test
+    void keepsConfiguredLabelsWithoutACommandMap() {
+        assertEquals(LABELS, ModeratedCommands.compile(LABELS, null));
+    }
+}
@@ -0,0 +1,134 @@
+package com.Hihelloy.chatmoderator.services;
+
+import com.Hihelloy.chatmoderator.config.ConfigSnapshot;
+import com.Hihelloy.chatmoderator.utils.ModerationCategory;
+import com.Hihelloy.chatmoderator.utils.ModerationResult;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ModerationServiceTest {
+
+    private static final Logger LOGGER = Logger.getLogger("ModerationServiceTest");
+
+    // Scores "toxic" as hate and anything else as safe, counting its calls
+    private static final class CountingProvider implements ModerationProvider {
+        private final AtomicInteger calls = new AtomicInteger();
+
+        @Override
+        public String getName() {
+            return "Counting";
+        }
+
+        @Override
+        public double[] score(String message) {
+            return score(message, null);
+        }
+
+        @Override
+        public double[] score(String message, ConversationContext.Recent context) {
+            calls.incrementAndGet();
+            double[] scores = new double[ModerationCategory.COUNT];
+            String shown = context != null && context.channel() != null ? context.channel() + "\n" + message : message;
+            if (shown.contains("toxic")) scores[ModerationCategory.HATE.ordinal()] = 0.99;
+            return scores;
+        }
+    }
+
+    private static void withService(ModerationProvider provider, ServiceTest test) throws Exception {
+        withService(provider, 2, test);
+    }
+
+    private static void withService(ModerationProvider provider, int threads, ServiceTest test) throws Exception {
+        YamlConfiguration yaml = new YamlConfiguration();
+        yaml.set("ai.batch.enabled", false);
+        yaml.set("local-classifier.collect-samples", false);
+        ConfigSnapshot config = ConfigSnapshot.from(yaml);
+        Path folder = Files.createTempDirectory("chatmoderator-test");
+        ModerationExecutor executor = new ModerationExecutor(LOGGER, false, threads, 16);
+        ModerationService service = new ModerationService(LOGGER, () -> config, executor,
+                new RuleEngine(LOGGER, null), new LocalClassifier(LOGGER, folder), new ModerationMetrics(), provider);
+        try {
+            test.run(service);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private interface ServiceTest {
+        void run(ModerationService service) throws Exception;
+    }
+
+    @Test
+    void cachesSafeVerdicts() throws Exception {
+        CountingProvider provider = new CountingProvider();
+        withService(provider, service -> {
+            ModerationResult first = service.checkAIModerationAsync("hello there").join();
+            ModerationResult second = service.checkAIModerationAsync("  Hello   there").join();
+            assertFalse(first.isBlocked());
+            assertFalse(second.isBlocked());
+            assertEquals(1, provider.calls.get());
+            assertEquals(1, service.getVerdictCache().getHits());
+        });
+    }
+
+    @Test
+    void cachesBlockedVerdicts() throws Exception {
+        CountingProvider provider = new CountingProvider();
+        withService(provider, service -> {
+            assertTrue(service.checkAIModerationAsync("so toxic").join().isBlocked());
+            assertTrue(service.checkAIModerationAsync("so toxic").join().isBlocked());
+            assertEquals(1, provider.calls.get());
+        });
+    }
+
+    @Test
+    void doesNotCacheVerdictsJudgedWithContext() throws Exception {
+        CountingProvider provider = new CountingProvider();
+        withService(provider, service -> {
+            ConversationContext.Recent context = new ConversationContext.Recent(null, "Steve: so toxic");
+            assertTrue(service.checkAIModerationAsync("yes", context, QuotaGovernor.Priority.NORMAL, true)
+                    .join().isBlocked());
+            // Someone else's line must not get the reply blocked for everyone
+            assertFalse(service.checkAIModerationAsync("yes").join().isBlocked());
+            assertEquals(2, provider.calls.get());
+        });
+    }
+
+    @Test
+    void callsQueuedAtShutdownFinishWithoutAProvider() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        ModerationProvider slow = new ModerationProvider() {
+            @Override
+            public String getName() {
+                return "Slow";
+            }
+
+            @Override
+            public double[] score(String message) throws Exception {
+                release.await();
+                return new double[ModerationCategory.COUNT];
+            }
+        };
+        withService(slow, 1, service -> {
+            CompletableFuture<ModerationResult> running = service.checkAIModerationAsync("first message");
+            CompletableFuture<ModerationResult> queued = service.checkAIModerationAsync("second message");
+            service.shutdown();
+            release.countDown();
+            // The queued call runs after the provider was retired and must not wait for a new one
+            assertFalse(running.get(5, TimeUnit.SECONDS).isBlocked());
+            assertFalse(queued.get(5, TimeUnit.SECONDS).isBlocked());
+        });
+    }
+}
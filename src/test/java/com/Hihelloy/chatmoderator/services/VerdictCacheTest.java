@@ -0,0 +1,49 @@
+package com.Hihelloy.chatmoderator.services;
+
+import com.Hihelloy.chatmoderator.utils.ModerationResult;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class VerdictCacheTest {
+
+    @Test
+    void keysIgnoreCaseAndExtraWhitespace() {
+        assertEquals(VerdictCache.key("hello there"), VerdictCache.key("  Hello   THERE "));
+        assertNotEquals(VerdictCache.key("hello there"), VerdictCache.key("hellothere"));
+    }
+
+    @Test
+    void cachesSafeAndBlockedVerdicts() {
+        VerdictCache cache = new VerdictCache(10, 60, 60);
+        ModerationResult safe = ModerationResult.safe();
+        ModerationResult blocked = ModerationResult.block("AI flagged", ModerationResult.ViolationType.HATE_SPEECH);
+        cache.put(1L, safe);
+        cache.put(2L, blocked);
+        assertEquals(safe, cache.get(1L));
+        assertEquals(blocked, cache.get(2L));
+        assertEquals(2, cache.getHits());
+    }
+
+    @Test
+    void zeroTtlTurnsOffOnlyThatKind() {
+        VerdictCache cache = new VerdictCache(10, 0, 60);
+        cache.put(1L, ModerationResult.safe());
+        cache.put(2L, ModerationResult.block("AI flagged"));
+        assertNull(cache.get(1L));
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    void evictsLeastRecentlyUsed() {
+        VerdictCache cache = new VerdictCache(2, 60, 60);
+        cache.put(1L, ModerationResult.safe());
+        cache.put(2L, ModerationResult.safe());
+        cache.get(1L);
+        cache.put(3L, ModerationResult.safe());
+        assertNull(cache.get(2L));
+        assertEquals(1, cache.getEvictions());
+    }
+}
@@ -0,0 +1,81 @@
+package com.Hihelloy.chatmoderator.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RegexAutomatonTest {
+
+    private static final String[] PATTERNS = {
+            "k+i+l+l", "[a-c]{2,3}x", "(ab|cd)+e", "n.gg", "\\d{3}-\\d{2}", "x[^a-d]?l", "(?:de)*la"
+    };
+
+    private static boolean javaFinds(String pattern, String text) {
+        return Pattern.compile(pattern, Pattern.CASE_INSENSITIVE).matcher(text).find();
+    }
+
+    private static String randomText(Random random, String alphabet, int length) {
+        StringBuilder text = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            char c = alphabet.charAt(random.nextInt(alphabet.length()));
+            text.append(random.nextInt(4) == 0 ? Character.toUpperCase(c) : c);
+        }
+        return text.toString();
+    }
+
+    @Test
+    void agreesWithJavaRegex() {
+        Random random = new Random(42);
+        for (String pattern : PATTERNS) {
+            RegexAutomaton automaton = RegexAutomaton.builder().add(pattern, 1).build();
+            for (int i = 0; i < 2000; i++) {
+                String text = randomText(random, "abcdeiklngx-0123 é", 1 + random.nextInt(12));
+                assertEquals(javaFinds(pattern, text), automaton.find(text) == 1, pattern + " on '" + text + "'");
+            }
+        }
+    }
+
+    @Test
+    void returnsTheFirstAddedPatternThatMatches() {
+        RegexAutomaton automaton = RegexAutomaton.builder()
+                .add("kill", 3)
+                .add("k.ll", 5)
+                .add("free\\s+nitro", 8)
+                .build();
+        assertEquals(3, automaton.find("I will KILL you"));
+        assertEquals(5, automaton.find("kell"));
+        assertEquals(8, automaton.find("get free   nitro"));
+        assertEquals(-1, automaton.find("nothing here"));
+    }
+
+    @Test
+    void keepsTheStateCacheBounded() {
+        // Needs a DFA state for every combination of the last 13 characters, far more than are cached
+        String pattern = "a.{12}b";
+        RegexAutomaton automaton = RegexAutomaton.builder().add(pattern, 1).build();
+        Random random = new Random(7);
+        for (int i = 0; i < 50; i++) {
+            String text = randomText(random, "ac", 2000) + (i % 2 == 0 ? "b" : "");
+            assertEquals(javaFinds(pattern, text), automaton.find(text) == 1);
+            assertTrue(automaton.cachedStates() <= 1024);
+        }
+    }
+
+    @Test
+    void rejectsUnsupportedPatterns() {
+        assertThrows(IllegalArgumentException.class, () -> RegexAutomaton.builder().add("^kill", 1));
+        assertThrows(IllegalArgumentException.class, () -> RegexAutomaton.builder().add("a*", 1));
+        assertThrows(IllegalArgumentException.class, () -> RegexAutomaton.builder().add("(?=x)y", 1));
+    }
+
+    @Test
+    void emptyAutomatonNeverMatches() {
+        assertTrue(RegexAutomaton.empty().isEmpty());
+        assertEquals(-1, RegexAutomaton.empty().find("anything"));
+    }
+}
@@ -0,0 +1,89 @@
+package com.Hihelloy.chatmoderator.utils;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TextNormalizerTest {
+
+    private static String normalize(String text) {
+        return TextNormalizer.normalizeToString(text);
+    }
+
+    @Test
+    void foldsCaseAccentsAndLookAlikes() {
+        assertEquals("hello", normalize("HÉLLO"));
+        assertEquals("sex", normalize("ѕех"));
+        assertEquals("sex", normalize("ｓｅｘ"));
+    }
+
+    @Test
+    void decodesLeetOnlyNextToLetters() {
+        assertEquals("hello", normalize("h3ll0"));
+        assertEquals("shit", normalize("$hit"));
+        assertEquals("i have 300 coins", normalize("I have 300 coins"));
+    }
+
+    @Test
+    void dropsInvisibleCharactersAndApostrophes() {
+        assertEquals("kys", normalize("k\u200Bys"));
+        assertEquals("dont", normalize("don't"));
+    }
+
+    @Test
+    void joinsSpacedOutLetters() {
+        assertEquals("kys", normalize("k y s"));
+        assertEquals("kys now", normalize("k.y.s now"));
+        assertEquals("a b", normalize("a b"));
+    }
+
+    @Test
+    void keepsDoublesAndFoldsLongerRunsToTwo() {
+        assertEquals("speed", normalize("speed"));
+        assertEquals("goon", normalize("goooon"));
+        assertEquals("fuuck", normalize("fuuuuck"));
+        assertEquals("niger", normalize("Niger"));
+    }
+
+    @Test
+    void marksOnlyTextWithLongRunsAsStretched() {
+        assertFalse(TextNormalizer.normalize("Nigeria is big").isStretched());
+        assertFalse(TextNormalizer.normalize("see you soon").isStretched());
+        assertNull(TextNormalizer.normalize("see you soon").squeezed());
+
+        TextNormalizer.Normalized stretched = TextNormalizer.normalize("fuuuck");
+        assertTrue(stretched.isStretched());
+        assertEquals("fuck", stretched.squeezed().toString());
+    }
+
+    @Test
+    void squeezedFormKeepsStretchedMarks() {
+        TextNormalizer.Normalized squeezed = TextNormalizer.normalize("sooo good").squeezed();
+        assertEquals("so god", squeezed.toString());
+        assertTrue(squeezed.isStretchedAt(1));
+        assertFalse(squeezed.isStretchedAt(4));
+    }
+
+    @Test
+    void squeezesPatterns() {
+        assertEquals("niger", TextNormalizer.squeeze("nigger"));
+        assertEquals("gon", TextNormalizer.squeeze("goon"));
+        assertEquals("kys now", TextNormalizer.squeeze("kys now"));
+    }
+
+    @Test
+    void mapsBackToTheOriginalText() {
+        TextNormalizer.Normalized normalized = TextNormalizer.normalize("oh N00B!");
+        assertEquals("noob", normalized.toString().substring(3));
+        assertEquals("N00B", normalized.sourceText(3, 7));
+
+        // A folded run maps back to every letter the player typed
+        TextNormalizer.Normalized stretched = TextNormalizer.normalize("nooooo");
+        assertEquals("noo", stretched.toString());
+        assertEquals("nooooo", stretched.sourceText(0, 3));
+        assertEquals("nooooo", stretched.squeezed().sourceText(0, 2));
+    }
+}
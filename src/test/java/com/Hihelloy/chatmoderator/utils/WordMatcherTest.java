@@ -0,0 +1,93 @@
+package com.Hihelloy.chatmoderator.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class WordMatcherTest {
+
+    private static boolean matches(WordMatcher matcher, String message) {
+        return matcher.matches(TextNormalizer.normalize(message));
+    }
+
+    private static WordMatcher substrings(String... patterns) {
+        WordMatcher.Builder builder = WordMatcher.builder();
+        for (String pattern : patterns) {
+            builder.add(pattern, false, 0);
+        }
+        return builder.build();
+    }
+
+    @Test
+    void matchesWholeWordsOnly() {
+        WordMatcher matcher = WordMatcher.compile(List.of("ass"));
+        assertTrue(matches(matcher, "you ass"));
+        assertFalse(matches(matcher, "first class"));
+    }
+
+    @Test
+    void matchesDisguisedSpellings() {
+        WordMatcher matcher = WordMatcher.compile(List.of("kys"));
+        assertTrue(matches(matcher, "k.y.s"));
+        assertTrue(matches(matcher, "K Y S"));
+        assertTrue(matches(matcher, "k\u200Bys"));
+    }
+
+    @Test
+    void doesNotFoldDoubledLettersInPatterns() {
+        assertFalse(matches(substrings("nigger"), "I visited Niger"));
+        assertFalse(matches(substrings("nigger"), "Nigeria won"));
+        assertFalse(matches(WordMatcher.compile(List.of("goon")), "gon be fun"));
+        assertFalse(matches(WordMatcher.compile(List.of("butt")), "but why"));
+        assertFalse(matches(WordMatcher.compile(List.of("ass")), "as if"));
+    }
+
+    @Test
+    void matchesStretchedSpellings() {
+        assertTrue(matches(WordMatcher.compile(List.of("fuck")), "fuuuuck"));
+        assertTrue(matches(WordMatcher.compile(List.of("goon")), "goooon"));
+        assertTrue(matches(WordMatcher.compile(List.of("goon")), "gooooon"));
+        assertTrue(matches(substrings("nigger"), "niiigger"));
+        assertTrue(matches(WordMatcher.compile(List.of("fuck")), "f u u u c k"));
+    }
+
+    @Test
+    void ignoresStretchingOutsideTheMatch() {
+        assertFalse(matches(WordMatcher.compile(List.of("butt")), "sooo but why"));
+        assertFalse(matches(substrings("nigger"), "noooo I meant Niger"));
+    }
+
+    @Test
+    void reportsWhatThePlayerTyped() {
+        WordMatcher matcher = WordMatcher.compile(List.of("fuck", "noob"));
+        TextNormalizer.Normalized plain = TextNormalizer.normalize("what a N00B");
+        assertEquals("N00B", matcher.sourceText(plain, matcher.find(plain)));
+
+        TextNormalizer.Normalized stretched = TextNormalizer.normalize("oh FUUUUCK off");
+        long match = matcher.find(stretched);
+        assertNotEquals(WordMatcher.NO_MATCH, match);
+        assertEquals("FUUUUCK", matcher.sourceText(stretched, match));
+        assertEquals("fuck", matcher.word(match));
+    }
+
+    @Test
+    void reportsTagsForStretchedHits() {
+        WordMatcher matcher = WordMatcher.builder()
+                .add("kill", true, 3)
+                .add("hate", true, 7)
+                .build();
+        TextNormalizer.Normalized normalized = TextNormalizer.normalize("haaaate");
+        assertEquals(7, matcher.tag(matcher.find(normalized)));
+    }
+
+    @Test
+    void emptyMatcherNeverMatches() {
+        assertFalse(matches(WordMatcher.empty(), "anything at all"));
+        assertEquals(WordMatcher.NO_MATCH, WordMatcher.compile(List.of(" ", "")).find("text"));
+    }
+}